@@ -0,0 +1,62 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package android.os;
+
+/**
+ * Replaces the android-all {@code Build} class on the benchmark classpath. The real class reads its fields from
+ * system properties through JNI in its static initializer, which fails outside of a device or emulator.
+ */
+public final class Build {
+    public static final String MODEL = "benchmark";
+    public static final String CPU_ABI = "x86_64";
+    public static final String[] SUPPORTED_ABIS = {CPU_ABI};
+
+    private Build() {
+        // Utility class
+    }
+
+    /**
+     * Mirrors {@code android.os.Build.VERSION}.
+     */
+    public static final class VERSION {
+        public static final int SDK_INT = VERSION_CODES.N_MR1;
+
+        private VERSION() {
+            // Utility class
+        }
+    }
+
+    /**
+     * Mirrors {@code android.os.Build.VERSION_CODES}.
+     */
+    public static final class VERSION_CODES {
+        public static final int LOLLIPOP = 21;
+        public static final int N_MR1 = 25;
+
+        private VERSION_CODES() {
+            // Utility class
+        }
+    }
+}
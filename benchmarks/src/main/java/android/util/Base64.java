@@ -0,0 +1,87 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package android.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * Replaces the android-all {@code Base64} class on the benchmark classpath. The real decoder copies its output with the
+ * {@code System.arraycopy} overload of the Android runtime, which doesn't exist on the desktop JVM. Backed by
+ * {@link java.util.Base64}, with the flags the sdk uses.
+ */
+public final class Base64 {
+    public static final int DEFAULT = 0;
+    public static final int NO_PADDING = 1;
+    public static final int NO_WRAP = 2;
+    public static final int CRLF = 4;
+    public static final int URL_SAFE = 8;
+    public static final int NO_CLOSE = 16;
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final int LINE_LENGTH = 76;
+
+    private Base64() {
+        // Utility class
+    }
+
+    public static byte[] decode(final String str, final int flags) {
+        return decode(str.getBytes(US_ASCII), flags);
+    }
+
+    public static byte[] decode(final byte[] input, final int flags) {
+        // Line breaks are skipped, as the Android decoder does.
+        final String encoded = new String(input, US_ASCII).replaceAll("\\s", "");
+        try {
+            return ((flags & URL_SAFE) != 0 ? java.util.Base64.getUrlDecoder() : java.util.Base64.getDecoder())
+                    .decode(encoded);
+        } catch (final IllegalArgumentException e) {
+            throw new IllegalArgumentException("bad base-64", e);
+        }
+    }
+
+    public static String encodeToString(final byte[] input, final int flags) {
+        return new String(encode(input, flags), US_ASCII);
+    }
+
+    public static byte[] encode(final byte[] input, final int flags) {
+        java.util.Base64.Encoder encoder = (flags & URL_SAFE) != 0 ? java.util.Base64.getUrlEncoder()
+                : java.util.Base64.getEncoder();
+        if ((flags & NO_PADDING) != 0) {
+            encoder = encoder.withoutPadding();
+        }
+
+        final String encoded = encoder.encodeToString(input);
+        if ((flags & NO_WRAP) != 0) {
+            return encoded.getBytes(US_ASCII);
+        }
+
+        final String lineBreak = (flags & CRLF) != 0 ? "\r\n" : "\n";
+        final StringBuilder wrapped = new StringBuilder();
+        for (int start = 0; start < encoded.length(); start += LINE_LENGTH) {
+            wrapped.append(encoded, start, Math.min(start + LINE_LENGTH, encoded.length())).append(lineBreak);
+        }
+
+        return wrapped.toString().getBytes(US_ASCII);
+    }
+}
@@ -0,0 +1,275 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+import android.util.Base64;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared test data and an in-memory {@link Context} for the benchmarks.
+ */
+final class BenchmarkFixtures {
+    static final String AUTHORITY = "https://login.microsoftonline.com/common";
+    static final String CLIENT_ID = "some-client-id";
+    static final String TENANT_ID = "some-tenant-id";
+    static final String SCOPE = "scope1 scope2";
+    static final String TOKEN = "eyJ0eXAiOiJKV1QiLCJhbGciOiJSUzI1NiIsIng1dCI6IjFMVE16YWtpaGlSbGFfOHoyQkVKVlhlV01xbyJ9"
+            + ".eyJ2ZXIiOiIyLjAiLCJpc3MiOiJodHRwczovL2xvZ2luLm1pY3Jvc29mdG9ubGluZS5jb20vOTE4ODA0MGQtNmM2Ny00YzViLWIxMTItMzZh"
+            + "MzA0YjY2ZGFkL3YyLjAiLCJhdWQiOiJzb21lLWNsaWVudC1pZCIsImV4cCI6MTUwMDAwMDAwMCwiaWF0IjoxNTAwMDAwMDAwfQ.signature";
+
+    private BenchmarkFixtures() {
+        // Utility class
+    }
+
+    static Context createContext() {
+        return new InMemoryContext();
+    }
+
+    static RequestContext createRequestContext() {
+        return new RequestContext(UUID.randomUUID(), "benchmark", Telemetry.generateNewRequestId());
+    }
+
+    static String getUid(final int userIndex) {
+        return "uid" + userIndex;
+    }
+
+    static String createIdToken(final int userIndex) {
+        final String header = "{\"typ\":\"JWT\",\"alg\":\"RS256\"}";
+        final String claims = "{\"aud\":\"" + CLIENT_ID + "\",\"iss\":\"https://login.microsoftonline.com/" + TENANT_ID
+                + "/v2.0\",\"ver\":\"2.0\",\"tid\":\"" + TENANT_ID + "\",\"oid\":\"" + getUid(userIndex)
+                + "\",\"preferred_username\":\"user" + userIndex + "@contoso.com\",\"sub\":\"sub" + userIndex
+                + "\",\"name\":\"User " + userIndex + "\"}";
+        return encode(header) + "." + encode(claims) + ".";
+    }
+
+    static String createClientInfo(final int userIndex) {
+        return encode("{\"uid\":\"" + getUid(userIndex) + "\",\"utid\":\"" + TENANT_ID + "\"}");
+    }
+
+    static TokenResponse createTokenResponse(final int userIndex, final String scope) {
+        final Date expiresOn = new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        final Date extendedExpiresOn = new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(2));
+        return new TokenResponse(TOKEN, createIdToken(userIndex), TOKEN, expiresOn, expiresOn, extendedExpiresOn,
+                scope, "Bearer", createClientInfo(userIndex));
+    }
+
+    static User createUser(final int userIndex) throws MsalClientException {
+        return User.create(new IdToken(createIdToken(userIndex)), new ClientInfo(createClientInfo(userIndex)));
+    }
+
+    static Set<String> getScopes() {
+        return MsalUtils.getScopesAsSet(SCOPE);
+    }
+
+    private static String encode(final String value) {
+        return Base64.encodeToString(value.getBytes(Charset.forName(MsalUtils.ENCODING_UTF8)),
+                Base64.NO_PADDING | Base64.NO_WRAP | Base64.URL_SAFE);
+    }
+
+    /**
+     * {@link Context} handing out in-memory {@link SharedPreferences}, so the benchmarks measure the cache logic
+     * rather than disk I/O. The files dir is a temp dir, where the {@link TokenCacheLock} keeps its lock file.
+     */
+    private static final class InMemoryContext extends ContextWrapper {
+        private static final File FILES_DIR = new File(System.getProperty("java.io.tmpdir"), "msal-benchmarks");
+
+        private final Map<String, SharedPreferences> mSharedPreferences = new HashMap<>();
+
+        InMemoryContext() {
+            super(null);
+        }
+
+        @Override
+        public File getFilesDir() {
+            if (!FILES_DIR.isDirectory() && !FILES_DIR.mkdirs()) {
+                throw new IllegalStateException("Fail to create the benchmark files dir: " + FILES_DIR);
+            }
+
+            return FILES_DIR;
+        }
+
+        @Override
+        public SharedPreferences getSharedPreferences(final String name, final int mode) {
+            SharedPreferences sharedPreferences = mSharedPreferences.get(name);
+            if (sharedPreferences == null) {
+                sharedPreferences = new InMemorySharedPreferences();
+                mSharedPreferences.put(name, sharedPreferences);
+            }
+
+            return sharedPreferences;
+        }
+    }
+
+    private static final class InMemorySharedPreferences implements SharedPreferences {
+        private final Map<String, Object> mValues = new HashMap<>();
+
+        @Override
+        public Map<String, ?> getAll() {
+            return new HashMap<>(mValues);
+        }
+
+        @Override
+        public String getString(final String key, final String defValue) {
+            final Object value = mValues.get(key);
+            return value == null ? defValue : (String) value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(final String key, final Set<String> defValues) {
+            final Object value = mValues.get(key);
+            return value == null ? defValues : (Set<String>) value;
+        }
+
+        @Override
+        public int getInt(final String key, final int defValue) {
+            final Object value = mValues.get(key);
+            return value == null ? defValue : (Integer) value;
+        }
+
+        @Override
+        public long getLong(final String key, final long defValue) {
+            final Object value = mValues.get(key);
+            return value == null ? defValue : (Long) value;
+        }
+
+        @Override
+        public float getFloat(final String key, final float defValue) {
+            final Object value = mValues.get(key);
+            return value == null ? defValue : (Float) value;
+        }
+
+        @Override
+        public boolean getBoolean(final String key, final boolean defValue) {
+            final Object value = mValues.get(key);
+            return value == null ? defValue : (Boolean) value;
+        }
+
+        @Override
+        public boolean contains(final String key) {
+            return mValues.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new InMemoryEditor();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(final OnSharedPreferenceChangeListener listener) {
+            // not needed for the benchmarks
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(final OnSharedPreferenceChangeListener listener) {
+            // not needed for the benchmarks
+        }
+
+        private final class InMemoryEditor implements Editor {
+            private final Map<String, Object> mPending = new HashMap<>();
+            private final Set<String> mRemoved = new HashSet<>();
+            private boolean mClear;
+
+            @Override
+            public Editor putString(final String key, final String value) {
+                mPending.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putStringSet(final String key, final Set<String> values) {
+                mPending.put(key, values);
+                return this;
+            }
+
+            @Override
+            public Editor putInt(final String key, final int value) {
+                mPending.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putLong(final String key, final long value) {
+                mPending.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putFloat(final String key, final float value) {
+                mPending.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putBoolean(final String key, final boolean value) {
+                mPending.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor remove(final String key) {
+                mRemoved.add(key);
+                return this;
+            }
+
+            @Override
+            public Editor clear() {
+                mClear = true;
+                return this;
+            }
+
+            @Override
+            public boolean commit() {
+                if (mClear) {
+                    mValues.clear();
+                }
+
+                for (final String key : mRemoved) {
+                    mValues.remove(key);
+                }
+
+                mValues.putAll(mPending);
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the {@link TokenCache} lookups and writes done by every silent request, with the cache holding
+ * tokens for the given number of users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class TokenCacheBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int mCacheSize;
+
+    private TokenCache mTokenCache;
+    private AuthenticationRequestParameters mRequestParameters;
+    private User mUser;
+    private TokenResponse mTokenResponse;
+    private RequestContext mRequestContext;
+
+    @Setup
+    public void setUp() throws MsalException {
+        Telemetry.disableForTest(true);
+        Logger.getInstance().setEnableLogcatLog(false);
+
+        mTokenCache = new TokenCache(BenchmarkFixtures.createContext());
+        mRequestContext = BenchmarkFixtures.createRequestContext();
+        for (int i = 0; i < mCacheSize; i++) {
+            final TokenResponse tokenResponse = BenchmarkFixtures.createTokenResponse(i, BenchmarkFixtures.SCOPE);
+            mTokenCache.saveAccessToken(BenchmarkFixtures.AUTHORITY, BenchmarkFixtures.CLIENT_ID, tokenResponse, mRequestContext);
+            mTokenCache.saveRefreshToken("login.microsoftonline.com", BenchmarkFixtures.CLIENT_ID, tokenResponse, mRequestContext);
+        }
+
+        mUser = BenchmarkFixtures.createUser(0);
+        mTokenResponse = BenchmarkFixtures.createTokenResponse(0, BenchmarkFixtures.SCOPE);
+        mRequestParameters = AuthenticationRequestParameters.create(Authority.createAuthority(BenchmarkFixtures.AUTHORITY, false),
+                mTokenCache, BenchmarkFixtures.getScopes(), BenchmarkFixtures.CLIENT_ID, null, mRequestContext);
+    }
+
+    @Benchmark
+    public AccessTokenCacheItem findAccessToken() throws MsalClientException {
+        return mTokenCache.findAccessToken(mRequestParameters, mUser);
+    }
+
+    @Benchmark
+    public RefreshTokenCacheItem findRefreshToken() throws MsalClientException {
+        return mTokenCache.findRefreshToken(mRequestParameters, mUser);
+    }
+
+    @Benchmark
+    public AccessTokenCacheItem saveAccessToken() throws MsalClientException {
+        // Overwrites the token of the first user, so the cache size stays constant.
+        return mTokenCache.saveAccessToken(BenchmarkFixtures.AUTHORITY, BenchmarkFixtures.CLIENT_ID, mTokenResponse, mRequestContext);
+    }
+}
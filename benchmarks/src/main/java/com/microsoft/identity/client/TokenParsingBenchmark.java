@@ -0,0 +1,106 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the JSON and token parsing done on cache reads and token responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class TokenParsingBenchmark {
+
+    // Same configuration as the one used by TokenCache.
+    private final Gson mGson = new GsonBuilder()
+            .registerTypeAdapter(AccessTokenCacheItem.class, new TokenCacheItemDeserializer<AccessTokenCacheItem>())
+            .registerTypeAdapter(RefreshTokenCacheItem.class, new TokenCacheItemDeserializer<RefreshTokenCacheItem>())
+            .create();
+
+    private String mAccessTokenJson;
+    private String mRefreshTokenJson;
+    private String mRawIdToken;
+    private String mRawClientInfo;
+    private String mTokenResponseJson;
+
+    @Setup
+    public void setUp() throws MsalClientException {
+        Logger.getInstance().setEnableLogcatLog(false);
+
+        final TokenResponse tokenResponse = BenchmarkFixtures.createTokenResponse(0, BenchmarkFixtures.SCOPE);
+        mAccessTokenJson = mGson.toJson(new AccessTokenCacheItem(BenchmarkFixtures.AUTHORITY, BenchmarkFixtures.CLIENT_ID, tokenResponse));
+        mRefreshTokenJson = mGson.toJson(new RefreshTokenCacheItem("login.microsoftonline.com", BenchmarkFixtures.CLIENT_ID, tokenResponse));
+        mRawIdToken = BenchmarkFixtures.createIdToken(0);
+        mRawClientInfo = BenchmarkFixtures.createClientInfo(0);
+        mTokenResponseJson = "{\"token_type\":\"Bearer\",\"scope\":\"" + BenchmarkFixtures.SCOPE + "\",\"expires_in\":3599,"
+                + "\"ext_expires_in\":7199,\"access_token\":\"" + BenchmarkFixtures.TOKEN + "\",\"refresh_token\":\""
+                + BenchmarkFixtures.TOKEN + "\",\"id_token\":\"" + mRawIdToken + "\",\"client_info\":\"" + mRawClientInfo + "\"}";
+    }
+
+    @Benchmark
+    public AccessTokenCacheItem deserializeAccessTokenCacheItem() {
+        return mGson.fromJson(mAccessTokenJson, AccessTokenCacheItem.class);
+    }
+
+    @Benchmark
+    public RefreshTokenCacheItem deserializeRefreshTokenCacheItem() {
+        return mGson.fromJson(mRefreshTokenJson, RefreshTokenCacheItem.class);
+    }
+
+    @Benchmark
+    public IdToken parseIdToken() throws MsalClientException {
+        return new IdToken(mRawIdToken);
+    }
+
+    @Benchmark
+    public ClientInfo parseClientInfo() throws MsalClientException {
+        return new ClientInfo(mRawClientInfo);
+    }
+
+    @Benchmark
+    public Map<String, String> extractJsonObjectIntoMap() throws JSONException {
+        return MsalUtils.extractJsonObjectIntoMap(mTokenResponseJson);
+    }
+}
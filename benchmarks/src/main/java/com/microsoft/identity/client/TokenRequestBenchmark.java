@@ -0,0 +1,82 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for building the token request and generating the PKCE challenge of an interactive request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class TokenRequestBenchmark {
+
+    private RequestContext mRequestContext;
+
+    @Setup
+    public void setUp() {
+        Logger.getInstance().setEnableLogcatLog(false);
+        mRequestContext = BenchmarkFixtures.createRequestContext();
+    }
+
+    @Benchmark
+    public byte[] buildRefreshTokenRequest() throws UnsupportedEncodingException {
+        // Mirrors BaseRequest#buildRequestParameters and SilentRequest#setAdditionalOauthParameters.
+        final Oauth2Client oauth2Client = new Oauth2Client(mRequestContext);
+        oauth2Client.addHeader(OauthConstants.OauthHeader.CORRELATION_ID, mRequestContext.getCorrelationId().toString());
+
+        final Map<String, String> bodyParameters = new HashMap<>();
+        bodyParameters.put(OauthConstants.Oauth2Parameters.CLIENT_ID, BenchmarkFixtures.CLIENT_ID);
+        bodyParameters.put(OauthConstants.Oauth2Parameters.SCOPE, BenchmarkFixtures.SCOPE + " openid profile offline_access");
+        bodyParameters.put(OauthConstants.Oauth2Parameters.CLIENT_INFO, "1");
+        bodyParameters.put(OauthConstants.Oauth2Parameters.GRANT_TYPE, OauthConstants.Oauth2GrantType.REFRESH_TOKEN);
+        bodyParameters.put(OauthConstants.Oauth2Parameters.REFRESH_TOKEN, BenchmarkFixtures.TOKEN);
+        return oauth2Client.buildRequestMessage(bodyParameters);
+    }
+
+    @Benchmark
+    public InteractiveRequest.PKCEChallengeFactory.PKCEChallenge createPKCEChallenge() throws MsalClientException {
+        // Cost of generating a challenge, newPKCEChallenge hands out pre-generated ones from the pool.
+        return InteractiveRequest.PKCEChallengeFactory.createPKCEChallenge();
+    }
+}
@@ -25,9 +25,13 @@ package com.microsoft.identity.client;
 
 import android.app.Activity;
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.content.Intent;
+import android.net.Uri;
 import android.util.Base64;
 
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -38,6 +42,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -46,7 +51,6 @@ import java.util.UUID;
  */
 public final class AndroidTestUtil {
     private static final String ACCESS_TOKEN_SHARED_PREFERENCE = "com.microsoft.identity.client.token";
-    private static final String REFRESH_TOKEN_SHARED_PREFERENCE = "com.microsoft.identity.client.refreshToken";
     static final String DEFAULT_AUTHORITY_WITH_TENANT = "https://login.microsoftonline.com/tenant";
     static final int TOKEN_EXPIRATION_IN_MINUTES = 60;
 
@@ -174,6 +178,25 @@ public final class AndroidTestUtil {
         return Base64.encodeToString(state.getBytes(Charset.forName("UTF-8")), Base64.NO_PADDING | Base64.URL_SAFE);
     }
 
+    /**
+     * @return The state sent in the authorize request of the last {@link AuthenticationActivity} launched from the
+     * mocked activity, as the server returns it.
+     */
+    static String getStateInAuthorizeRequest(final Activity testActivity) {
+        final ArgumentCaptor<Intent> intentCaptor = ArgumentCaptor.forClass(Intent.class);
+        Mockito.verify(testActivity, Mockito.atLeastOnce()).startActivityForResult(intentCaptor.capture(),
+                Mockito.eq(InteractiveRequest.BROWSER_FLOW));
+        return getStateInAuthorizeRequest(intentCaptor.getValue());
+    }
+
+    /**
+     * @return The state sent in the authorize request the {@link AuthenticationActivity} is launched with.
+     */
+    static String getStateInAuthorizeRequest(final Intent authorizeIntent) {
+        return Uri.parse(authorizeIntent.getStringExtra(Constants.REQUEST_URL_KEY)).getQueryParameter(
+                OauthConstants.Oauth2Parameters.STATE);
+    }
+
     static Date getExpiredDate() {
         return getExpirationDate(-TOKEN_EXPIRATION_IN_MINUTES);
     }
@@ -191,15 +214,7 @@ public final class AndroidTestUtil {
     }
 
     static void removeAllTokens(final Context appContext) {
-        final SharedPreferences accessTokenSharedPreference = getAccessTokenSharedPreference(appContext);
-        final SharedPreferences.Editor accessTokenSharedPreferenceEditor = accessTokenSharedPreference.edit();
-        accessTokenSharedPreferenceEditor.clear();
-        accessTokenSharedPreferenceEditor.apply();
-
-        final SharedPreferences refreshTokenSharedPreference = getRefreshTokenSharedPreference(appContext);
-        final SharedPreferences.Editor refreshTokenSharedPreferenceEditor = refreshTokenSharedPreference.edit();
-        refreshTokenSharedPreferenceEditor.clear();
-        refreshTokenSharedPreferenceEditor.apply();
+        new TokenCacheAccessor(appContext).removeAllTokens();
     }
 
     static List<AccessTokenCacheItem> getAllAccessTokens(final Context appContext) {
@@ -223,14 +238,10 @@ public final class AndroidTestUtil {
                 VERSION);
     }
 
-    static SharedPreferences getAccessTokenSharedPreference(final Context appContext) {
-        return appContext.getSharedPreferences(ACCESS_TOKEN_SHARED_PREFERENCE,
-                Activity.MODE_PRIVATE);
-    }
-
-    static SharedPreferences getRefreshTokenSharedPreference(final Context appContext) {
-        return appContext.getSharedPreferences(REFRESH_TOKEN_SHARED_PREFERENCE,
-                Activity.MODE_PRIVATE);
+    static Map<String, String> getAccessTokenPartition(final Context appContext, final String clientId,
+                                                       final String authority) {
+        return FileTokenCacheStorage.getInstance(appContext).getAll(ACCESS_TOKEN_SHARED_PREFERENCE + "."
+                + TokenCacheAccessor.getPartitionId(clientId, MsalUtils.getUrl(authority).getHost()));
     }
 
     static String getSuccessTenantDiscoveryResponse(final String authorizeEndpoint, final String tokenEndpoint) {
@@ -133,4 +133,37 @@ public class ApiEventTest {
         Assert.assertEquals(MsalUtils.createHash(TEST_USER_ID), apiEvent.getUserId());
         Telemetry.setAllowPii(false);
     }
+
+    @Test
+    public void testPhaseTimesRecorded() {
+        final ApiEvent apiEvent = getRandomTestApiEventBuilder()
+                .setQueueWaitTime(1L)
+                .setPreTokenRequestTime(2L)
+                .setTokenRequestTime(3L)
+                .setPostTokenRequestTime(4L)
+                .setCallbackDeliveryTime(5L)
+                .build();
+        Assert.assertEquals("1", apiEvent.getQueueWaitTime());
+        Assert.assertEquals("2", apiEvent.getPreTokenRequestTime());
+        Assert.assertEquals("3", apiEvent.getTokenRequestTime());
+        Assert.assertEquals("4", apiEvent.getPostTokenRequestTime());
+        Assert.assertEquals("5", apiEvent.getCallbackDeliveryTime());
+    }
+
+    @Test
+    public void testPhaseTimesOmittedWhenNotSet() {
+        final ApiEvent apiEvent = getRandomTestApiEventBuilder().build();
+        Assert.assertNull(apiEvent.getQueueWaitTime());
+        Assert.assertNull(apiEvent.getTokenRequestTime());
+        Assert.assertNull(apiEvent.getCallbackDeliveryTime());
+        Assert.assertNull(apiEvent.getRedirectHeadStartTime());
+    }
+
+    @Test
+    public void testRedirectHeadStartTimeRecorded() {
+        final ApiEvent apiEvent = getRandomTestApiEventBuilder()
+                .setRedirectHeadStartTime(120L)
+                .build();
+        Assert.assertEquals("120", apiEvent.getRedirectHeadStartTime());
+    }
 }
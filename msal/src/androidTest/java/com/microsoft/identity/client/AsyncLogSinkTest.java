@@ -0,0 +1,177 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for {@link AsyncLogSink}.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public final class AsyncLogSinkTest {
+    static final String TAG = "someTestTag";
+    static final long TIMEOUT_MILLIS = 1000;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCapacity() {
+        new AsyncLogSink(0, Logger.OverflowPolicy.DROP_OLDEST, new AtomicReference<ILoggerCallback>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullOverflowPolicy() {
+        new AsyncLogSink(1, null, new AtomicReference<ILoggerCallback>());
+    }
+
+    @Test
+    public void testMessagesDeliveredInOrder() {
+        final RecordingCallback callback = new RecordingCallback(null);
+        final AsyncLogSink sink = new AsyncLogSink(10, Logger.OverflowPolicy.DROP_OLDEST,
+                new AtomicReference<ILoggerCallback>(callback));
+
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(sink.offer(TAG, Logger.LogLevel.INFO, "message" + i, false));
+        }
+
+        Assert.assertTrue(sink.flush(TIMEOUT_MILLIS));
+        Assert.assertEquals(5, callback.getMessages().size());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("message" + i, callback.getMessages().get(i));
+        }
+
+        sink.shutdown(TIMEOUT_MILLIS);
+        Assert.assertFalse(sink.offer(TAG, Logger.LogLevel.INFO, "after shutdown", false));
+    }
+
+    @Test
+    public void testDropOldestOnOverflow() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingCallback callback = new RecordingCallback(release);
+        final AsyncLogSink sink = new AsyncLogSink(2, Logger.OverflowPolicy.DROP_OLDEST,
+                new AtomicReference<ILoggerCallback>(callback));
+
+        // the drain thread holds the first message while the callback is blocked.
+        sink.offer(TAG, Logger.LogLevel.INFO, "blocked", false);
+        Assert.assertTrue(callback.awaitFirstCall());
+        sink.offer(TAG, Logger.LogLevel.INFO, "message1", false);
+        sink.offer(TAG, Logger.LogLevel.INFO, "message2", false);
+        sink.offer(TAG, Logger.LogLevel.INFO, "message3", false);
+        release.countDown();
+
+        Assert.assertTrue(sink.flush(TIMEOUT_MILLIS));
+        final List<String> messages = callback.getMessages();
+        Assert.assertEquals(4, messages.size());
+        Assert.assertEquals("blocked", messages.get(0));
+        Assert.assertTrue(messages.get(1).contains("1 log messages were dropped"));
+        Assert.assertEquals("message2", messages.get(2));
+        Assert.assertEquals("message3", messages.get(3));
+        sink.shutdown(TIMEOUT_MILLIS);
+    }
+
+    @Test
+    public void testDropNewestOnOverflow() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingCallback callback = new RecordingCallback(release);
+        final AsyncLogSink sink = new AsyncLogSink(2, Logger.OverflowPolicy.DROP_NEWEST,
+                new AtomicReference<ILoggerCallback>(callback));
+
+        sink.offer(TAG, Logger.LogLevel.INFO, "blocked", false);
+        Assert.assertTrue(callback.awaitFirstCall());
+        sink.offer(TAG, Logger.LogLevel.INFO, "message1", false);
+        sink.offer(TAG, Logger.LogLevel.INFO, "message2", false);
+        sink.offer(TAG, Logger.LogLevel.INFO, "message3", false);
+        release.countDown();
+
+        Assert.assertTrue(sink.flush(TIMEOUT_MILLIS));
+        final List<String> messages = callback.getMessages();
+        Assert.assertEquals(4, messages.size());
+        Assert.assertTrue(messages.get(1).contains("1 log messages were dropped"));
+        Assert.assertEquals("message1", messages.get(2));
+        Assert.assertEquals("message2", messages.get(3));
+        sink.shutdown(TIMEOUT_MILLIS);
+    }
+
+    @Test
+    public void testFlushTimesOutWhenCallbackIsBlocked() {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AsyncLogSink sink = new AsyncLogSink(2, Logger.OverflowPolicy.DROP_OLDEST,
+                new AtomicReference<ILoggerCallback>(new RecordingCallback(release)));
+
+        sink.offer(TAG, Logger.LogLevel.INFO, "blocked", false);
+        Assert.assertFalse(sink.flush(100));
+        release.countDown();
+        Assert.assertTrue(sink.flush(TIMEOUT_MILLIS));
+        sink.shutdown(TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Records the delivered messages. If a release latch is given, the first call blocks until it is released.
+     */
+    private static final class RecordingCallback implements ILoggerCallback {
+        private final List<String> mMessages = Collections.synchronizedList(new ArrayList<String>());
+        private final CountDownLatch mFirstCall = new CountDownLatch(1);
+        private final CountDownLatch mRelease;
+
+        RecordingCallback(final CountDownLatch release) {
+            mRelease = release;
+        }
+
+        @Override
+        public void log(String tag, Logger.LogLevel logLevel, String message, boolean containsPII) {
+            mMessages.add(message);
+            if (mFirstCall.getCount() > 0) {
+                mFirstCall.countDown();
+                if (mRelease != null) {
+                    try {
+                        mRelease.await();
+                    } catch (final InterruptedException e) {
+                        Assert.fail();
+                    }
+                }
+            }
+        }
+
+        boolean awaitFirstCall() throws InterruptedException {
+            return mFirstCall.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        List<String> getMessages() {
+            return new ArrayList<>(mMessages);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.AndroidTestCase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests for {@link BatchSilentRequest}.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class BatchSilentRequestTest extends AndroidTestCase {
+    private static final String VALID_SCOPE = "scope1";
+    private static final String EXPIRED_SCOPE = "scope2";
+
+    private Context mAppContext;
+    private TokenCache mTokenCache;
+    private User mDefaultUser;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        System.setProperty("dexmaker.dexcache",
+                InstrumentationRegistry.getContext().getCacheDir().getPath());
+
+        Authority.RESOLVED_AUTHORITY.clear();
+        AndroidTestMockUtil.mockSuccessTenantDiscovery(SilentRequestTest.AUTHORIZE_ENDPOINT, SilentRequestTest.TOKEN_ENDPOINT);
+
+        mAppContext = new InteractiveRequestTest.MockContext(InstrumentationRegistry.getContext().getApplicationContext());
+        InteractiveRequestTest.mockNetworkConnected(mAppContext, true);
+        mTokenCache = new TokenCache(mAppContext);
+        AndroidTestUtil.removeAllTokens(mAppContext);
+
+        mDefaultUser = TokenCacheTest.getDefaultUser();
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT, TokenCacheTest.CLIENT_ID,
+                TokenCacheTest.getTokenResponseForDefaultUser(SilentRequestTest.ACCESS_TOKEN, SilentRequestTest.REFRESH_TOKEN,
+                        VALID_SCOPE, AndroidTestUtil.getValidExpiresOn(), TokenCacheTest.getDefaultClientInfo()));
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT, TokenCacheTest.CLIENT_ID,
+                TokenCacheTest.getTokenResponseForDefaultUser(SilentRequestTest.ACCESS_TOKEN, SilentRequestTest.REFRESH_TOKEN,
+                        EXPIRED_SCOPE, AndroidTestUtil.getExpiredDate(), TokenCacheTest.getDefaultClientInfo()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        AndroidTestUtil.removeAllTokens(mAppContext);
+        HttpUrlConnectionFactory.clearMockedConnectionQueue();
+    }
+
+    /**
+     * Verify that the cached access token is returned for the valid scope set, and a single refresh token grant is sent
+     * for the expired one.
+     */
+    @Test
+    public void testRefreshTokenGrantOnlyForMisses() throws MsalException, InterruptedException, IOException {
+        final HttpURLConnection mockedConnection = AndroidTestMockUtil.getMockedConnectionWithSuccessResponse(
+                AndroidTestUtil.getSuccessResponse(TokenCacheTest.getDefaultIdToken(), AndroidTestUtil.ACCESS_TOKEN, EXPIRED_SCOPE,
+                        TokenCacheTest.getDefaultClientInfo()));
+        Mockito.when(mockedConnection.getOutputStream()).thenReturn(Mockito.mock(OutputStream.class));
+        HttpUrlConnectionFactory.addMockedConnection(mockedConnection);
+
+        final List<AuthenticationRequestParameters> requestParameters = new ArrayList<>();
+        requestParameters.add(getRequestParameters(VALID_SCOPE));
+        requestParameters.add(getRequestParameters(EXPIRED_SCOPE));
+
+        final CountDownLatch resultLock = new CountDownLatch(1);
+        new BatchSilentRequest(mAppContext, requestParameters, mDefaultUser).getTokens(new BatchAuthenticationCallback() {
+            @Override
+            public void onCompleted(final List<AuthenticationResult> authenticationResults, final List<MsalException> exceptions) {
+                assertEquals(Collections.nCopies(2, null), exceptions);
+                assertEquals(SilentRequestTest.ACCESS_TOKEN, authenticationResults.get(0).getAccessToken());
+                assertEquals(AndroidTestUtil.ACCESS_TOKEN, authenticationResults.get(1).getAccessToken());
+                assertEquals(0, HttpUrlConnectionFactory.getMockedConnectionCountInQueue());
+                resultLock.countDown();
+            }
+        });
+
+        resultLock.await();
+    }
+
+    /**
+     * Verify that no refresh token grant is sent if the access tokens of every scope set are valid.
+     */
+    @Test
+    public void testAllAccessTokensValid() throws InterruptedException {
+        final List<AuthenticationRequestParameters> requestParameters = new ArrayList<>();
+        requestParameters.add(getRequestParameters(VALID_SCOPE));
+        requestParameters.add(getRequestParameters(VALID_SCOPE));
+
+        final CountDownLatch resultLock = new CountDownLatch(1);
+        new BatchSilentRequest(mAppContext, requestParameters, mDefaultUser).getTokens(new BatchAuthenticationCallback() {
+            @Override
+            public void onCompleted(final List<AuthenticationResult> authenticationResults, final List<MsalException> exceptions) {
+                assertEquals(Collections.nCopies(2, null), exceptions);
+                for (final AuthenticationResult authenticationResult : authenticationResults) {
+                    assertEquals(SilentRequestTest.ACCESS_TOKEN, authenticationResult.getAccessToken());
+                }
+                resultLock.countDown();
+            }
+        });
+
+        resultLock.await();
+    }
+
+    private AuthenticationRequestParameters getRequestParameters(final String scope) {
+        return AuthenticationRequestParameters.create(Authority.createAuthority(AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT, false),
+                mTokenCache, Collections.singleton(scope), TokenCacheTest.CLIENT_ID, "some redirect", "", "", UiBehavior.SELECT_ACCOUNT,
+                null, null, new RequestContext(UUID.randomUUID(), "", Telemetry.generateNewRequestId()));
+    }
+}
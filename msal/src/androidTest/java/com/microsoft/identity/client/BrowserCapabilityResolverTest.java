@@ -0,0 +1,112 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.content.pm.ServiceInfo;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link BrowserCapabilityResolver}.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public final class BrowserCapabilityResolverTest {
+    private Context mMockedContext;
+    private PackageManager mMockedPackageManager;
+
+    @Before
+    public void setUp() {
+        mMockedContext = Mockito.mock(Context.class);
+        mMockedPackageManager = Mockito.mock(PackageManager.class);
+        Mockito.when(mMockedContext.getPackageManager()).thenReturn(mMockedPackageManager);
+
+        final ResolveInfo mockedResolveInfo = Mockito.mock(ResolveInfo.class);
+        final ServiceInfo mockedServiceInfo = Mockito.mock(ServiceInfo.class);
+        mockedServiceInfo.packageName = MsalUtils.CHROME_PACKAGE;
+        mockedResolveInfo.serviceInfo = mockedServiceInfo;
+        final List<ResolveInfo> resolveInfos = new ArrayList<>();
+        resolveInfos.add(mockedResolveInfo);
+        Mockito.when(mMockedPackageManager.queryIntentServices(Matchers.any(Intent.class), Matchers.eq(0)))
+                .thenReturn(resolveInfos);
+    }
+
+    @After
+    public void tearDown() {
+        BrowserCapabilityResolver.getInstance().invalidate();
+    }
+
+    @Test
+    public void testChromePackageWithCustomTabSupportIsCached() {
+        final BrowserCapabilityResolver resolver = BrowserCapabilityResolver.getInstance();
+        Assert.assertEquals(MsalUtils.CHROME_PACKAGE, resolver.getChromePackageWithCustomTabSupport(mMockedContext));
+        Assert.assertEquals(MsalUtils.CHROME_PACKAGE, resolver.getChromePackageWithCustomTabSupport(mMockedContext));
+
+        Mockito.verify(mMockedPackageManager, Mockito.times(1)).queryIntentServices(Matchers.any(Intent.class),
+                Matchers.eq(0));
+    }
+
+    @Test
+    public void testInvalidateOnPackageChange() {
+        final BrowserCapabilityResolver resolver = BrowserCapabilityResolver.getInstance();
+        Assert.assertEquals(MsalUtils.CHROME_PACKAGE, resolver.getChromePackageWithCustomTabSupport(mMockedContext));
+
+        // chrome is uninstalled
+        Mockito.when(mMockedPackageManager.queryIntentServices(Matchers.any(Intent.class), Matchers.eq(0)))
+                .thenReturn(new ArrayList<ResolveInfo>());
+        resolver.invalidate();
+
+        Assert.assertNull(resolver.getChromePackageWithCustomTabSupport(mMockedContext));
+        Mockito.verify(mMockedPackageManager, Mockito.times(2)).queryIntentServices(Matchers.any(Intent.class),
+                Matchers.eq(0));
+    }
+
+    @Test
+    public void testCacheDroppedForDifferentPackageManager() {
+        final BrowserCapabilityResolver resolver = BrowserCapabilityResolver.getInstance();
+        Assert.assertEquals(MsalUtils.CHROME_PACKAGE, resolver.getChromePackageWithCustomTabSupport(mMockedContext));
+
+        final Context anotherContext = Mockito.mock(Context.class);
+        final PackageManager anotherPackageManager = Mockito.mock(PackageManager.class);
+        Mockito.when(anotherContext.getPackageManager()).thenReturn(anotherPackageManager);
+        Assert.assertNull(resolver.getChromePackageWithCustomTabSupport(anotherContext));
+    }
+}
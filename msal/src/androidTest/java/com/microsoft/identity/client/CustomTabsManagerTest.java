@@ -0,0 +1,77 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.Looper;
+import android.support.customtabs.CustomTabsSession;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link CustomTabsManager}.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public final class CustomTabsManagerTest {
+    private static final long SESSION_TIMEOUT_MILLIS = 5000;
+
+    @Test
+    public void testSessionResolvedWithNullWhenCustomTabsNotSupported() throws InterruptedException {
+        final Context context = Mockito.mock(Context.class);
+        final PackageManager packageManager = Mockito.mock(PackageManager.class);
+        Mockito.when(context.getPackageManager()).thenReturn(packageManager);
+        Mockito.when(packageManager.queryIntentServices(Mockito.any(Intent.class), Mockito.anyInt())).thenReturn(
+                Collections.<ResolveInfo>emptyList());
+
+        final CountDownLatch sessionLock = new CountDownLatch(1);
+        final long startTime = System.currentTimeMillis();
+        CustomTabsManager.getInstance().getSession(context, SESSION_TIMEOUT_MILLIS, new CustomTabsManager.SessionListener() {
+            @Override
+            public void onSessionResolved(final CustomTabsSession customTabsSession) {
+                Assert.assertNull(customTabsSession);
+                Assert.assertTrue(Looper.myLooper() == Looper.getMainLooper());
+                sessionLock.countDown();
+            }
+        });
+
+        // Failure to find the custom tab service is reported without waiting for the timeout.
+        Assert.assertTrue(sessionLock.await(SESSION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - startTime < SESSION_TIMEOUT_MILLIS);
+    }
+}
@@ -0,0 +1,178 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.identity.client;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Tests for {@link FileTokenCacheStorage}.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public final class FileTokenCacheStorageTest {
+    private static final String PARTITION = "com.microsoft.identity.client.test.storage";
+
+    private Context mAppContext;
+    private File mLockFile;
+    private File mCacheDir;
+
+    @Before
+    public void setUp() {
+        mAppContext = InstrumentationRegistry.getContext().getApplicationContext();
+        mLockFile = new File(mAppContext.getCacheDir(), "msal.test.lock");
+        mLockFile.delete();
+        mCacheDir = new File(mAppContext.getCacheDir(), "msal.test.storage");
+        deleteCacheDir();
+        mAppContext.getSharedPreferences(PARTITION, Context.MODE_PRIVATE).edit().clear().commit();
+    }
+
+    @After
+    public void tearDown() {
+        mAppContext.getSharedPreferences(PARTITION, Context.MODE_PRIVATE).edit().clear().commit();
+        deleteCacheDir();
+        mLockFile.delete();
+    }
+
+    /**
+     * Verify that the partition is loaded again once another process has written into it.
+     */
+    @Test
+    public void testReloadedAfterWriteByAnotherProcess() {
+        final TokenCacheLock cacheLock = new TokenCacheLock(mLockFile);
+        final FileTokenCacheStorage storage = new FileTokenCacheStorage(mAppContext, cacheLock, mCacheDir);
+        write(storage, cacheLock, Collections.singletonMap("key1", "value1"));
+        Assert.assertEquals("value1", storage.get(PARTITION, "key1"));
+        Assert.assertEquals(Long.valueOf(cacheLock.getGeneration()), cacheLock.getLoadedGeneration(PARTITION));
+
+        final TokenCacheLock otherProcessLock = new TokenCacheLock(mLockFile);
+        write(new FileTokenCacheStorage(mAppContext, otherProcessLock, mCacheDir), otherProcessLock,
+                Collections.singletonMap("key2", "value\"2"));
+
+        final Map<String, String> records = storage.getAll(PARTITION);
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals("value1", records.get("key1"));
+        Assert.assertEquals("value\"2", records.get("key2"));
+    }
+
+    /**
+     * Verify that a partition without a file is loaded at the current generation, and isn't read again until the cache
+     * is written.
+     */
+    @Test
+    public void testMissingFileLoadedAtCurrentGeneration() {
+        final TokenCacheLock cacheLock = new TokenCacheLock(mLockFile);
+        final FileTokenCacheStorage storage = new FileTokenCacheStorage(mAppContext, cacheLock, mCacheDir);
+
+        Assert.assertTrue(storage.getAll(PARTITION).isEmpty());
+        Assert.assertFalse(storage.getPartitionFile(PARTITION).exists());
+        Assert.assertEquals(Long.valueOf(cacheLock.getGeneration()), cacheLock.getLoadedGeneration(PARTITION));
+    }
+
+    /**
+     * Verify that the loaded records are kept if the file can't be read.
+     */
+    @Test
+    public void testLoadedRecordsKeptIfFileCantBeRead() throws IOException {
+        final TokenCacheLock cacheLock = new TokenCacheLock(mLockFile);
+        final FileTokenCacheStorage storage = new FileTokenCacheStorage(mAppContext, cacheLock, mCacheDir);
+        write(storage, cacheLock, Collections.singletonMap("key1", "value1"));
+        Assert.assertEquals("value1", storage.get(PARTITION, "key1"));
+
+        final FileOutputStream outputStream = new FileOutputStream(storage.getPartitionFile(PARTITION));
+        try {
+            outputStream.write("{\"key2\":".getBytes(Charset.forName(MsalUtils.ENCODING_UTF8)));
+        } finally {
+            outputStream.close();
+        }
+        final TokenCacheLock otherProcessLock = new TokenCacheLock(mLockFile);
+        otherProcessLock.lock();
+        try {
+            otherProcessLock.incrementGeneration();
+        } finally {
+            otherProcessLock.unlock();
+        }
+
+        Assert.assertEquals("value1", storage.get(PARTITION, "key1"));
+        Assert.assertNull(storage.get(PARTITION, "key2"));
+    }
+
+    /**
+     * Verify that the records kept in the SharedPreferences by the previous versions are moved into the partition file.
+     */
+    @Test
+    public void testRecordsMovedOutOfSharedPreferences() {
+        mAppContext.getSharedPreferences(PARTITION, Context.MODE_PRIVATE).edit().putString("key1", "value1").commit();
+
+        final FileTokenCacheStorage storage = createStorage();
+        Assert.assertEquals("value1", storage.get(PARTITION, "key1"));
+        Assert.assertTrue(storage.getPartitionFile(PARTITION).exists());
+        Assert.assertTrue(mAppContext.getSharedPreferences(PARTITION, Context.MODE_PRIVATE).getAll().isEmpty());
+
+        Assert.assertEquals("value1", createStorage().get(PARTITION, "key1"));
+    }
+
+    private FileTokenCacheStorage createStorage() {
+        return new FileTokenCacheStorage(mAppContext, new TokenCacheLock(mLockFile), mCacheDir);
+    }
+
+    /**
+     * Write the records into the partition while holding the lock, as the {@link TokenCacheAccessor} does.
+     */
+    private void write(final FileTokenCacheStorage storage, final TokenCacheLock cacheLock,
+                       final Map<String, String> records) {
+        cacheLock.lock();
+        try {
+            Assert.assertTrue(storage.commit(PARTITION, records, Collections.<String>emptyList()));
+            cacheLock.incrementGeneration();
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private void deleteCacheDir() {
+        final File[] files = mCacheDir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        mCacheDir.delete();
+    }
+}
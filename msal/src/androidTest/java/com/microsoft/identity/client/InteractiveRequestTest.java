@@ -43,6 +43,7 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
@@ -194,6 +195,21 @@ public final class InteractiveRequestTest extends AndroidTestCase {
         assertTrue(codeChallengeMethod.equals("S256"));
     }
 
+    @Test
+    public void testPKCEChallengeFromPoolNotReused() throws UnsupportedEncodingException, MsalException, InterruptedException {
+        InteractiveRequest.PKCEChallengeFactory.prefill();
+        // having the pool filled in the background.
+        Thread.sleep(THREAD_DELAY_TIME);
+
+        final Set<String> codeChallenges = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            final InteractiveRequest interactiveRequest = new InteractiveRequest(Mockito.mock(Activity.class),
+                    getAuthenticationParams(AUTHORITY, UiBehavior.CONSENT, null), null);
+            final Uri authorizationUri = Uri.parse(interactiveRequest.appendQueryStringToAuthorizeEndpoint());
+            assertTrue(codeChallenges.add(authorizationUri.getQueryParameter(OauthConstants.Oauth2Parameters.CODE_CHALLENGE)));
+        }
+    }
+
     @Test
     public void testGetAuthorizationUriContainsSessionContinuationParams() throws UnsupportedEncodingException, MsalClientException {
         final User user = new User(AndroidTestUtil.PREFERRED_USERNAME, "name", AndroidTestUtil.ISSUER, AndroidTestUtil.UID, AndroidTestUtil.UTID);
@@ -241,6 +257,23 @@ public final class InteractiveRequestTest extends AndroidTestCase {
         }
     }
 
+    @Test
+    public void testAuthorizeUrlTemplateReused() throws UnsupportedEncodingException {
+        final String authorizeEndpoint = getExpectedAuthorizeEndpoint();
+        final InteractiveRequest.AuthorizeUrlTemplate template = InteractiveRequest.AuthorizeUrlTemplate.getTemplate(
+                authorizeEndpoint, CLIENT_ID, mRedirectUri);
+        assertTrue(template == InteractiveRequest.AuthorizeUrlTemplate.getTemplate(authorizeEndpoint, CLIENT_ID,
+                mRedirectUri));
+        assertFalse(template == InteractiveRequest.AuthorizeUrlTemplate.getTemplate(authorizeEndpoint, CLIENT_ID,
+                mRedirectUri + "/other"));
+
+        final Uri urlPrefix = Uri.parse(template.getUrlPrefix());
+        assertTrue(CLIENT_ID.equals(urlPrefix.getQueryParameter(OauthConstants.Oauth2Parameters.CLIENT_ID)));
+        assertTrue(mRedirectUri.equals(urlPrefix.getQueryParameter(OauthConstants.Oauth2Parameters.REDIRECT_URI)));
+        assertTrue(template.containsParameter(PlatformIdHelper.PlatformIdParameters.PRODUCT));
+        assertFalse(template.containsParameter(OauthConstants.Oauth2Parameters.STATE));
+    }
+
     @Test
     public void testRequestContainsValidExtraQp() throws UnsupportedEncodingException {
         final String extraQp = "&slice=testslice";
@@ -378,7 +411,7 @@ public final class InteractiveRequestTest extends AndroidTestCase {
 
         final Intent resultIntent = new Intent();
         resultIntent.putExtra(Constants.AUTHORIZATION_FINAL_URL, mRedirectUri
-                + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(AUTHORITY, getScopes()));
+                + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(testActivity));
 
         mockNetworkConnected(mAppContext, false);
 
@@ -391,6 +424,195 @@ public final class InteractiveRequestTest extends AndroidTestCase {
         verifyStartActivityForResultCalled(testActivity);
     }
 
+    /**
+     * Verify that the request executor is not held while the interactive request waits for the authorization result,
+     * silent request started in the meantime is completed before the interactive one.
+     */
+    @Test
+    public void testSilentRequestNotBlockedByPendingInteractiveRequest() throws IOException, InterruptedException,
+            MsalException {
+        final Activity testActivity = Mockito.mock(Activity.class);
+        Mockito.when(testActivity.getPackageName()).thenReturn(mAppContext.getPackageName());
+        Mockito.when(testActivity.getApplicationContext()).thenReturn(mAppContext);
+
+        // mock http call
+        AndroidTestMockUtil.mockSuccessTenantDiscovery(getExpectedAuthorizeEndpoint(), getExpectedTokenEndpoint());
+        mockSuccessHttpRequestCallWithNoRT();
+
+        final BaseRequest request = createInteractiveRequest(AUTHORITY, testActivity);
+        final CountDownLatch resultLock = new CountDownLatch(1);
+        request.getToken(new AuthenticationCallback() {
+            @Override
+            public void onSuccess(AuthenticationResult authenticationResult) {
+                resultLock.countDown();
+            }
+
+            @Override
+            public void onError(MsalException exception) {
+                fail();
+            }
+
+            @Override
+            public void onCancel() {
+                fail();
+            }
+        });
+
+        // having the thread delayed for preTokenRequest to finish.
+        resultLock.await(THREAD_DELAY_TIME, TimeUnit.MILLISECONDS);
+        verifyStartActivityForResultCalled(testActivity);
+
+        // no token in the cache, silent request should fail with no_tokens_found without waiting for the interactive
+        // request.
+        final CountDownLatch silentRequestLock = new CountDownLatch(1);
+        final BaseRequest silentRequest = new SilentRequest(mAppContext, getAuthenticationParams(AUTHORITY,
+                UiBehavior.FORCE_LOGIN, null), false, TokenCacheTest.getDefaultUser());
+        silentRequest.getToken(new AuthenticationCallback() {
+            @Override
+            public void onSuccess(AuthenticationResult authenticationResult) {
+                fail();
+            }
+
+            @Override
+            public void onError(MsalException exception) {
+                assertTrue(MsalUiRequiredException.NO_TOKENS_FOUND.equals(exception.getErrorCode()));
+                silentRequestLock.countDown();
+            }
+
+            @Override
+            public void onCancel() {
+                fail();
+            }
+        });
+
+        assertTrue(silentRequestLock.await(THREAD_DELAY_TIME, TimeUnit.MILLISECONDS));
+        assertTrue(resultLock.getCount() == 1);
+
+        final Intent resultIntent = new Intent();
+        resultIntent.putExtra(Constants.AUTHORIZATION_FINAL_URL, mRedirectUri
+                + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(testActivity));
+        InteractiveRequest.onActivityResult(InteractiveRequest.BROWSER_FLOW,
+                Constants.UIResponse.AUTH_CODE_COMPLETE, resultIntent);
+
+        resultLock.await();
+    }
+
+    /**
+     * Verify that the embedded WebView mode and the redirect uri to intercept are passed to {@link AuthenticationActivity}.
+     */
+    @Test
+    public void testEmbeddedWebViewRequested() throws IOException, InterruptedException {
+        final Activity testActivity = Mockito.mock(Activity.class);
+        Mockito.when(testActivity.getPackageName()).thenReturn(mAppContext.getPackageName());
+        Mockito.when(testActivity.getApplicationContext()).thenReturn(mAppContext);
+
+        // mock http call
+        AndroidTestMockUtil.mockSuccessTenantDiscovery(getExpectedAuthorizeEndpoint(), getExpectedTokenEndpoint());
+        mockSuccessHttpRequestCallWithNoRT();
+
+        final InteractiveRequest request = new InteractiveRequest(testActivity, getAuthenticationParams(AUTHORITY,
+                UiBehavior.FORCE_LOGIN, null), null);
+        request.setUseEmbeddedWebView(true);
+        final CountDownLatch resultLock = new CountDownLatch(1);
+        request.getToken(getSuccessCallback(resultLock));
+
+        // having the thread delayed for preTokenRequest to finish.
+        resultLock.await(THREAD_DELAY_TIME, TimeUnit.MILLISECONDS);
+
+        final ArgumentCaptor<Intent> intentCaptor = ArgumentCaptor.forClass(Intent.class);
+        Mockito.verify(testActivity).startActivityForResult(intentCaptor.capture(), Mockito.eq(InteractiveRequest.BROWSER_FLOW));
+        final Intent launchedIntent = intentCaptor.getValue();
+        assertTrue(launchedIntent.getBooleanExtra(Constants.USE_EMBEDDED_WEBVIEW, false));
+        assertTrue(mRedirectUri.equals(launchedIntent.getStringExtra(Constants.REDIRECT_URI_KEY)));
+
+        InteractiveRequest.onActivityResult(InteractiveRequest.BROWSER_FLOW, Constants.UIResponse.AUTH_CODE_COMPLETE,
+                getAuthCodeResultIntent(launchedIntent));
+        resultLock.await();
+    }
+
+    /**
+     * Verify that two interactive requests can be pending at the same time, and each authorization result is routed to
+     * the request it's launched for.
+     */
+    @Test
+    public void testConcurrentInteractiveRequestsRoutedByRequestId() throws IOException, InterruptedException {
+        final Activity testActivity = Mockito.mock(Activity.class);
+        Mockito.when(testActivity.getPackageName()).thenReturn(mAppContext.getPackageName());
+        Mockito.when(testActivity.getApplicationContext()).thenReturn(mAppContext);
+
+        // mock http call, tenant discovery is only done for the first request.
+        AndroidTestMockUtil.mockSuccessTenantDiscovery(getExpectedAuthorizeEndpoint(), getExpectedTokenEndpoint());
+        mockSuccessHttpRequestCallWithNoRT();
+        mockSuccessHttpRequestCallWithNoRT();
+
+        final CountDownLatch firstResultLock = new CountDownLatch(1);
+        final CountDownLatch secondResultLock = new CountDownLatch(1);
+        createInteractiveRequest(AUTHORITY, testActivity).getToken(getSuccessCallback(firstResultLock));
+        createInteractiveRequest(AUTHORITY, testActivity).getToken(getSuccessCallback(secondResultLock));
+
+        // having the thread delayed for both preTokenRequest to finish.
+        firstResultLock.await(THREAD_DELAY_TIME, TimeUnit.MILLISECONDS);
+
+        final ArgumentCaptor<Intent> intentCaptor = ArgumentCaptor.forClass(Intent.class);
+        Mockito.verify(testActivity, Mockito.times(2)).startActivityForResult(intentCaptor.capture(),
+                Mockito.eq(InteractiveRequest.BROWSER_FLOW));
+        final Intent firstIntent = intentCaptor.getAllValues().get(0);
+        final Intent secondIntent = intentCaptor.getAllValues().get(1);
+        assertTrue(firstIntent.getIntExtra(Constants.REQUEST_ID, 0) != secondIntent.getIntExtra(Constants.REQUEST_ID, 0));
+
+        // complete the second request first.
+        InteractiveRequest.onActivityResult(InteractiveRequest.BROWSER_FLOW, Constants.UIResponse.AUTH_CODE_COMPLETE,
+                getAuthCodeResultIntent(secondIntent));
+        secondResultLock.await();
+        assertTrue(firstResultLock.getCount() == 1);
+
+        InteractiveRequest.onActivityResult(InteractiveRequest.BROWSER_FLOW, Constants.UIResponse.AUTH_CODE_COMPLETE,
+                getAuthCodeResultIntent(firstIntent));
+        firstResultLock.await();
+    }
+
+    /**
+     * Verify that with several pending requests, a result without a request id is only delivered to the request whose
+     * state it carries, and one without a state is delivered to none of them.
+     */
+    @Test
+    public void testResultWithoutRequestIdMatchedByState() throws IOException, InterruptedException {
+        final Activity testActivity = Mockito.mock(Activity.class);
+        Mockito.when(testActivity.getPackageName()).thenReturn(mAppContext.getPackageName());
+        Mockito.when(testActivity.getApplicationContext()).thenReturn(mAppContext);
+
+        AndroidTestMockUtil.mockSuccessTenantDiscovery(getExpectedAuthorizeEndpoint(), getExpectedTokenEndpoint());
+        mockSuccessHttpRequestCallWithNoRT();
+        mockSuccessHttpRequestCallWithNoRT();
+
+        final CountDownLatch firstResultLock = new CountDownLatch(1);
+        final CountDownLatch secondResultLock = new CountDownLatch(1);
+        createInteractiveRequest(AUTHORITY, testActivity).getToken(getSuccessCallback(firstResultLock));
+        createInteractiveRequest(AUTHORITY, testActivity).getToken(getSuccessCallback(secondResultLock));
+
+        // having the thread delayed for both preTokenRequest to finish.
+        firstResultLock.await(THREAD_DELAY_TIME, TimeUnit.MILLISECONDS);
+        final ArgumentCaptor<Intent> intentCaptor = ArgumentCaptor.forClass(Intent.class);
+        Mockito.verify(testActivity, Mockito.times(2)).startActivityForResult(intentCaptor.capture(),
+                Mockito.eq(InteractiveRequest.BROWSER_FLOW));
+
+        // the cancellation can't be matched to either of the requests, they're left pending.
+        InteractiveRequest.onActivityResult(InteractiveRequest.BROWSER_FLOW, Constants.UIResponse.CANCEL,
+                new Intent());
+
+        final Intent resultIntent = new Intent();
+        resultIntent.putExtra(Constants.AUTHORIZATION_FINAL_URL, mRedirectUri + "?code=1234&state="
+                + AndroidTestUtil.getStateInAuthorizeRequest(intentCaptor.getAllValues().get(1)));
+        InteractiveRequest.onActivityResult(InteractiveRequest.BROWSER_FLOW, Constants.UIResponse.AUTH_CODE_COMPLETE,
+                resultIntent);
+        secondResultLock.await();
+        assertTrue(firstResultLock.getCount() == 1);
+
+        InteractiveRequest.onActivityResult(InteractiveRequest.BROWSER_FLOW, Constants.UIResponse.AUTH_CODE_COMPLETE,
+                getAuthCodeResultIntent(intentCaptor.getAllValues().get(0)));
+        firstResultLock.await();
+    }
+
     /**
      * Verify when auth code is successfully returned, result is delivered correctly.
      */
@@ -443,7 +665,7 @@ public final class InteractiveRequestTest extends AndroidTestCase {
 
         final Intent resultIntent = new Intent();
         resultIntent.putExtra(Constants.AUTHORIZATION_FINAL_URL, mRedirectUri
-                + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(AUTHORITY, getScopes()));
+                + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(testActivity));
         InteractiveRequest.onActivityResult(InteractiveRequest.BROWSER_FLOW,
                 Constants.UIResponse.AUTH_CODE_COMPLETE, resultIntent);
 
@@ -504,7 +726,7 @@ public final class InteractiveRequestTest extends AndroidTestCase {
 
         final Intent resultIntent = new Intent();
         resultIntent.putExtra(Constants.AUTHORIZATION_FINAL_URL, mRedirectUri
-                + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(AUTHORITY, getScopes()));
+                + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(testActivity));
         InteractiveRequest.onActivityResult(InteractiveRequest.BROWSER_FLOW,
                 Constants.UIResponse.AUTH_CODE_COMPLETE, resultIntent);
 
@@ -562,7 +784,7 @@ public final class InteractiveRequestTest extends AndroidTestCase {
 
         final Intent resultIntent = new Intent();
         resultIntent.putExtra(Constants.AUTHORIZATION_FINAL_URL, mRedirectUri + "?code=1234&state="
-                + AndroidTestUtil.encodeProtocolState(AUTHORITY, getScopes()));
+                + AndroidTestUtil.getStateInAuthorizeRequest(testActivity));
         InteractiveRequest.onActivityResult(InteractiveRequest.BROWSER_FLOW,
                 Constants.UIResponse.AUTH_CODE_COMPLETE, resultIntent);
 
@@ -788,6 +1010,41 @@ public final class InteractiveRequestTest extends AndroidTestCase {
         }.performTest();
     }
 
+    /**
+     * Verify that a state with the same authority and scopes, but without the nonce of the request, is rejected.
+     */
+    @Test
+    public void testStateInResponseOfAnotherRequest() throws IOException, InterruptedException {
+        new GetTokenAuthCodeUrlContainsErrorBaseTestCase() {
+            @Override
+            void makeAcquireTokenCall(final CountDownLatch countDownLatch, BaseRequest request) {
+                request.getToken(new AuthenticationCallback() {
+                    @Override
+                    public void onSuccess(AuthenticationResult authenticationResult) {
+                        fail("unexpected success");
+                    }
+
+                    @Override
+                    public void onError(MsalException exception) {
+                        assertTrue(MsalClientException.STATE_MISMATCH.equals(exception.getErrorCode()));
+                        assertTrue(Constants.MsalErrorMessage.STATE_NOT_THE_SAME.equals(exception.getMessage()));
+                        countDownLatch.countDown();
+                    }
+
+                    @Override
+                    public void onCancel() {
+                        fail("unexpected failure");
+                    }
+                });
+            }
+
+            @Override
+            String getFinalUrl() throws UnsupportedEncodingException {
+                return "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(AUTHORITY, getScopes());
+            }
+        }.performTest();
+    }
+
     @Test
     public void testStateInResponseNotContainAuthority() throws IOException, InterruptedException {
         new GetTokenAuthCodeUrlContainsErrorBaseTestCase() {
@@ -925,6 +1182,37 @@ public final class InteractiveRequestTest extends AndroidTestCase {
         HttpUrlConnectionFactory.addMockedConnection(mockedConnection);
     }
 
+    private AuthenticationCallback getSuccessCallback(final CountDownLatch resultLock) {
+        return new AuthenticationCallback() {
+            @Override
+            public void onSuccess(AuthenticationResult authenticationResult) {
+                Assert.assertTrue(AndroidTestUtil.ACCESS_TOKEN.equals(authenticationResult.getAccessToken()));
+                resultLock.countDown();
+            }
+
+            @Override
+            public void onError(MsalException exception) {
+                fail();
+            }
+
+            @Override
+            public void onCancel() {
+                fail();
+            }
+        };
+    }
+
+    /**
+     * @return The result of the {@link AuthenticationActivity} launched with the given intent, with the auth code.
+     */
+    private Intent getAuthCodeResultIntent(final Intent launchedIntent) {
+        final Intent resultIntent = new Intent();
+        resultIntent.putExtra(Constants.AUTHORIZATION_FINAL_URL, mRedirectUri
+                + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(launchedIntent));
+        resultIntent.putExtra(Constants.REQUEST_ID, launchedIntent.getIntExtra(Constants.REQUEST_ID, 0));
+        return resultIntent;
+    }
+
     private BaseRequest createInteractiveRequest(final String authority, final Activity testActivity) {
         return new InteractiveRequest(testActivity, getAuthenticationParams(authority,
                 UiBehavior.FORCE_LOGIN, null), null);
@@ -268,6 +268,34 @@ public final class LoggerTest {
         verifyLogMessageEmpty(LOG_RESPONSE);
     }
 
+    /**
+     * Verify that parameterized messages are only formatted when the level and PII checks pass.
+     */
+    @Test
+    public void testParameterizedLogging() {
+        Logger.getInstance().setLogLevel(Logger.LogLevel.INFO);
+        Assert.assertTrue(Logger.isLoggable(Logger.LogLevel.INFO, false));
+        Assert.assertFalse(Logger.isLoggable(Logger.LogLevel.VERBOSE, false));
+        Assert.assertFalse(Logger.isLoggable(Logger.LogLevel.INFO, true));
+
+        final Object failOnFormat = new Object() {
+            @Override
+            public String toString() {
+                Assert.fail("Disabled log message should not be formatted.");
+                return null;
+            }
+        };
+
+        Logger.verbose(TAG, REQUEST_CONTEXT_WITH_COMPONENT, "%s", failOnFormat);
+        verifyLogMessageEmpty(LOG_RESPONSE);
+
+        Logger.infoPII(TAG, REQUEST_CONTEXT_WITH_COMPONENT, "%s", failOnFormat);
+        verifyLogMessageEmpty(LOG_RESPONSE);
+
+        Logger.info(TAG, REQUEST_CONTEXT_WITH_COMPONENT, "test %s", "message");
+        verifyLogMessage(REQUEST_CONTEXT_WITH_COMPONENT, LOG_RESPONSE, false, MESSAGE, null);
+    }
+
     private void verifyLogMessage(final RequestContext requestContext, final LogResponse response, boolean containsPII,
                                   final String logMessage, final Throwable throwable) {
         Assert.assertTrue(response.getTag().equals(TAG));
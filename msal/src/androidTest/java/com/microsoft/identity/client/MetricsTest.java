@@ -0,0 +1,132 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link Metrics}.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public final class MetricsTest {
+
+    @Before
+    public void setUp() {
+        Metrics.getInstance().reset();
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.getInstance().reset();
+    }
+
+    @Test
+    public void testCountersInSnapshot() {
+        final Metrics metrics = Metrics.getInstance();
+        metrics.increment(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT);
+        metrics.increment(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT);
+        metrics.increment(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT);
+        metrics.increment(Metrics.Counter.ACCESS_TOKEN_CACHE_MISS);
+
+        final MetricsSnapshot snapshot = metrics.getSnapshot();
+        Assert.assertEquals(3, snapshot.getCount(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT));
+        Assert.assertEquals(1, snapshot.getCount(Metrics.Counter.ACCESS_TOKEN_CACHE_MISS));
+        Assert.assertEquals(0, snapshot.getCount(Metrics.Counter.HTTP_RETRY));
+        Assert.assertEquals(0.75, snapshot.getAccessTokenCacheHitRate(), 0.0001);
+
+        // snapshot doesn't change after more updates.
+        metrics.increment(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT);
+        Assert.assertEquals(3, snapshot.getCount(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT));
+        Assert.assertEquals(4, metrics.getSnapshot().getCount(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT));
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getSnapshot().getCount(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT));
+    }
+
+    @Test
+    public void testConcurrentIncrements() throws InterruptedException {
+        final int threadCount = 4;
+        final int incrementsPerThread = 10000;
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < incrementsPerThread; j++) {
+                        Metrics.getInstance().increment(Metrics.Counter.REFRESH_TOKEN_GRANT);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(threadCount * incrementsPerThread,
+                Metrics.getInstance().getSnapshot().getCount(Metrics.Counter.REFRESH_TOKEN_GRANT));
+    }
+
+    @Test
+    public void testSilentRequestLatencyPercentiles() {
+        final Metrics metrics = Metrics.getInstance();
+        Assert.assertEquals(0, metrics.getSnapshot().getSilentRequestLatencyPercentile(50));
+
+        // 90 fast requests, 10 slow ones.
+        for (int i = 0; i < 90; i++) {
+            metrics.recordSilentRequestLatency(20);
+        }
+        for (int i = 0; i < 10; i++) {
+            metrics.recordSilentRequestLatency(800);
+        }
+
+        final MetricsSnapshot snapshot = metrics.getSnapshot();
+        Assert.assertEquals(100, snapshot.getSilentRequestCount());
+        Assert.assertEquals(25, snapshot.getSilentRequestLatencyPercentile(50));
+        Assert.assertEquals(800, snapshot.getSilentRequestLatencyPercentile(95));
+        Assert.assertEquals(800, snapshot.getSilentRequestLatencyMax());
+    }
+
+    @Test
+    public void testSilentRequestLatencyOverflowBucket() {
+        Metrics.getInstance().recordSilentRequestLatency(60000);
+        Assert.assertEquals(60000, Metrics.getInstance().getSnapshot().getSilentRequestLatencyPercentile(99));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        Metrics.getInstance().getSnapshot().getSilentRequestLatencyPercentile(101);
+    }
+}
@@ -366,6 +366,29 @@ public final class MsalUtilTest {
 
     }
 
+    @Test
+    public void testIsRedirectUri() {
+        final String redirectUri = "msauth-client-id://com.microsoft.identity.client.sample";
+        Assert.assertTrue(MsalUtils.isRedirectUri(redirectUri + "?code=some_code&state=some_state", redirectUri));
+        Assert.assertTrue(MsalUtils.isRedirectUri("MSAUTH-CLIENT-ID://com.microsoft.identity.client.SAMPLE#code=some_code",
+                redirectUri));
+        Assert.assertTrue(MsalUtils.isRedirectUri("https://contoso.com/auth/callback?code=some_code",
+                "https://contoso.com/auth/callback"));
+    }
+
+    @Test
+    public void testIsRedirectUriRejectsLookalikes() {
+        final String redirectUri = "msauth-client-id://com.microsoft.identity.client.sample";
+        Assert.assertFalse(MsalUtils.isRedirectUri(redirectUri + ".evil/?code=some_code", redirectUri));
+        Assert.assertFalse(MsalUtils.isRedirectUri(redirectUri + "extra/path?code=some_code", redirectUri));
+        Assert.assertFalse(MsalUtils.isRedirectUri(redirectUri + "/path?code=some_code", redirectUri));
+        Assert.assertFalse(MsalUtils.isRedirectUri("msauth-client-id-evil://com.microsoft.identity.client.sample",
+                redirectUri));
+        Assert.assertFalse(MsalUtils.isRedirectUri("https://contoso.com/auth/callbackextra?code=some_code",
+                "https://contoso.com/auth/callback"));
+        Assert.assertFalse(MsalUtils.isRedirectUri(null, redirectUri));
+    }
+
     private String base64Decode(final String encodedString) {
         return new String(Base64.decode(encodedString.getBytes(Charset.forName(MsalUtils.ENCODING_UTF8)), Base64.NO_PADDING | Base64.URL_SAFE));
     }
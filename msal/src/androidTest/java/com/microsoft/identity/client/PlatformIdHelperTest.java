@@ -61,6 +61,11 @@ public final class PlatformIdHelperTest {
         Assert.assertTrue(platformParams.get(PlatformIdHelper.PlatformIdParameters.DEVICE_MODEL).equals(Build.MODEL));
     }
 
+    @Test
+    public void testPlatformIdHelperParamsComputedOnce() {
+        Assert.assertTrue(PlatformIdHelper.getPlatformIdParameters() == PlatformIdHelper.getPlatformIdParameters());
+    }
+
     @Test(expected = UnsupportedOperationException.class)
     public void testPlatformIdHelperReturnUnmodifiableMap() {
         final Map<String, String> platformParams = PlatformIdHelper.getPlatformIdParameters();
@@ -274,9 +274,9 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             }
 
             @Override
-            String getFinalAuthUrl() throws UnsupportedEncodingException {
-                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(
-                        DEFAULT_AUTHORITY, new HashSet<>(Arrays.asList(SCOPE)));
+            String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException {
+                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(
+                        testActivity);
             }
 
             @Override
@@ -353,9 +353,9 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             }
 
             @Override
-            String getFinalAuthUrl() throws UnsupportedEncodingException {
-                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(
-                        getAlternateAuthorityInManifest(), new HashSet<>(Arrays.asList(SCOPE)));
+            String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException {
+                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(
+                        testActivity);
             }
 
             @Override
@@ -437,9 +437,9 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             }
 
             @Override
-            String getFinalAuthUrl() throws UnsupportedEncodingException {
-                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(
-                        DEFAULT_AUTHORITY, new HashSet<>(Arrays.asList(SCOPE)));
+            String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException {
+                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(
+                        testActivity);
             }
         }.performTest();
     }
@@ -487,9 +487,9 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             }
 
             @Override
-            String getFinalAuthUrl() throws UnsupportedEncodingException {
-                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(
-                        DEFAULT_AUTHORITY, new HashSet<>(Arrays.asList(SCOPE)));
+            String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException {
+                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(
+                        testActivity);
             }
         }.performTest();
     }
@@ -531,9 +531,9 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             }
 
             @Override
-            String getFinalAuthUrl() throws UnsupportedEncodingException {
-                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(
-                        DEFAULT_AUTHORITY, new HashSet<>(Arrays.asList(SCOPE)));
+            String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException {
+                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(
+                        testActivity);
             }
 
             @Override
@@ -645,9 +645,9 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             }
 
             @Override
-            String getFinalAuthUrl() throws UnsupportedEncodingException {
-                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(
-                        ALTERNATE_AUTHORITY, new HashSet<>(Arrays.asList(SCOPE)));
+            String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException {
+                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(
+                        testActivity);
             }
 
             @Override
@@ -704,7 +704,7 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             }
 
             @Override
-            String getFinalAuthUrl() throws UnsupportedEncodingException {
+            String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException {
                 return mRedirectUri + "?error=access_denied&error_subcode=cancel";
             }
 
@@ -769,7 +769,7 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             }
 
             @Override
-            String getFinalAuthUrl() throws UnsupportedEncodingException {
+            String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException {
                 return "";
             }
         }.performTest();
@@ -818,9 +818,9 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             }
 
             @Override
-            String getFinalAuthUrl() throws UnsupportedEncodingException {
-                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(
-                        DEFAULT_AUTHORITY, new HashSet<>(Arrays.asList(SCOPE)));
+            String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException {
+                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(
+                        testActivity);
             }
 
             @Override
@@ -1012,9 +1012,9 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             }
 
             @Override
-            String getFinalAuthUrl() throws UnsupportedEncodingException {
-                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(
-                        DEFAULT_AUTHORITY, new HashSet<>(Arrays.asList(SCOPE)));
+            String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException {
+                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(
+                        testActivity);
             }
 
             @Override
@@ -1092,9 +1092,9 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             }
 
             @Override
-            String getFinalAuthUrl() throws UnsupportedEncodingException {
-                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(
-                        DEFAULT_AUTHORITY, new HashSet<>(Arrays.asList(SCOPE)));
+            String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException {
+                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(
+                        testActivity);
             }
         }.performTest();
     }
@@ -1137,9 +1137,9 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             }
 
             @Override
-            String getFinalAuthUrl() throws UnsupportedEncodingException {
-                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.encodeProtocolState(
-                        DEFAULT_AUTHORITY, new HashSet<>(Arrays.asList(SCOPE)));
+            String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException {
+                return mRedirectUri + "?code=1234&state=" + AndroidTestUtil.getStateInAuthorizeRequest(
+                        testActivity);
             }
         }.performTest();
     }
@@ -1271,7 +1271,7 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
                                            final Activity activity,
                                            final CountDownLatch releaseLock);
 
-        abstract String getFinalAuthUrl() throws UnsupportedEncodingException;
+        abstract String getFinalAuthUrl(final Activity testActivity) throws UnsupportedEncodingException;
 
         protected String getAlternateAuthorityInManifest() {
             return null;
@@ -1311,7 +1311,7 @@ public final class PublicClientApplicationTest extends AndroidTestCase {
             resultLock.await(InteractiveRequestTest.THREAD_DELAY_TIME, TimeUnit.MILLISECONDS);
 
             final Intent resultIntent = new Intent();
-            resultIntent.putExtra(Constants.AUTHORIZATION_FINAL_URL, getFinalAuthUrl());
+            resultIntent.putExtra(Constants.AUTHORIZATION_FINAL_URL, getFinalAuthUrl(testActivity));
             InteractiveRequest.onActivityResult(InteractiveRequest.BROWSER_FLOW,
                     Constants.UIResponse.AUTH_CODE_COMPLETE, resultIntent);
 
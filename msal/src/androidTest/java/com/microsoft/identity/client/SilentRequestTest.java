@@ -337,8 +337,9 @@ public final class SilentRequestTest extends AndroidTestCase {
 
                 assertTrue(AndroidTestUtil.getAllAccessTokens(mAppContext).size() == 2);
 
-                assertNotNull(AndroidTestUtil.getAccessTokenSharedPreference(mAppContext).getString(AccessTokenCacheKey.createTokenCacheKey(
-                        AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT, TokenCacheTest.CLIENT_ID, Collections.singleton(singleScope), mDefaultUser).toString(), null));
+                assertNotNull(AndroidTestUtil.getAccessTokenPartition(mAppContext, TokenCacheTest.CLIENT_ID, AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT)
+                        .get(AccessTokenCacheKey.createTokenCacheKey(AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT, TokenCacheTest.CLIENT_ID,
+                                Collections.singleton(singleScope), mDefaultUser).toString()));
                 // find token with the single scope1
                 // The access token for scope1 in the cache is no longer valid
                 assertNull(mTokenCache.findAccessToken(getRequestParameters(Collections.singleton(singleScope)), mDefaultUser));
@@ -584,6 +585,48 @@ public final class SilentRequestTest extends AndroidTestCase {
         assertTrue(AndroidTestUtil.getAllRefreshTokens(mAppContext).size() == 1);
     }
 
+    /**
+     * Verify that the expired access token still within its extended lifetime is returned if the token endpoint is
+     * unavailable.
+     */
+    @Test
+    public void testServiceUnavailableExtendedLifetimeTokenReturned() throws MsalException, InterruptedException,
+            IOException {
+        final String singleScope = "scope1";
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT, TokenCacheTest.CLIENT_ID,
+                TokenCacheTest.getTokenResponseForDefaultUser(ACCESS_TOKEN, REFRESH_TOKEN, singleScope, AndroidTestUtil.getExpiredDate(),
+                        TokenCacheTest.getDefaultClientInfo()));
+
+        // the request is retried once on 503.
+        mockServiceUnavailableResponse();
+        mockServiceUnavailableResponse();
+
+        final BaseRequest request = new SilentRequest(mAppContext, getRequestParameters(Collections.singleton(singleScope)), false, mDefaultUser);
+        final CountDownLatch resultLock = new CountDownLatch(1);
+        request.getToken(new AuthenticationCallback() {
+            @Override
+            public void onSuccess(AuthenticationResult authenticationResult) {
+                assertTrue(ACCESS_TOKEN.equals(authenticationResult.getAccessToken()));
+                assertTrue(authenticationResult.isExtendedLifetimeToken());
+                resultLock.countDown();
+            }
+
+            @Override
+            public void onError(MsalException exception) {
+                fail();
+            }
+
+            @Override
+            public void onCancel() {
+                fail();
+            }
+        });
+
+        resultLock.await();
+        // the refresh token is kept for the next request.
+        assertTrue(AndroidTestUtil.getAllRefreshTokens(mAppContext).size() == 1);
+    }
+
     private void verifyUserReturnedInResult(final AuthenticationResult result) {
         final User user = result.getUser();
         assertNotNull(user);
@@ -595,6 +638,13 @@ public final class SilentRequestTest extends AndroidTestCase {
                 new RequestContext(UUID.randomUUID(), "", Telemetry.generateNewRequestId()));
     }
 
+    private void mockServiceUnavailableResponse() throws IOException {
+        final HttpURLConnection mockedConnection = AndroidTestMockUtil.getMockedConnectionWithFailureResponse(
+                HttpURLConnection.HTTP_UNAVAILABLE, AndroidTestUtil.getErrorResponseMessage("service_unavailable"));
+        Mockito.when(mockedConnection.getOutputStream()).thenReturn(Mockito.mock(OutputStream.class));
+        HttpUrlConnectionFactory.addMockedConnection(mockedConnection);
+    }
+
     private void mockFailureResponse(final String errorCode) throws IOException {
         final HttpURLConnection mockedConnection = AndroidTestMockUtil.getMockedConnectionWithFailureResponse(
                 HttpURLConnection.HTTP_BAD_REQUEST, AndroidTestUtil.getErrorResponseMessage(errorCode));
@@ -33,6 +33,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -93,6 +95,21 @@ public final class TokenCacheAccessorTest extends AndroidTestCase {
         assertTrue(mAccessor.getAllAccessTokens(Telemetry.generateNewRequestId()).size() == 2);
     }
 
+    /**
+     * Verify that every write into the cache increments the cache generation, so other processes reload the storage.
+     */
+    @Test
+    public void testWriteIncrementsCacheGeneration() throws MsalException {
+        final long generation = mAccessor.getCacheLock().getGeneration();
+        mAccessor.saveAccessToken("access-token-key", "access-token", AndroidTestUtil.getTestRequestContext());
+        assertTrue(mAccessor.getCacheLock().getGeneration() > generation);
+
+        final long generationAfterSave = mAccessor.getCacheLock().getGeneration();
+        mAccessor.deleteAccessToken("access-token-key", AndroidTestUtil.getTestRequestContext());
+        assertTrue(mAccessor.getCacheLock().getGeneration() > generationAfterSave);
+        assertTrue(mAccessor.getAllAccessTokens(Telemetry.generateNewRequestId()).isEmpty());
+    }
+
     /**
      * Verify that RT is saved correctly for single user case.
      */
@@ -106,7 +123,7 @@ public final class TokenCacheAccessorTest extends AndroidTestCase {
     }
 
     @Test
-    public void testDeleteRTItems() {
+    public void testDeleteRTItems() throws MsalException {
         final String refreshTokenKey = "refresh-token-key1";
         final String refreshToken1 = "refresh-token1";
         mAccessor.saveRefreshToken(refreshTokenKey, refreshToken1, AndroidTestUtil.getTestRequestContext());
@@ -118,7 +135,7 @@ public final class TokenCacheAccessorTest extends AndroidTestCase {
     }
 
     @Test
-    public void testDeleteATItems() {
+    public void testDeleteATItems() throws MsalException {
         final String accessTokenKey = "access-token-key";
         final String accessToken = "access-token";
         mAccessor.saveAccessToken(accessTokenKey, accessToken, AndroidTestUtil.getTestRequestContext());
@@ -128,4 +145,87 @@ public final class TokenCacheAccessorTest extends AndroidTestCase {
         mAccessor.deleteAccessToken(accessTokenKey, AndroidTestUtil.getTestRequestContext());
         assertTrue(mAccessor.getAllAccessTokens(Telemetry.generateNewRequestId()).size() == 0);
     }
-}
\ No newline at end of file
+
+    /**
+     * Verify that tokens are stored in the partition of their client id and environment, and lookups only return the
+     * tokens of their own partition.
+     */
+    @Test
+    public void testTokensPartitionedByClientIdAndEnvironment() throws MsalException {
+        final User user = TokenCacheTest.getDefaultUser();
+        final Set<String> scopes = Collections.singleton("scope1");
+        final String sovereignAuthority = "https://login.microsoftonline.de/tenant";
+        mAccessor.saveAccessToken(AccessTokenCacheKey.createTokenCacheKey(AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT, "client1",
+                scopes, user).toString(), "access-token-1", AndroidTestUtil.getTestRequestContext());
+        mAccessor.saveAccessToken(AccessTokenCacheKey.createTokenCacheKey(AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT, "client2",
+                scopes, user).toString(), "access-token-2", AndroidTestUtil.getTestRequestContext());
+        mAccessor.saveAccessToken(AccessTokenCacheKey.createTokenCacheKey(sovereignAuthority, "client1", scopes, user).toString(),
+                "access-token-3", AndroidTestUtil.getTestRequestContext());
+        mAccessor.saveRefreshToken(RefreshTokenCacheKey.createTokenCacheKey("login.microsoftonline.de", "client1", user).toString(),
+                "refresh-token-1", AndroidTestUtil.getTestRequestContext());
+
+        final String environment = MsalUtils.getUrl(AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT).getHost();
+        final Collection<String> client1ATs = mAccessor.getAccessTokens("CLIENT1", environment, null, Telemetry.generateNewRequestId());
+        assertTrue(client1ATs.size() == 1);
+        assertTrue(client1ATs.contains("access-token-1"));
+        assertTrue(mAccessor.getAccessTokensForClientId("client1", null, Telemetry.generateNewRequestId()).size() == 2);
+        assertTrue(mAccessor.getAllAccessTokens(Telemetry.generateNewRequestId()).size() == 3);
+
+        assertTrue(mAccessor.getRefreshTokens("client1", "login.microsoftonline.de", null, Telemetry.generateNewRequestId()).size() == 1);
+        assertTrue(mAccessor.getRefreshTokens("client1", environment, null, Telemetry.generateNewRequestId()).isEmpty());
+    }
+
+    /**
+     * Verify that with encryption enabled the records are stored encrypted and read back in plain text, and that the
+     * records stored before are encrypted in place.
+     */
+    @Test
+    public void testEncryptedRecords() throws MsalException {
+        final User user = TokenCacheTest.getDefaultUser();
+        final String environment = MsalUtils.getUrl(AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT).getHost();
+        final String plainTextKey = RefreshTokenCacheKey.createTokenCacheKey(environment, "client1", user).toString();
+        mAccessor.saveRefreshToken(plainTextKey, "refresh-token", AndroidTestUtil.getTestRequestContext());
+
+        mAccessor.setEncryptionEnabled(true);
+        final String accessTokenKey = AccessTokenCacheKey.createTokenCacheKey(AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT,
+                "client1", Collections.singleton("scope1"), user).toString();
+        mAccessor.saveAccessToken(accessTokenKey, "access-token", AndroidTestUtil.getTestRequestContext());
+
+        final String partitionId = TokenCacheAccessor.getPartitionId("client1", environment);
+        final FileTokenCacheStorage storage = FileTokenCacheStorage.getInstance(mAppContext);
+        final String storedAccessToken = storage.get("com.microsoft.identity.client.token." + partitionId, accessTokenKey);
+        assertTrue(TokenCacheCipher.isEncrypted(storedAccessToken));
+        assertFalse(storedAccessToken.contains("access-token"));
+        assertTrue(mAccessor.getAccessTokens("client1", environment, null, Telemetry.generateNewRequestId()).contains("access-token"));
+
+        assertTrue(mAccessor.encryptPlainTextRecords() == 1);
+        assertTrue(TokenCacheCipher.isEncrypted(storage.get("com.microsoft.identity.client.refreshToken." + partitionId,
+                plainTextKey)));
+        assertTrue(mAccessor.getRefreshTokens("client1", environment, null, Telemetry.generateNewRequestId()).contains("refresh-token"));
+    }
+
+    @Test
+    public void testUnauthenticRecordDeleted() throws MsalException {
+        final User user = TokenCacheTest.getDefaultUser();
+        final String environment = MsalUtils.getUrl(AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT).getHost();
+        mAccessor.setEncryptionEnabled(true);
+        final String accessTokenKey = AccessTokenCacheKey.createTokenCacheKey(AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT,
+                "client1", Collections.singleton("scope1"), user).toString();
+        mAccessor.saveAccessToken(accessTokenKey, "access-token", AndroidTestUtil.getTestRequestContext());
+
+        // the record is authenticated with its cache key, it fails to decrypt under another key.
+        final String partition = "com.microsoft.identity.client.token." + TokenCacheAccessor.getPartitionId("client1", environment);
+        final FileTokenCacheStorage storage = FileTokenCacheStorage.getInstance(mAppContext);
+        final String movedKey = AccessTokenCacheKey.createTokenCacheKey(AndroidTestUtil.DEFAULT_AUTHORITY_WITH_TENANT,
+                "client1", Collections.singleton("scope2"), user).toString();
+        storage.write(partition, Collections.singletonMap(movedKey, storage.get(partition, accessTokenKey)),
+                Collections.<String>emptyList());
+
+        final Collection<String> accessTokens = mAccessor.getAccessTokens("client1", environment, null,
+                Telemetry.generateNewRequestId());
+        assertTrue(accessTokens.size() == 1);
+        assertTrue(accessTokens.contains("access-token"));
+        assertNull(storage.get(partition, movedKey));
+        assertNotNull(storage.get(partition, accessTokenKey));
+    }
+}
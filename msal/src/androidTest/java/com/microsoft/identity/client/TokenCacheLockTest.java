@@ -0,0 +1,153 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+/**
+ * Tests for {@link TokenCacheLock}.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public final class TokenCacheLockTest {
+    private File mLockFile;
+
+    @Before
+    public void setUp() {
+        mLockFile = new File(InstrumentationRegistry.getContext().getCacheDir(), "msal.test.lock");
+        mLockFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mLockFile.delete();
+    }
+
+    @Test
+    public void testGenerationIncremented() {
+        final TokenCacheLock cacheLock = new TokenCacheLock(mLockFile);
+        Assert.assertEquals(0, cacheLock.getGeneration());
+
+        cacheLock.lock();
+        try {
+            Assert.assertEquals(1, cacheLock.incrementGeneration());
+            Assert.assertEquals(2, cacheLock.incrementGeneration());
+        } finally {
+            cacheLock.unlock();
+        }
+
+        Assert.assertEquals(2, cacheLock.getGeneration());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIncrementGenerationWithoutLock() {
+        new TokenCacheLock(mLockFile).incrementGeneration();
+    }
+
+    /**
+     * Verify that the generation written with one lock is seen with another lock on the same file, as it would be by
+     * another process, and that the file lock is released once the outermost hold is released.
+     */
+    @Test
+    public void testGenerationSharedThroughLockFile() {
+        final TokenCacheLock cacheLock = new TokenCacheLock(mLockFile);
+        cacheLock.lock();
+        cacheLock.lock();
+        try {
+            cacheLock.incrementGeneration();
+        } finally {
+            cacheLock.unlock();
+            cacheLock.unlock();
+        }
+
+        final TokenCacheLock otherProcessLock = new TokenCacheLock(mLockFile);
+        Assert.assertEquals(1, otherProcessLock.getGeneration());
+        otherProcessLock.lock();
+        try {
+            otherProcessLock.incrementGeneration();
+        } finally {
+            otherProcessLock.unlock();
+        }
+
+        Assert.assertEquals(2, cacheLock.getGeneration());
+    }
+
+    /**
+     * Verify that a loaded state stays up to date through the writes made with the lock, and goes stale once another
+     * process writes.
+     */
+    @Test
+    public void testLoadedStateUpToDate() {
+        final TokenCacheLock cacheLock = new TokenCacheLock(mLockFile);
+        Assert.assertNull(cacheLock.setLoadedGeneration("state", cacheLock.getGeneration()));
+        cacheLock.lock();
+        try {
+            cacheLock.incrementGeneration();
+        } finally {
+            cacheLock.unlock();
+        }
+        Assert.assertEquals(Long.valueOf(cacheLock.getGeneration()), cacheLock.getLoadedGeneration("state"));
+
+        final TokenCacheLock otherProcessLock = new TokenCacheLock(mLockFile);
+        otherProcessLock.lock();
+        try {
+            otherProcessLock.incrementGeneration();
+        } finally {
+            otherProcessLock.unlock();
+        }
+        Assert.assertFalse(Long.valueOf(cacheLock.getGeneration()).equals(cacheLock.getLoadedGeneration("state")));
+    }
+
+    /**
+     * Verify that the generation is kept in memory if the lock file can't be opened, so a loaded state stays up to date
+     * through the writes of the process.
+     */
+    @Test
+    public void testGenerationKeptInMemoryWithoutLockFile() {
+        final TokenCacheLock cacheLock = new TokenCacheLock(mLockFile.getParentFile());
+        Assert.assertEquals(0, cacheLock.getGeneration());
+        cacheLock.setLoadedGeneration("state", cacheLock.getGeneration());
+
+        cacheLock.lock();
+        try {
+            Assert.assertEquals(1, cacheLock.incrementGeneration());
+        } finally {
+            cacheLock.unlock();
+        }
+
+        Assert.assertEquals(1, cacheLock.getGeneration());
+        Assert.assertEquals(Long.valueOf(1), cacheLock.getLoadedGeneration("state"));
+    }
+}
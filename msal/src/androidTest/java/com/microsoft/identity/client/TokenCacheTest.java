@@ -33,13 +33,25 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
 
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
 /**
  * Tests for {@link TokenCache}.
  */
@@ -101,7 +113,7 @@ public final class TokenCacheTest extends AndroidTestCase {
         // Verify token was inserted
         assertNotNull(mTokenCache.findRefreshToken(requestParameters, mDefaultUser));
         // Delete that token
-        mTokenCache.deleteRefreshTokenByUser(mDefaultUser, AndroidTestUtil.getTestRequestContext());
+        mTokenCache.removeTokensForUser(CLIENT_ID, mDefaultUser, AndroidTestUtil.getTestRequestContext());
         // Verify that the token is deleted
         assertNull(mTokenCache.findRefreshToken(requestParameters, mDefaultUser));
     }
@@ -113,7 +125,7 @@ public final class TokenCacheTest extends AndroidTestCase {
         // Add a refresh token to the cache for the default user
         addTokenForUser(true);
         // Delete the default user's token
-        mTokenCache.deleteRefreshTokenByUser(mDefaultUser, AndroidTestUtil.getTestRequestContext());
+        mTokenCache.removeTokensForUser(CLIENT_ID, mDefaultUser, AndroidTestUtil.getTestRequestContext());
         // Verify that that the cache still contains the other token
         assertNotNull(mTokenCache.findRefreshToken(differentUserParams, User.create(new IdToken(getIdTokenForDifferentUser()),
                 new ClientInfo(getClientInfoForDifferentUser()))));
@@ -126,7 +138,7 @@ public final class TokenCacheTest extends AndroidTestCase {
         // Verify that token was inserted
         assertNotNull(mTokenCache.findAccessToken(defaultUserRequestParameters, mDefaultUser));
         // Delete that token
-        mTokenCache.deleteAccessTokenByUser(mDefaultUser, AndroidTestUtil.getTestRequestContext());
+        mTokenCache.removeTokensForUser(CLIENT_ID, mDefaultUser, AndroidTestUtil.getTestRequestContext());
         // Verify that the token is deleted
         assertNull(mTokenCache.findAccessToken(defaultUserRequestParameters, mDefaultUser));
     }
@@ -138,7 +150,7 @@ public final class TokenCacheTest extends AndroidTestCase {
         // Add an access token to the cache for the default user
         addTokenForUser(true);
         // Delete the default user's token
-        mTokenCache.deleteAccessTokenByUser(mDefaultUser, AndroidTestUtil.getTestRequestContext());
+        mTokenCache.removeTokensForUser(CLIENT_ID, mDefaultUser, AndroidTestUtil.getTestRequestContext());
         // Verify that that the cache still contains the other token
         assertNotNull(mTokenCache.findAccessToken(differentUserParams,
                 User.create(new IdToken(getIdTokenForDifferentUser()), new ClientInfo(getClientInfoForDifferentUser()))));
@@ -163,6 +175,49 @@ public final class TokenCacheTest extends AndroidTestCase {
         assertTrue(refreshTokenCacheItem.getVersion().equals("1"));
     }
 
+    /**
+     * Verify that the cache maintenance removes the access tokens past their extended lifetime and keeps the refresh
+     * token.
+     */
+    @Test
+    public void testCompactAccessTokensRemovesTokensPastExtendedLifetime() throws MsalException {
+        final TokenResponse expiredResponse = new TokenResponse(ACCESS_TOKEN, getDefaultIdToken(), REFRESH_TOKEN,
+                AndroidTestUtil.getExpiredDate(), AndroidTestUtil.getExpiredDate(), AndroidTestUtil.getExpiredDate(),
+                "scope1", "Bearer", getDefaultClientInfo());
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, CLIENT_ID, expiredResponse);
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, CLIENT_ID,
+                getTokenResponseForDefaultUser(ACCESS_TOKEN, REFRESH_TOKEN, "scope2", AndroidTestUtil.getExpiredDate(), getDefaultClientInfo()));
+        assertTrue(AndroidTestUtil.getAllAccessTokens(mAppContext).size() == 2);
+
+        assertTrue(mTokenCache.compactAccessTokens(TokenCache.MAX_ACCESS_TOKEN_ENTRIES) > 0);
+
+        // the expired token still within its extended lifetime is kept.
+        final List<AccessTokenCacheItem> accessTokens = AndroidTestUtil.getAllAccessTokens(mAppContext);
+        assertTrue(accessTokens.size() == 1);
+        assertTrue(accessTokens.get(0).getScope().contains("scope2"));
+        assertTrue(AndroidTestUtil.getAllRefreshTokens(mAppContext).size() == 1);
+    }
+
+    /**
+     * Verify that the cache maintenance evicts the least recently used access tokens above the cap.
+     */
+    @Test
+    public void testCompactAccessTokensEvictsLeastRecentlyUsed() throws MsalException, InterruptedException {
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, CLIENT_ID,
+                getTokenResponseForDefaultUser(ACCESS_TOKEN, REFRESH_TOKEN, "scope1", AndroidTestUtil.getValidExpiresOn(), getDefaultClientInfo()));
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, CLIENT_ID,
+                getTokenResponseForDefaultUser(ACCESS_TOKEN, REFRESH_TOKEN, "scope2", AndroidTestUtil.getValidExpiresOn(), getDefaultClientInfo()));
+
+        // scope1 is written first but used last.
+        Thread.sleep(10);
+        assertNotNull(mTokenCache.findAccessToken(getRequestParameters(AUTHORITY, Collections.singleton("scope1"), CLIENT_ID), mDefaultUser));
+
+        assertTrue(mTokenCache.compactAccessTokens(1) > 0);
+        final List<AccessTokenCacheItem> accessTokens = AndroidTestUtil.getAllAccessTokens(mAppContext);
+        assertTrue(accessTokens.size() == 1);
+        assertTrue(accessTokens.get(0).getScope().contains("scope1"));
+    }
+
     /**
      * Verify that if RT is not returned, it won't be saved. AT is still saved correctly.
      */
@@ -561,6 +616,200 @@ public final class TokenCacheTest extends AndroidTestCase {
         assertTrue(rtForAnotherUser.getRefreshToken().equals(anotherRefreshToken));
     }
 
+    /**
+     * Verify that the users are read from the user index, which is kept up to date as refresh tokens are saved and
+     * deleted.
+     */
+    @Test
+    public void testGetUsersFromUserIndex() throws MsalException {
+        final String scope = "scope1";
+        final Date expirationDate = AndroidTestUtil.getExpirationDate(AndroidTestUtil.TOKEN_EXPIRATION_IN_MINUTES);
+        final String environment = MsalUtils.getUrl(AUTHORITY).getHost();
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, CLIENT_ID, getTokenResponseForDefaultUser(
+                ACCESS_TOKEN, REFRESH_TOKEN, scope, expirationDate, getDefaultClientInfo()));
+
+        final List<User> users = mTokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext());
+        assertTrue(users.size() == 1);
+        // no write since the last call, the index is returned as is.
+        assertSame(users, mTokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext()));
+
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, CLIENT_ID, getTokenResponseForDifferentUser(
+                "another-access-token", "another-refresh-token", scope, expirationDate, getClientInfoForDifferentUser()));
+        assertTrue(mTokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext()).size() == 2);
+
+        final AuthenticationRequestParameters requestParameters = getRequestParameters(AUTHORITY, MsalUtils.getScopesAsSet(scope), CLIENT_ID);
+        mTokenCache.deleteRT(mTokenCache.findRefreshToken(requestParameters, getDifferentUser()), AndroidTestUtil.getTestRequestContext());
+        final List<User> usersAfterDelete = mTokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext());
+        assertTrue(usersAfterDelete.size() == 1);
+        assertEquals(getDefaultUser().getUserIdentifier(), usersAfterDelete.get(0).getUserIdentifier());
+    }
+
+    @Test
+    public void testRemoveTokensForUser() throws MsalException {
+        final Date expirationDate = AndroidTestUtil.getExpirationDate(AndroidTestUtil.TOKEN_EXPIRATION_IN_MINUTES);
+        final String environment = MsalUtils.getUrl(AUTHORITY).getHost();
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, CLIENT_ID, getTokenResponseForDefaultUser(
+                ACCESS_TOKEN, REFRESH_TOKEN, "scope1", expirationDate, getDefaultClientInfo()));
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, CLIENT_ID, getTokenResponseForDefaultUser(
+                "access token 2", REFRESH_TOKEN, "scope2", expirationDate, getDefaultClientInfo()));
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, CLIENT_ID, getTokenResponseForDifferentUser(
+                "another-access-token", "another-refresh-token", "scope1", expirationDate, getClientInfoForDifferentUser()));
+        assertTrue(mTokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext()).size() == 2);
+
+        // two access tokens and the single refresh token of the default user
+        assertTrue(mTokenCache.removeTokensForUser(CLIENT_ID, getDefaultUser(), AndroidTestUtil.getTestRequestContext()) == 3);
+        assertTrue(mTokenCache.removeTokensForUser(CLIENT_ID, getDefaultUser(), AndroidTestUtil.getTestRequestContext()) == 0);
+
+        assertTrue(AndroidTestUtil.getAllAccessTokens(mAppContext).size() == 1);
+        assertTrue(AndroidTestUtil.getAllRefreshTokens(mAppContext).size() == 1);
+        final List<User> users = mTokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext());
+        assertTrue(users.size() == 1);
+        assertEquals(getDifferentUser().getUserIdentifier(), users.get(0).getUserIdentifier());
+    }
+
+    @Test
+    public void testExportAndImportSnapshot() throws MsalException, GeneralSecurityException {
+        final Date expirationDate = AndroidTestUtil.getExpirationDate(AndroidTestUtil.TOKEN_EXPIRATION_IN_MINUTES);
+        final String environment = MsalUtils.getUrl(AUTHORITY).getHost();
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, CLIENT_ID, getTokenResponseForDefaultUser(
+                ACCESS_TOKEN, REFRESH_TOKEN, "scope1", expirationDate, getDefaultClientInfo()));
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, CLIENT_ID, getTokenResponseForDifferentUser(
+                "another-access-token", "another-refresh-token", "scope1", expirationDate, getClientInfoForDifferentUser()));
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, "other-client-id", getTokenResponseForDefaultUser(
+                ACCESS_TOKEN, REFRESH_TOKEN, "scope1", expirationDate, getDefaultClientInfo()));
+        // build the user index before the import, it has to be rebuilt with the imported tokens.
+        assertTrue(mTokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext()).size() == 2);
+
+        final KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        final SecretKey snapshotKey = keyGenerator.generateKey();
+        final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        assertTrue(mTokenCache.exportSnapshot(snapshot, CLIENT_ID, snapshotKey, AndroidTestUtil.getTestRequestContext()) == 4);
+        assertFalse(new String(snapshot.toByteArray(), Charset.forName(MsalUtils.ENCODING_UTF8)).contains(REFRESH_TOKEN));
+
+        AndroidTestUtil.removeAllTokens(mAppContext);
+        try {
+            mTokenCache.importSnapshot(new ByteArrayInputStream(snapshot.toByteArray()), null, keyGenerator.generateKey(),
+                    AndroidTestUtil.getTestRequestContext());
+            fail("Expected the snapshot not to be decrypted with another key.");
+        } catch (final MsalClientException e) {
+            assertTrue(AndroidTestUtil.getAllRefreshTokens(mAppContext).isEmpty());
+        }
+
+        mTokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext());
+        assertTrue(mTokenCache.importSnapshot(new ByteArrayInputStream(snapshot.toByteArray()), null, snapshotKey,
+                AndroidTestUtil.getTestRequestContext()) == 4);
+        assertTrue(AndroidTestUtil.getAllAccessTokens(mAppContext).size() == 2);
+        assertTrue(mTokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext()).size() == 2);
+        final AuthenticationRequestParameters requestParameters = getRequestParameters(AUTHORITY,
+                MsalUtils.getScopesAsSet("scope1"), CLIENT_ID);
+        assertEquals(ACCESS_TOKEN, mTokenCache.findAccessToken(requestParameters, mDefaultUser).getAccessToken());
+        assertEquals(REFRESH_TOKEN, mTokenCache.findRefreshToken(requestParameters, mDefaultUser).getRefreshToken());
+    }
+
+    @Test
+    public void testImportSnapshotWithUnsupportedVersion() throws MsalException {
+        for (final int version : new int[] {0, TokenCache.SNAPSHOT_VERSION + 1}) {
+            final String snapshot = "{\"version\":" + version + ",\"access_tokens\":[]}";
+            try {
+                mTokenCache.importSnapshot(new ByteArrayInputStream(snapshot.getBytes(Charset.forName(MsalUtils.ENCODING_UTF8))),
+                        null, null, AndroidTestUtil.getTestRequestContext());
+                fail("Expected the snapshot version not to be supported.");
+            } catch (final MsalClientException e) {
+                assertEquals(MsalClientException.TOKEN_CACHE_SNAPSHOT_NOT_SUPPORTED, e.getErrorCode());
+            }
+        }
+    }
+
+    /**
+     * Verify that a snapshot with an access token item missing its authority is rejected as a whole.
+     */
+    @Test
+    public void testImportSnapshotWithInvalidItem() throws MsalException {
+        PublicClientApplicationTest.saveTokenResponse(mTokenCache, AUTHORITY, CLIENT_ID, getTokenResponseForDefaultUser(
+                ACCESS_TOKEN, REFRESH_TOKEN, "scope1", AndroidTestUtil.getExpirationDate(AndroidTestUtil.TOKEN_EXPIRATION_IN_MINUTES),
+                getDefaultClientInfo()));
+        final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        assertTrue(mTokenCache.exportSnapshot(snapshot, CLIENT_ID, null, AndroidTestUtil.getTestRequestContext()) == 2);
+        final String invalidSnapshot = new String(snapshot.toByteArray(), Charset.forName(MsalUtils.ENCODING_UTF8))
+                .replaceAll("\"authority\":\"[^\"]*\",?", "");
+
+        AndroidTestUtil.removeAllTokens(mAppContext);
+        try {
+            mTokenCache.importSnapshot(new ByteArrayInputStream(invalidSnapshot.getBytes(Charset.forName(MsalUtils.ENCODING_UTF8))),
+                    null, null, AndroidTestUtil.getTestRequestContext());
+            fail("Expected the snapshot to be rejected.");
+        } catch (final MsalClientException e) {
+            assertEquals(MsalClientException.JSON_PARSE_FAILURE, e.getErrorCode());
+            assertTrue(AndroidTestUtil.getAllRefreshTokens(mAppContext).isEmpty());
+        }
+    }
+
+    /**
+     * Verify that the token cache runs on top of an app-provided storage, and rebuilds its user index when the storage
+     * notifies a change.
+     */
+    @Test
+    public void testTokenCacheOnAppProvidedStorage() throws MsalException {
+        final InMemoryTokenCacheStorage storage = new InMemoryTokenCacheStorage();
+        final TokenCache tokenCache = new TokenCache(mAppContext, storage);
+        final Date expirationDate = AndroidTestUtil.getExpirationDate(AndroidTestUtil.TOKEN_EXPIRATION_IN_MINUTES);
+        final String environment = MsalUtils.getUrl(AUTHORITY).getHost();
+        PublicClientApplicationTest.saveTokenResponse(tokenCache, AUTHORITY, CLIENT_ID, getTokenResponseForDefaultUser(
+                ACCESS_TOKEN, REFRESH_TOKEN, "scope1", expirationDate, getDefaultClientInfo()));
+
+        // nothing is written into the default storage.
+        assertTrue(AndroidTestUtil.getAllAccessTokens(mAppContext).isEmpty());
+        final String partitionId = TokenCacheAccessor.getPartitionId(CLIENT_ID, environment);
+        assertTrue(storage.getAll("com.microsoft.identity.client.token." + partitionId).size() == 1);
+        assertTrue(storage.getAll("com.microsoft.identity.client.refreshToken." + partitionId).size() == 1);
+
+        final AuthenticationRequestParameters requestParameters = getRequestParameters(AUTHORITY,
+                MsalUtils.getScopesAsSet("scope1"), CLIENT_ID);
+        assertEquals(ACCESS_TOKEN, tokenCache.findAccessToken(requestParameters, mDefaultUser).getAccessToken());
+        assertTrue(tokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext()).size() == 1);
+        // the user index of the app's storage isn't used by a cache on the default storage.
+        assertTrue(mTokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext()).isEmpty());
+
+        // the app's store removes the refresh token on its own and notifies it.
+        storage.write("com.microsoft.identity.client.refreshToken." + partitionId, Collections.<String, String>emptyMap(),
+                new ArrayList<>(storage.getAll("com.microsoft.identity.client.refreshToken." + partitionId).keySet()));
+        storage.notifyChanged("com.microsoft.identity.client.refreshToken." + partitionId);
+        assertTrue(tokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext()).isEmpty());
+
+        assertTrue(tokenCache.removeTokensForUser(CLIENT_ID, mDefaultUser, AndroidTestUtil.getTestRequestContext()) == 1);
+        new TokenCacheAccessor(mAppContext, storage).removeAllTokens();
+        assertTrue(storage.isEmpty());
+    }
+
+    /**
+     * Verify that the tokens saved before the storage was partitioned are moved into their partitions on the first use
+     * of a cache on top of the storage.
+     */
+    @Test
+    public void testLegacyTokensMigrated() throws MsalException {
+        final InMemoryTokenCacheStorage storage = new InMemoryTokenCacheStorage();
+        PublicClientApplicationTest.saveTokenResponse(new TokenCache(mAppContext, storage), AUTHORITY, CLIENT_ID,
+                getTokenResponseForDefaultUser(ACCESS_TOKEN, REFRESH_TOKEN, "scope1",
+                        AndroidTestUtil.getExpirationDate(AndroidTestUtil.TOKEN_EXPIRATION_IN_MINUTES), getDefaultClientInfo()));
+        final String environment = MsalUtils.getUrl(AUTHORITY).getHost();
+        final String partitionId = TokenCacheAccessor.getPartitionId(CLIENT_ID, environment);
+
+        final InMemoryTokenCacheStorage legacyStorage = new InMemoryTokenCacheStorage();
+        legacyStorage.write("com.microsoft.identity.client.token",
+                storage.getAll("com.microsoft.identity.client.token." + partitionId), Collections.<String>emptyList());
+        legacyStorage.write("com.microsoft.identity.client.refreshToken",
+                storage.getAll("com.microsoft.identity.client.refreshToken." + partitionId), Collections.<String>emptyList());
+
+        final TokenCache tokenCache = new TokenCache(mAppContext, legacyStorage);
+        assertTrue(tokenCache.getUsers(environment, CLIENT_ID, AndroidTestUtil.getTestRequestContext()).size() == 1);
+        assertEquals(ACCESS_TOKEN, tokenCache.findAccessToken(getRequestParameters(AUTHORITY,
+                MsalUtils.getScopesAsSet("scope1"), CLIENT_ID), mDefaultUser).getAccessToken());
+        assertTrue(legacyStorage.getAll("com.microsoft.identity.client.token").isEmpty());
+        assertTrue(legacyStorage.getAll("com.microsoft.identity.client.refreshToken").isEmpty());
+        assertTrue(legacyStorage.getAll("com.microsoft.identity.client.token." + partitionId).size() == 1);
+    }
+
     @Test
     public void testTokenSavedWithNoClientInfo() throws MsalException {
         final String scope = "scope1";
@@ -648,4 +897,59 @@ public final class TokenCacheTest extends AndroidTestCase {
         return AuthenticationRequestParameters.create(Authority.createAuthority(authority, false), mTokenCache, scopes, clientId,
                 "some redirect", "", "", UiBehavior.SELECT_ACCOUNT, null, null, new RequestContext(UUID.randomUUID(), "", Telemetry.generateNewRequestId()));
     }
-}
\ No newline at end of file
+
+    /**
+     * {@link TokenCacheStorage} keeping the records in memory.
+     */
+    private static final class InMemoryTokenCacheStorage implements TokenCacheStorage {
+        private final Map<String, Map<String, String>> mPartitions = new HashMap<>();
+        private final List<ChangeListener> mListeners = new ArrayList<>();
+
+        @Override
+        public synchronized String get(final String partition, final String key) {
+            return getAll(partition).get(key);
+        }
+
+        @Override
+        public synchronized Map<String, String> getAll(final String partition) {
+            final Map<String, String> records = mPartitions.get(partition);
+            return records == null ? Collections.<String, String>emptyMap() : new HashMap<>(records);
+        }
+
+        @Override
+        public synchronized void write(final String partition, final Map<String, String> records,
+                                       final Collection<String> removedKeys) {
+            Map<String, String> partitionRecords = mPartitions.get(partition);
+            if (partitionRecords == null) {
+                partitionRecords = new HashMap<>();
+                mPartitions.put(partition, partitionRecords);
+            }
+
+            partitionRecords.keySet().removeAll(removedKeys);
+            partitionRecords.putAll(records);
+            if (partitionRecords.isEmpty()) {
+                mPartitions.remove(partition);
+            }
+        }
+
+        @Override
+        public synchronized void addChangeListener(final ChangeListener listener) {
+            mListeners.add(listener);
+        }
+
+        @Override
+        public synchronized void removeChangeListener(final ChangeListener listener) {
+            mListeners.remove(listener);
+        }
+
+        synchronized void notifyChanged(final String partition) {
+            for (final ChangeListener listener : mListeners) {
+                listener.onChanged(partition);
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return mPartitions.isEmpty();
+        }
+    }
+}
@@ -47,6 +47,15 @@ public class UiEventTest {
         final UiEvent uiEvent = getTestUiEvent();
         Assert.assertEquals(TEST_EXPECTED_EVENT_NAME, uiEvent.getEventName());
         Assert.assertEquals(Boolean.valueOf(TEST_USER_DID_CANCEL), uiEvent.userCancelled());
+        Assert.assertFalse(uiEvent.redirectFastPath());
+    }
+
+    @Test
+    public void testUiEventRedirectFastPath() {
+        final UiEvent uiEvent = new UiEvent.Builder()
+                .setRedirectFastPath()
+                .build();
+        Assert.assertTrue(uiEvent.redirectFastPath());
     }
 
 }
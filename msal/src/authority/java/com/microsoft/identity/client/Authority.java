@@ -141,12 +141,14 @@ abstract class Authority {
             if (!mValidateAuthority || preValidatedAuthority.mIsAuthorityValidated) {
                 mAuthorizationEndpoint = preValidatedAuthority.mAuthorizationEndpoint;
                 mTokenEndpoint = preValidatedAuthority.mTokenEndpoint;
+                Metrics.getInstance().increment(Metrics.Counter.AUTHORITY_CACHE_HIT);
                 return;
             } else {
                 Logger.info(TAG, requestContext, "Authority has not been validated, need to perform authority validation first.");
             }
         }
 
+        Metrics.getInstance().increment(Metrics.Counter.AUTHORITY_CACHE_MISS);
         final TenantDiscoveryResponse tenantDiscoveryResponse;
         final String openIdConfigurationEndpoint = performInstanceDiscovery(requestContext, userPrincipalName);
         try {
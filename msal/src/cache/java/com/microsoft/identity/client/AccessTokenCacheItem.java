@@ -45,6 +45,9 @@ final class AccessTokenCacheItem extends BaseTokenCacheItem {
     @SerializedName("expires_on")
     private long mExpiresOn;
 
+    @SerializedName("ext_expires_on")
+    private long mExtendedExpiresOn;
+
     @SerializedName("scope")
     String mScope;
 
@@ -54,6 +57,9 @@ final class AccessTokenCacheItem extends BaseTokenCacheItem {
     @SerializedName("id_token")
     String mRawIdToken;
 
+    @SerializedName("cached_at")
+    private long mCachedAt;
+
     /**
      * No args constructor for use in serialization for Gson to prevent usage of sun.misc.Unsafe.
      */
@@ -71,9 +77,11 @@ final class AccessTokenCacheItem extends BaseTokenCacheItem {
         mAuthority = authority;
         mAccessToken = response.getAccessToken();
         mExpiresOn = response.getExpiresOn().getTime();
+        mExtendedExpiresOn = response.getExtendedExpiresOn() == null ? 0 : response.getExtendedExpiresOn().getTime();
         mScope = response.getScope();
         mTokenType = response.getTokenType();
         mRawIdToken = response.getRawIdToken();
+        mCachedAt = System.currentTimeMillis();
 
         final IdToken idToken = new IdToken(mRawIdToken);
         mUser = User.create(idToken, new ClientInfo(mRawClientInfo));
@@ -105,6 +113,13 @@ final class AccessTokenCacheItem extends BaseTokenCacheItem {
         return new Date(mExpiresOn);
     }
 
+    /**
+     * @return The extended expires on of the access token, null if the service didn't return ext_expires_in.
+     */
+    Date getExtendedExpiresOn() {
+        return mExtendedExpiresOn == 0 ? null : new Date(mExtendedExpiresOn);
+    }
+
     /**
      * @return Scopes in the format of set.
      */
@@ -142,6 +157,30 @@ final class AccessTokenCacheItem extends BaseTokenCacheItem {
         return expiresOn != null && expiresOn.before(validity);
     }
 
+    /**
+     * @return True if the token is still within its extended lifetime, the resource may keep accepting it while the
+     * token endpoint is unavailable.
+     */
+    boolean isExtendedLifetimeValid() {
+        return mExtendedExpiresOn > System.currentTimeMillis();
+    }
+
+    /**
+     * @return The time the item was written into the cache, 0 for items cached before it was recorded.
+     */
+    long getCachedAt() {
+        return mCachedAt;
+    }
+
+    /**
+     * @return True if the token is past both its expires on and its extended expires on, it can't be returned by any
+     * request anymore.
+     */
+    boolean isPastExtendedLifetime() {
+        final long now = System.currentTimeMillis();
+        return mExpiresOn <= now && mExtendedExpiresOn <= now;
+    }
+
     IdToken getIdToken() throws MsalClientException {
         return new IdToken(mRawIdToken);
     }
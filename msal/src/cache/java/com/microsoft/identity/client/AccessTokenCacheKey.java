@@ -23,7 +23,9 @@
 
 package com.microsoft.identity.client;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
 import java.util.TreeSet;
@@ -78,4 +80,25 @@ final class AccessTokenCacheKey extends TokenCacheKey<AccessTokenCacheItem> {
                 && mClientId.equalsIgnoreCase(item.getClientId())
                 && mUserIdentifier.equals(item.getUserIdentifier());
     }
+
+    /**
+     * Match the key of a stored access token the way {@link #matches(AccessTokenCacheItem)} and the scope lookup match
+     * the item. A key that can't be parsed is kept, its item is matched once read.
+     */
+    @Override
+    public boolean matchesKey(final String cacheKey) {
+        final String[] keySegments = getKeySegments(cacheKey);
+        if (keySegments.length != 4) {
+            return true;
+        }
+
+        try {
+            return mUserIdentifier.equals(keySegments[3])
+                    && mAuthority.equalsIgnoreCase(decodeKeySegment(keySegments[0]))
+                    && mClientId.equalsIgnoreCase(decodeKeySegment(keySegments[1]))
+                    && new HashSet<>(Arrays.asList(decodeKeySegment(keySegments[2]).split(" "))).containsAll(mScope);
+        } catch (final IllegalArgumentException e) {
+            return true;
+        }
+    }
 }
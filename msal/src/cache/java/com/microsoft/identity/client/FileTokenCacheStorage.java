@@ -0,0 +1,331 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MSAL internal class for the default {@link TokenCacheStorage}, each partition is stored in its own file in the app's
+ * private files directory, as a JSON object of the records keyed by their key. A partition file is only read when the
+ * partition is read or written.
+ * <p>
+ * The storage can be shared by several processes of the app. A partition is loaded once per process and then served
+ * from memory, one loaded at an older generation of the {@link TokenCacheLock} is read again from its file the next time
+ * it's opened. A partition file is replaced with an atomic rename while holding the lock, so it's read without the lock
+ * and never seen half written. All the writes go through the sdk, there are no changes to notify the listeners of.
+ * <p>
+ * The previous versions of the sdk kept the partitions in {@link SharedPreferences} of the same names, their records
+ * are moved into the partition file the first time the partition is loaded.
+ */
+final class FileTokenCacheStorage implements TokenCacheStorage {
+    private static final String TAG = FileTokenCacheStorage.class.getSimpleName();
+
+    private static final String CACHE_DIR = "com.microsoft.identity.client.cache";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private static FileTokenCacheStorage sInstance;
+
+    private final Context mContext;
+    private final TokenCacheLock mCacheLock;
+    private final File mCacheDir;
+
+    /**
+     * The loaded partitions, each replaced as a whole when it's written or loaded again.
+     */
+    private final Map<String, Map<String, String>> mPartitions = new ConcurrentHashMap<>();
+
+    /**
+     * The partitions whose {@link SharedPreferences} have been checked for records to move by the process.
+     */
+    private final Set<String> mCheckedSharedPreferences = Collections.newSetFromMap(
+            new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Constructor for {@link FileTokenCacheStorage}, use {@link #getInstance(Context)} outside of tests.
+     *
+     * @param context   The application context.
+     * @param cacheLock The {@link TokenCacheLock} the writes into the storage are made with.
+     * @param cacheDir  The directory the partition files are stored in.
+     */
+    FileTokenCacheStorage(final Context context, final TokenCacheLock cacheLock, final File cacheDir) {
+        mContext = context;
+        mCacheLock = cacheLock;
+        mCacheDir = cacheDir;
+    }
+
+    /**
+     * @return The {@link FileTokenCacheStorage} shared by all the token caches of the process.
+     */
+    static synchronized FileTokenCacheStorage getInstance(final Context context) {
+        if (sInstance == null) {
+            sInstance = new FileTokenCacheStorage(context, TokenCacheLock.getInstance(context),
+                    new File(context.getFilesDir(), CACHE_DIR));
+        }
+
+        return sInstance;
+    }
+
+    @Override
+    public String get(final String partition, final String key) {
+        return openPartition(partition).get(key);
+    }
+
+    @Override
+    public Map<String, String> getAll(final String partition) {
+        return openPartition(partition);
+    }
+
+    @Override
+    public void write(final String partition, final Map<String, String> records, final Collection<String> removedKeys) {
+        if (!commit(partition, records, removedKeys)) {
+            Logger.warning(TAG, null, "Fail to write the changes into the token cache, they're only kept in memory.");
+        }
+    }
+
+    @Override
+    public void addChangeListener(final ChangeListener listener) {
+        // cross-process changes are detected with the generation of the cache, nothing else writes into the storage.
+    }
+
+    @Override
+    public void removeChangeListener(final ChangeListener listener) {
+    }
+
+    /**
+     * Write the changes into the partition, on top of its up to date records. The file is durable when the method
+     * returns, before the generation is incremented. Must be called while holding the {@link TokenCacheLock}.
+     *
+     * @return False if the partition file couldn't be written, the changes are then only kept in memory.
+     */
+    synchronized boolean commit(final String partition, final Map<String, String> records,
+                                final Collection<String> removedKeys) {
+        final Map<String, String> partitionRecords = new HashMap<>(openPartition(partition));
+        partitionRecords.keySet().removeAll(removedKeys);
+        partitionRecords.putAll(records);
+
+        final boolean isWritten = writePartitionFile(partition, partitionRecords);
+        mPartitions.put(partition, Collections.unmodifiableMap(partitionRecords));
+        mCacheLock.setLoadedGeneration(partition, mCacheLock.getGeneration());
+        return isWritten;
+    }
+
+    /**
+     * @return The file the partition is stored in.
+     */
+    File getPartitionFile(final String partition) {
+        return new File(mCacheDir, partition);
+    }
+
+    /**
+     * Open the partition. If it was loaded at an older generation, another process may have written into it since,
+     * and it's read again from its file first.
+     */
+    private Map<String, String> openPartition(final String partition) {
+        final long generation = mCacheLock.getGeneration();
+        final Map<String, String> records = mPartitions.get(partition);
+        final Long loadedGeneration = mCacheLock.getLoadedGeneration(partition);
+        if (records != null && loadedGeneration != null && loadedGeneration == generation) {
+            return records;
+        }
+
+        moveSharedPreferences(partition);
+        return load(partition);
+    }
+
+    /**
+     * Read the partition from its file, at the generation read before the file. A write made meanwhile by another
+     * process is loaded on the next open. Synchronized with the writes of the process, so an older file doesn't
+     * replace what was just written. A missing file is an empty partition, a file that can't be read leaves the
+     * loaded records as they are until the partition is written again.
+     */
+    private synchronized Map<String, String> load(final String partition) {
+        final long generation = mCacheLock.getGeneration();
+        final Map<String, String> loadedRecords = mPartitions.get(partition);
+        final Long loadedGeneration = mCacheLock.getLoadedGeneration(partition);
+        if (loadedRecords != null && loadedGeneration != null && loadedGeneration == generation) {
+            return loadedRecords;
+        }
+
+        Map<String, String> records = readPartitionFile(partition);
+        if (records == null) {
+            records = loadedRecords == null ? Collections.<String, String>emptyMap() : loadedRecords;
+        } else if (loadedRecords != null) {
+            Logger.verbose(TAG, null, "Token cache has been written by another process, reloading it.");
+        }
+
+        mPartitions.put(partition, records);
+        mCacheLock.setLoadedGeneration(partition, generation);
+        return records;
+    }
+
+    /**
+     * Move the records kept by the previous versions of the sdk in the {@link SharedPreferences} of the partition into
+     * the partition file, the first time the partition is opened by the process. The {@link SharedPreferences} are
+     * cleared once the file is written, the tokens must not stay there. Nothing writes into them afterwards, so they're
+     * never read again once the file exists.
+     */
+    private void moveSharedPreferences(final String partition) {
+        if (!mCheckedSharedPreferences.add(partition) || getPartitionFile(partition).exists()) {
+            return;
+        }
+
+        final SharedPreferences sharedPreferences = mContext.getSharedPreferences(partition, Context.MODE_PRIVATE);
+        if (sharedPreferences.getAll().isEmpty()) {
+            return;
+        }
+
+        mCacheLock.lock();
+        try {
+            // another process may have moved them while waiting for the lock.
+            if (getPartitionFile(partition).exists()) {
+                return;
+            }
+
+            final Map<String, String> records = new HashMap<>();
+            for (final Map.Entry<String, ?> entry : sharedPreferences.getAll().entrySet()) {
+                if (entry.getValue() instanceof String) {
+                    records.put(entry.getKey(), (String) entry.getValue());
+                }
+            }
+
+            if (!writePartitionFile(partition, records)) {
+                Logger.warning(TAG, null, "Fail to move the token cache out of the SharedPreferences.");
+                return;
+            }
+
+            if (!sharedPreferences.edit().clear().commit()) {
+                Logger.warning(TAG, null, "Fail to clear the SharedPreferences the token cache was moved out of.");
+            }
+            mCacheLock.incrementGeneration();
+            Logger.info(TAG, null, "Moved %d token cache records out of the SharedPreferences.", records.size());
+        } finally {
+            mCacheLock.unlock();
+        }
+    }
+
+    /**
+     * @return The records of the partition file, empty if the file doesn't exist, null if it can't be read.
+     */
+    private Map<String, String> readPartitionFile(final String partition) {
+        final File file = getPartitionFile(partition);
+        if (!file.exists()) {
+            return Collections.emptyMap();
+        }
+
+        JsonReader reader = null;
+        try {
+            reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                    Charset.forName(MsalUtils.ENCODING_UTF8))));
+            final Map<String, String> records = new HashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                records.put(reader.nextName(), reader.nextString());
+            }
+            reader.endObject();
+            return Collections.unmodifiableMap(records);
+        } catch (final IOException | IllegalStateException e) {
+            Logger.error(TAG, null, "Fail to read the token cache file.", e);
+            return null;
+        } finally {
+            safeClose(reader);
+        }
+    }
+
+    /**
+     * Write the records into a temporary file, sync it, then rename it over the partition file. Must be called while
+     * holding the {@link TokenCacheLock}.
+     *
+     * @return True if the partition file has been replaced.
+     */
+    private boolean writePartitionFile(final String partition, final Map<String, String> records) {
+        if (!mCacheDir.isDirectory() && !mCacheDir.mkdirs()) {
+            Logger.warning(TAG, null, "Fail to create the token cache directory.");
+            return false;
+        }
+
+        final File tempFile = new File(mCacheDir, partition + TEMP_FILE_EXTENSION);
+        FileOutputStream outputStream = null;
+        JsonWriter writer = null;
+        try {
+            outputStream = new FileOutputStream(tempFile);
+            writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream,
+                    Charset.forName(MsalUtils.ENCODING_UTF8))));
+            writer.beginObject();
+            for (final Map.Entry<String, String> record : records.entrySet()) {
+                writer.name(record.getKey()).value(record.getValue());
+            }
+            writer.endObject();
+            writer.flush();
+            outputStream.getFD().sync();
+        } catch (final IOException e) {
+            Logger.error(TAG, null, "Fail to write the token cache file.", e);
+            safeClose(writer == null ? outputStream : writer);
+            tempFile.delete();
+            return false;
+        }
+
+        safeClose(writer);
+        if (!tempFile.renameTo(getPartitionFile(partition))) {
+            Logger.warning(TAG, null, "Fail to replace the token cache file.");
+            tempFile.delete();
+            return false;
+        }
+
+        return true;
+    }
+
+    private static void safeClose(final Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (final IOException e) {
+            Logger.error(TAG, null, "Fail to close the token cache file.", e);
+        }
+    }
+}
@@ -63,4 +63,24 @@ final class RefreshTokenCacheKey extends TokenCacheKey<RefreshTokenCacheItem> {
                 && mClientId.equalsIgnoreCase(item.getClientId())
                 && mUserIdentifier.equals(item.getUserIdentifier());
     }
+
+    /**
+     * Match the key of a stored refresh token the way {@link #matches(RefreshTokenCacheItem)} matches the item. A key
+     * that can't be parsed is kept, its item is matched once read.
+     */
+    @Override
+    public boolean matchesKey(final String cacheKey) {
+        final String[] keySegments = getKeySegments(cacheKey);
+        if (keySegments.length != 3) {
+            return true;
+        }
+
+        try {
+            return mUserIdentifier.equals(keySegments[2])
+                    && mEnvironment.equalsIgnoreCase(decodeKeySegment(keySegments[0]))
+                    && mClientId.equalsIgnoreCase(decodeKeySegment(keySegments[1]));
+        } catch (final IllegalArgumentException e) {
+            return true;
+        }
+    }
 }
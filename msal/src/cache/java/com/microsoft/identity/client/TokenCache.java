@@ -27,16 +27,35 @@ import android.content.Context;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.crypto.SecretKey;
+
 /**
  * MSAL internal representation for token cache.
  */
@@ -44,7 +63,23 @@ class TokenCache {
     private static final String TAG = TokenCache.class.getSimpleName();
 
     private static final int DEFAULT_EXPIRATION_BUFFER = 300;
+
+    /**
+     * Maximum number of access token items kept by the cache maintenance, least recently used ones are evicted first.
+     */
+    static final int MAX_ACCESS_TOKEN_ENTRIES = 100;
+
+    /**
+     * Version of the snapshots written by {@link #exportSnapshot(OutputStream, String, SecretKey, RequestContext)},
+     * incremented when a snapshot can't be read by an older version anymore. Unknown fields are ignored on import.
+     */
+    static final int SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT_VERSION_FIELD = "version";
+    private static final String SNAPSHOT_ACCESS_TOKENS_FIELD = "access_tokens";
+    private static final String SNAPSHOT_REFRESH_TOKENS_FIELD = "refresh_tokens";
+
     private final TokenCacheAccessor mTokenCacheAccessor;
+    private final TokenCacheState mCacheState;
 
     private Gson mGson = new GsonBuilder()
             .registerTypeAdapter(AccessTokenCacheItem.class, new TokenCacheItemDeserializer<AccessTokenCacheItem>())
@@ -58,6 +93,26 @@ class TokenCache {
      */
     TokenCache(final Context context) {
         mTokenCacheAccessor = new TokenCacheAccessor(context);
+        mCacheState = mTokenCacheAccessor.getCacheState();
+    }
+
+    /**
+     * Constructor for {@link TokenCache} persisted into an app-provided storage.
+     *
+     * @param context The application context.
+     * @param storage The {@link TokenCacheStorage} the tokens are persisted into.
+     */
+    TokenCache(final Context context, final TokenCacheStorage storage) {
+        mTokenCacheAccessor = new TokenCacheAccessor(context, storage);
+        mCacheState = mTokenCacheAccessor.getCacheState();
+    }
+
+    /**
+     * @return The {@link TokenCacheState} derived from the storage of this cache, shared with the other caches on top of
+     * the same storage.
+     */
+    TokenCacheState getCacheState() {
+        return mCacheState;
     }
 
     /**
@@ -67,25 +122,64 @@ class TokenCache {
             throws MsalClientException {
         // create the access token cache item
         Logger.info(TAG, null, "Starting to Save access token into cache.");
-        Logger.infoPII(TAG, null, "Access token will be saved with authority: " + authority
-                + "; Client Id: " + clientId + "; Scopes: " + response.getScope());
+        Logger.infoPII(TAG, null, "Access token will be saved with authority: %s; Client Id: %s; Scopes: %s",
+                authority, clientId, response.getScope());
 
         final AccessTokenCacheItem newAccessToken = new AccessTokenCacheItem(authority, clientId, response);
         final AccessTokenCacheKey accessTokenCacheKey = newAccessToken.extractTokenCacheKey();
 
-        // check for intersection and delete all the cache entries with intersecting scopes.
-        final List<AccessTokenCacheItem> accessTokenCacheItems = getAllAccessTokensForApp(clientId, requestContext);
-        for (final AccessTokenCacheItem accessTokenCacheItem : accessTokenCacheItems) {
-            if (accessTokenCacheKey.matches(accessTokenCacheItem) && MsalUtils.isScopeIntersects(newAccessToken.getScope(),
-                    accessTokenCacheItem.getScope())) {
-                mTokenCacheAccessor.deleteAccessToken(accessTokenCacheItem.extractTokenCacheKey().toString(), requestContext);
+        // the intersecting entries are read and replaced under the lock, so another process can't save in between.
+        final TokenCacheLock cacheLock = mTokenCacheAccessor.getCacheLock();
+        cacheLock.lock();
+        try {
+            // check for intersection and delete all the cache entries with intersecting scopes.
+            final URL authorityUrl = MsalUtils.getUrl(authority);
+            final TokenCacheAccessor.KeyFilter userFilter = TokenCacheKey.forUser(accessTokenCacheKey.mUserIdentifier);
+            final List<AccessTokenCacheItem> accessTokenCacheItems = authorityUrl == null
+                    ? getAllAccessTokensForApp(clientId, userFilter, requestContext)
+                    : getAccessTokensInPartition(clientId, authorityUrl.getHost(), userFilter, requestContext);
+            for (final AccessTokenCacheItem accessTokenCacheItem : accessTokenCacheItems) {
+                if (accessTokenCacheKey.matches(accessTokenCacheItem) && MsalUtils.isScopeIntersects(newAccessToken.getScope(),
+                        accessTokenCacheItem.getScope())) {
+                    mTokenCacheAccessor.deleteAccessToken(accessTokenCacheItem.extractTokenCacheKey().toString(), requestContext);
+                }
             }
+
+            mTokenCacheAccessor.saveAccessToken(newAccessToken.extractTokenCacheKey().toString(), mGson.toJson(newAccessToken), requestContext);
+        } finally {
+            cacheLock.unlock();
         }
 
-        mTokenCacheAccessor.saveAccessToken(newAccessToken.extractTokenCacheKey().toString(), mGson.toJson(newAccessToken), requestContext);
         return newAccessToken;
     }
 
+    /**
+     * @return The {@link TokenCacheLock} the writes into the cache are made with.
+     */
+    TokenCacheLock getCacheLock() {
+        return mTokenCacheAccessor.getCacheLock();
+    }
+
+    /**
+     * Enable or disable the encryption of the tokens written into the cache. When enabled, the tokens already stored in
+     * plain text are encrypted in the background.
+     */
+    void setEncryptionEnabled(final boolean isEncryptionEnabled) {
+        mTokenCacheAccessor.setEncryptionEnabled(isEncryptionEnabled);
+        if (isEncryptionEnabled) {
+            TokenCacheMaintenance.encryptPlainTextTokens(this);
+        }
+    }
+
+    /**
+     * Encrypt the tokens stored in plain text.
+     *
+     * @return The number of token items encrypted.
+     */
+    int encryptPlainTextTokens() throws MsalClientException {
+        return mTokenCacheAccessor.encryptPlainTextRecords();
+    }
+
     /**
      * Create {@link RefreshTokenCacheItem} from {@link TokenResponse} and save it into cache.
      */
@@ -93,10 +187,20 @@ class TokenCache {
         // if server returns the refresh token back, save it in the cache.
         if (!MsalUtils.isEmpty(response.getRefreshToken())) {
             Logger.info(TAG, requestContext, "Starting to save refresh token into cache.");
-            Logger.infoPII(TAG, requestContext, "Refresh token will be saved with authority: " + authorityHost
-                    + "; Client Id: " + clientId);
+            Logger.infoPII(TAG, requestContext, "Refresh token will be saved with authority: %s; Client Id: %s",
+                    authorityHost, clientId);
             final RefreshTokenCacheItem refreshTokenCacheItem = new RefreshTokenCacheItem(authorityHost, clientId, response);
-            mTokenCacheAccessor.saveRefreshToken(refreshTokenCacheItem.extractTokenCacheKey().toString(), mGson.toJson(refreshTokenCacheItem), requestContext);
+            final String partitionId = TokenCacheAccessor.getPartitionId(clientId, authorityHost);
+            final TokenCacheLock cacheLock = mTokenCacheAccessor.getCacheLock();
+            cacheLock.lock();
+            try {
+                final UserIndex userIndex = getUpToDateUserIndex(partitionId);
+                mTokenCacheAccessor.saveRefreshToken(refreshTokenCacheItem.extractTokenCacheKey().toString(), mGson.toJson(refreshTokenCacheItem), requestContext);
+                updateUserIndex(partitionId, userIndex == null ? null : userIndex.withUser(refreshTokenCacheItem.getUserIdentifier(),
+                        refreshTokenCacheItem.getUser()));
+            } finally {
+                cacheLock.unlock();
+            }
         }
     }
 
@@ -111,12 +215,32 @@ class TokenCache {
     AccessTokenCacheItem findAccessToken(final AuthenticationRequestParameters requestParam, final User user) {
         final AccessTokenCacheKey key = AccessTokenCacheKey.createTokenCacheKey(requestParam.getAuthority().getAuthority(),
                 requestParam.getClientId(), requestParam.getScope(), user);
-        final List<AccessTokenCacheItem> accessTokenCacheItems = getAccessTokens(key, requestParam.getRequestContext());
+        return findAccessToken(requestParam, user, getAccessTokensInPartition(requestParam.getClientId(),
+                requestParam.getAuthority().getAuthorityHost(), key, requestParam.getRequestContext()));
+    }
+
+    /**
+     * Find access token matching authority, clientid, scope, user in the given access tokens read from the cache, so
+     * several lookups can be made with a single read.
+     *
+     * @param requestParam The {@link AuthenticationRequestParameters} containing the request data to get the token for.
+     * @param user         The {@link User} to get the token for.
+     * @param cachedATs    The access tokens read with {@link #getAccessTokensForLookup(AuthenticationRequestParameters, User, boolean)}.
+     * @return The {@link AccessTokenCacheItem} stored in the cache, could be NULL if there is no access token or there are
+     * multiple access token token items in the cache.
+     */
+    AccessTokenCacheItem findAccessToken(final AuthenticationRequestParameters requestParam, final User user,
+                                         final List<AccessTokenCacheItem> cachedATs) {
+        final AccessTokenCacheKey key = AccessTokenCacheKey.createTokenCacheKey(requestParam.getAuthority().getAuthority(),
+                requestParam.getClientId(), requestParam.getScope(), user);
+        final List<AccessTokenCacheItem> accessTokenCacheItems = filterAccessTokens(key, cachedATs, requestParam.getRequestContext());
 
         if (accessTokenCacheItems.isEmpty()) {
-            Logger.info(TAG, requestParam.getRequestContext(), "No access is found for scopes: "
-                    + MsalUtils.convertSetToString(requestParam.getScope(), " "));
-            if (user != null) {
+            if (Logger.isLoggable(Logger.LogLevel.INFO, false)) {
+                Logger.info(TAG, requestParam.getRequestContext(), "No access is found for scopes: "
+                        + MsalUtils.convertSetToString(requestParam.getScope(), " "));
+            }
+            if (user != null && Logger.isLoggable(Logger.LogLevel.INFO, true)) {
                 Logger.infoPII(TAG, requestParam.getRequestContext(), "User displayable: " + user.getDisplayableId()
                         + " ;User unique identifier(Base64UrlEncoded(uid).Base64UrlEncoded(utid)): " + MsalUtils.getUniqueUserIdentifier(
                         user.getUid(), user.getUtid()));
@@ -135,6 +259,7 @@ class TokenCache {
         // sopces in the request.
         final AccessTokenCacheItem accessTokenCacheItem = accessTokenCacheItems.get(0);
         if (!accessTokenCacheItem.isExpired()) {
+            markAccessTokenUsed(accessTokenCacheItem);
             return accessTokenCacheItem;
         }
 
@@ -142,12 +267,51 @@ class TokenCache {
         return null;
     }
 
+    /**
+     * Find the access token for the request, regardless of whether it's expired, as long as it's still within its
+     * extended lifetime. Used as the fallback when the token endpoint is unavailable.
+     *
+     * @param requestParam The {@link AuthenticationRequestParameters} containing the request data to get the token for.
+     * @param user         The {@link User} to get the token for.
+     * @return The {@link AccessTokenCacheItem} still valid with its extended expires on, NULL if there is none or there
+     * are multiple matching items.
+     */
+    AccessTokenCacheItem findExtendedLifetimeAccessToken(final AuthenticationRequestParameters requestParam, final User user) {
+        final AccessTokenCacheKey key = AccessTokenCacheKey.createTokenCacheKey(requestParam.getAuthority().getAuthority(),
+                requestParam.getClientId(), requestParam.getScope(), user);
+        final List<AccessTokenCacheItem> accessTokenCacheItems = getAccessTokens(key, requestParam.getAuthority().getAuthorityHost(),
+                requestParam.getRequestContext());
+        if (accessTokenCacheItems.size() != 1) {
+            return null;
+        }
+
+        final AccessTokenCacheItem accessTokenCacheItem = accessTokenCacheItems.get(0);
+        if (accessTokenCacheItem.isExtendedLifetimeValid()) {
+            markAccessTokenUsed(accessTokenCacheItem);
+            return accessTokenCacheItem;
+        }
+
+        Logger.info(TAG, requestParam.getRequestContext(), "Access token is found but it's past the extended expires on.");
+        return null;
+    }
+
     AccessTokenCacheItem findAccessTokenItemAuthorityNotProvided(final AuthenticationRequestParameters requestParameters, final User user)
             throws MsalClientException {
+        return findAccessTokenItemAuthorityNotProvided(requestParameters, user, getAccessTokensForLookup(requestParameters, user, false));
+    }
+
+    /**
+     * Find the access token for a request without authority in the given access tokens read from the cache. If a single
+     * authority matches, it's set on the request parameters.
+     *
+     * @param cachedATs The access tokens read with {@link #getAccessTokensForLookup(AuthenticationRequestParameters, User, boolean)}.
+     */
+    AccessTokenCacheItem findAccessTokenItemAuthorityNotProvided(final AuthenticationRequestParameters requestParameters, final User user,
+                                                                 final List<AccessTokenCacheItem> cachedATs)
+            throws MsalClientException {
         // find AccessTokenItems with scopes, client id and user matching
-        final List<AccessTokenCacheItem> accessTokenCacheItems = getAllAccessTokensForApp(requestParameters.getClientId(), requestParameters.getRequestContext());
         final List<AccessTokenCacheItem> matchingATs = new ArrayList<>();
-        for (final AccessTokenCacheItem accessTokenCacheItem : accessTokenCacheItems) {
+        for (final AccessTokenCacheItem accessTokenCacheItem : cachedATs) {
             if (user.getUserIdentifier().equals(accessTokenCacheItem.getUserIdentifier())) {
                 matchingATs.add(accessTokenCacheItem);
             }
@@ -198,9 +362,10 @@ class TokenCache {
             authority = uniqueAuthorities.iterator().next();
         }
 
-        Logger.verbosePII(TAG, requestParameters.getRequestContext(), "Authority is not provided but found one matching access token item, authority is: " + authority);
+        Logger.verbosePII(TAG, requestParameters.getRequestContext(), "Authority is not provided but found one matching access token item, authority is: %s", authority);
         requestParameters.setAuthority(authority, requestParameters.getAuthority().mValidateAuthority);
         if (accessTokenCacheItem != null && !accessTokenCacheItem.isExpired()) {
+            markAccessTokenUsed(accessTokenCacheItem);
             return accessTokenCacheItem;
         }
 
@@ -211,12 +376,16 @@ class TokenCache {
     // All the token AAD returns are multi-scopes. MSAL only support ADFS 2016, which issues multi-scope RT.
     RefreshTokenCacheItem findRefreshToken(final AuthenticationRequestParameters requestParam, final User user) throws MsalClientException {
         final RefreshTokenCacheKey key = RefreshTokenCacheKey.createTokenCacheKey(requestParam.getAuthority().getAuthorityHost(), requestParam.getClientId(), user);
-        final List<RefreshTokenCacheItem> refreshTokenCacheItems = getRefreshTokens(key, requestParam.getRequestContext());
+        final List<RefreshTokenCacheItem> refreshTokenCacheItems = getRefreshTokens(key, requestParam.getAuthority().getAuthorityHost(),
+                requestParam.getRequestContext());
 
         if (refreshTokenCacheItems.size() == 0) {
+            Metrics.getInstance().increment(Metrics.Counter.REFRESH_TOKEN_CACHE_MISS);
             Logger.info(TAG, requestParam.getRequestContext(), "No RT was found for the given user.");
-            Logger.infoPII(TAG, requestParam.getRequestContext(), "The given user info is: " + user.getDisplayableId() + "; userIdentifier: "
-                    + MsalUtils.getUniqueUserIdentifier(user.getUid(), user.getUtid()));
+            if (Logger.isLoggable(Logger.LogLevel.INFO, true)) {
+                Logger.infoPII(TAG, requestParam.getRequestContext(), "The given user info is: " + user.getDisplayableId() + "; userIdentifier: "
+                        + MsalUtils.getUniqueUserIdentifier(user.getUid(), user.getUtid()));
+            }
             return null;
         }
 
@@ -226,6 +395,7 @@ class TokenCache {
             throw new MsalClientException(MsalClientException.MULTIPLE_MATCHING_TOKENS_DETECTED, "Multiple tokens were detected.");
         }
 
+        Metrics.getInstance().increment(Metrics.Counter.REFRESH_TOKEN_CACHE_HIT);
         return refreshTokenCacheItems.get(0);
     }
 
@@ -242,13 +412,31 @@ class TokenCache {
             return;
         }
 
-        Logger.verbosePII(TAG, requestContext, "Removing refresh token for user: " + rtItem.getDisplayableId() + "; user identifier: "
-                + rtItem.getUserIdentifier());
-        mTokenCacheAccessor.deleteRefreshToken(rtItem.extractTokenCacheKey().toString(), requestContext);
+        Logger.verbosePII(TAG, requestContext, "Removing refresh token for user: %s; user identifier: %s",
+                rtItem.getDisplayableId(), rtItem.getUserIdentifier());
+        deleteRefreshToken(rtItem, requestContext);
+    }
+
+    /**
+     * Delete the refresh token item and remove its user from the user index of its partition.
+     */
+    private void deleteRefreshToken(final RefreshTokenCacheItem rtItem, final RequestContext requestContext) {
+        final String partitionId = TokenCacheAccessor.getPartitionId(rtItem.getClientId(), rtItem.getEnvironment());
+        final TokenCacheLock cacheLock = mTokenCacheAccessor.getCacheLock();
+        cacheLock.lock();
+        try {
+            final UserIndex userIndex = getUpToDateUserIndex(partitionId);
+            mTokenCacheAccessor.deleteRefreshToken(rtItem.extractTokenCacheKey().toString(), requestContext);
+            updateUserIndex(partitionId, userIndex == null ? null : userIndex.withoutUser(rtItem.getUserIdentifier()));
+        } finally {
+            cacheLock.unlock();
+        }
     }
 
     /**
-     * An immutable list of signed-in users for the given client id.
+     * An immutable list of signed-in users for the given client id. The users are read from the user index of the
+     * partition, which is only built from the refresh tokens the first time and then kept up to date as they're saved
+     * and deleted.
      *
      * @param environment
      * @param clientId       The application client id that is used to retrieve for all the signed in users.
@@ -260,87 +448,96 @@ class TokenCache {
             throw new IllegalArgumentException("empty or null clientId");
         }
 
-        Logger.verbosePII(TAG, requestContext, "Retrieve users with the given client id: " + clientId);
-        final List<RefreshTokenCacheItem> allRefreshTokensForApp = getAllRefreshTokenForApp(clientId, requestContext);
+        Logger.verbosePII(TAG, requestContext, "Retrieve users with the given client id: %s", clientId);
+        final String partitionId = TokenCacheAccessor.getPartitionId(clientId, environment);
+        final UserIndex userIndex = getUpToDateUserIndex(partitionId);
+        if (userIndex != null) {
+            return userIndex.getUsers();
+        }
+
+        Logger.verbose(TAG, requestContext, "Building the user index from the refresh tokens.");
+        // read the generation first, if the storage is written while the index is built it's rebuilt on the next call.
+        final long generation = mTokenCacheAccessor.getCacheLock().getGeneration();
+        // only the partition of the client id and environment is read.
+        final List<RefreshTokenCacheItem> refreshTokensInPartition = getRefreshTokensInPartition(clientId, environment, null,
+                requestContext);
         final Map<String, User> allUsers = new HashMap<>();
-        for (final RefreshTokenCacheItem item : allRefreshTokensForApp) {
-            if (environment.equalsIgnoreCase(item.getEnvironment())) {
-                final User user = item.getUser();
-                allUsers.put(item.getUserIdentifier(), user);
-            }
+        for (final RefreshTokenCacheItem item : refreshTokensInPartition) {
+            final User user = item.getUser();
+            allUsers.put(item.getUserIdentifier(), user);
         }
 
-        return Collections.unmodifiableList(new ArrayList<>(allUsers.values()));
+        final UserIndex builtUserIndex = new UserIndex(allUsers);
+        mCacheState.getUserIndexes().put(partitionId, builtUserIndex);
+        mTokenCacheAccessor.setDerivedStateGeneration(getUserIndexName(partitionId), generation);
+        return builtUserIndex.getUsers();
     }
 
     /**
-     * Delegate to handle the deleting of {@link BaseTokenCacheItem}s.
+     * @return The user index of the partition, null if it's not built or the storage has been written by another
+     * process since.
      */
-    private interface DeleteTokenAction {
-
-        /**
-         * Deletes the supplied token.
-         *
-         * @param target the {@link BaseTokenCacheItem} to delete
-         */
-        void deleteToken(final BaseTokenCacheItem target);
-    }
+    private UserIndex getUpToDateUserIndex(final String partitionId) {
+        final UserIndex userIndex = mCacheState.getUserIndexes().get(partitionId);
+        if (userIndex == null || !mTokenCacheAccessor.isDerivedStateUpToDate(getUserIndexName(partitionId))) {
+            return null;
+        }
 
-    private boolean tokenMatchesUser(final User user, final BaseTokenCacheItem token) {
-        return token.getUserIdentifier().equals(user.getUserIdentifier());
+        return userIndex;
     }
 
-    private void deleteTokenByUser(
-            final User user,
-            final List<? extends BaseTokenCacheItem> tokens,
-            final RequestContext requestContext,
-            final DeleteTokenAction delegate) {
-        for (BaseTokenCacheItem token : tokens) {
-            if (tokenMatchesUser(user, token)) {
-                Logger.verbosePII(TAG, requestContext, "Remove tokens for user with displayable " + user.getDisplayableId()
-                        + "; User identifier: " + user.getUserIdentifier());
-                delegate.deleteToken(token);
-                return;
-            }
+    /**
+     * Replace the user index of the partition after a refresh token write, or drop it if it wasn't up to date. Must be
+     * called while holding the {@link TokenCacheLock}.
+     */
+    private void updateUserIndex(final String partitionId, final UserIndex userIndex) {
+        if (userIndex == null) {
+            mCacheState.getUserIndexes().remove(partitionId);
+        } else {
+            mCacheState.getUserIndexes().put(partitionId, userIndex);
         }
     }
 
-    /**
-     * Delete the refresh token associated with the supplied {@link User}.
-     *
-     * @param user the User whose refresh token should be deleted
-     */
-    void deleteRefreshTokenByUser(final User user, final RequestContext requestContext) {
-        deleteTokenByUser(
-                user,
-                getAllRefreshTokens(requestContext),
-                requestContext,
-                new DeleteTokenAction() {
-                    @Override
-                    public void deleteToken(final BaseTokenCacheItem target) {
-                        final RefreshTokenCacheItem refreshTokenCacheItem = (RefreshTokenCacheItem) target;
-                        mTokenCacheAccessor.deleteRefreshToken(refreshTokenCacheItem.extractTokenCacheKey().toString(), requestContext);
-                    }
-                });
+    private static String getUserIndexName(final String partitionId) {
+        return "users." + partitionId;
     }
 
     /**
-     * Delete the access token associated with the supplied {@link User}.
+     * Remove all the access and refresh tokens of the user for the client id, across all its authorities and scopes.
+     * The items are found by their cache keys and removed with a single write per storage partition, and the user is
+     * removed from the user indexes.
      *
-     * @param user the User whose access token should be deleted
-     */
-    void deleteAccessTokenByUser(final User user, final RequestContext requestContext) {
-        deleteTokenByUser(
-                user,
-                getAllAccessTokens(requestContext),
-                requestContext,
-                new DeleteTokenAction() {
-                    @Override
-                    public void deleteToken(final BaseTokenCacheItem target) {
-                        final AccessTokenCacheItem accessTokenCacheItem = (AccessTokenCacheItem) target;
-                        mTokenCacheAccessor.deleteAccessToken(accessTokenCacheItem.extractTokenCacheKey().toString(), requestContext);
-                    }
-                });
+     * @param clientId The client id to remove the user's tokens of.
+     * @param user     The {@link User} to remove the tokens of.
+     * @return The number of token items removed.
+     */
+    int removeTokensForUser(final String clientId, final User user, final RequestContext requestContext) {
+        final TokenCacheLock cacheLock = mTokenCacheAccessor.getCacheLock();
+        cacheLock.lock();
+        try {
+            final List<String> partitionIds = mTokenCacheAccessor.getPartitionIds(clientId);
+            final Map<String, UserIndex> userIndexes = new HashMap<>();
+            for (final String partitionId : partitionIds) {
+                userIndexes.put(partitionId, getUpToDateUserIndex(partitionId));
+            }
+
+            final List<String> removedKeys = mTokenCacheAccessor.deleteTokensForUser(partitionIds, user.getUserIdentifier(),
+                    requestContext);
+            for (final Map.Entry<String, UserIndex> userIndex : userIndexes.entrySet()) {
+                updateUserIndex(userIndex.getKey(), userIndex.getValue() == null ? null
+                        : userIndex.getValue().withoutUser(user.getUserIdentifier()));
+            }
+
+            for (final String removedKey : removedKeys) {
+                mCacheState.getAccessTokenLastUsed().remove(removedKey);
+            }
+
+            Logger.verbosePII(TAG, requestContext, "Removed %d tokens for user with displayable %s; User identifier: %s",
+                    removedKeys.size(), user.getDisplayableId(), user.getUserIdentifier());
+            return removedKeys.size();
+        } finally {
+            cacheLock.unlock();
+        }
     }
 
     /**
@@ -382,56 +579,331 @@ class TokenCache {
     }
 
     /**
-     * @param clientId Client id that is used to filter all {@link RefreshTokenCacheItem}s that exist in the cache.
-     * @return The unmodifiable List of {@link RefreshTokenCacheItem}s that match the given client id.
+     * Write a snapshot of the cache into the stream, the records are streamed as they are stored without being
+     * deserialized. The snapshot is a JSON object holding its {@link #SNAPSHOT_VERSION} first, then the access and
+     * refresh token items. The stream is closed once the snapshot is written.
+     *
+     * @param outputStream The stream to write the snapshot into.
+     * @param clientId     The client id to export the tokens of, null to export all the tokens.
+     * @param snapshotKey  The AES key to encrypt the snapshot with, null to write it in plain text. The snapshot is
+     *                     meant to be restored on another device, so the key is not tied to this device's Keystore.
+     * @return The number of token items exported.
      */
-    private List<RefreshTokenCacheItem> getAllRefreshTokenForApp(final String clientId, final RequestContext requestContext) {
-        final List<RefreshTokenCacheItem> allRTs = getAllRefreshTokens(requestContext);
+    int exportSnapshot(final OutputStream outputStream, final String clientId, final SecretKey snapshotKey,
+                       final RequestContext requestContext) throws MsalClientException {
+        final String telemetryRequestId = requestContext.getTelemetryRequestId();
+        final Collection<String> accessTokens = clientId == null ? mTokenCacheAccessor.getAllAccessTokens(telemetryRequestId)
+                : mTokenCacheAccessor.getAccessTokensForClientId(clientId, null, telemetryRequestId);
+        final Collection<String> refreshTokens = clientId == null ? mTokenCacheAccessor.getAllRefreshTokens(telemetryRequestId)
+                : mTokenCacheAccessor.getRefreshTokensForClientId(clientId, telemetryRequestId);
+
+        JsonWriter writer = null;
+        try {
+            final OutputStream snapshotStream = snapshotKey == null ? outputStream
+                    : TokenCacheCipher.encryptStream(outputStream, snapshotKey);
+            writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(snapshotStream,
+                    Charset.forName(MsalUtils.ENCODING_UTF8))));
+            writer.beginObject();
+            writer.name(SNAPSHOT_VERSION_FIELD).value(SNAPSHOT_VERSION);
+            writeRecords(writer.name(SNAPSHOT_ACCESS_TOKENS_FIELD), accessTokens);
+            writeRecords(writer.name(SNAPSHOT_REFRESH_TOKENS_FIELD), refreshTokens);
+            writer.endObject();
+            // closing writes the authentication tag of an encrypted snapshot, it must not fail silently.
+            writer.close();
+        } catch (final IOException e) {
+            throw new MsalClientException(MsalClientException.IO_ERROR, "Fail to write the token cache snapshot.", e);
+        } catch (final GeneralSecurityException e) {
+            throw new MsalClientException(MsalClientException.TOKEN_CACHE_ENCRYPTION_FAILED, "Fail to encrypt the token "
+                    + "cache snapshot.", e);
+        } finally {
+            safeCloseStream(writer == null ? outputStream : writer);
+        }
+
+        Logger.info(TAG, requestContext, "Exported %d access tokens and %d refresh tokens.", accessTokens.size(),
+                refreshTokens.size());
+        return accessTokens.size() + refreshTokens.size();
+    }
 
-        final List<RefreshTokenCacheItem> allRTsForApp = new ArrayList<>(allRTs.size());
-        for (final RefreshTokenCacheItem refreshTokenCacheItem : allRTs) {
-            if (clientId.equalsIgnoreCase(refreshTokenCacheItem.getClientId())) {
-                allRTsForApp.add(refreshTokenCacheItem);
+    /**
+     * Read a snapshot written by {@link #exportSnapshot(OutputStream, String, SecretKey, RequestContext)} and save its
+     * token items into the cache, replacing the items with the same cache keys. The items are read one at a time from
+     * the stream and saved with a single write once the whole snapshot is read, nothing is saved if the snapshot is
+     * invalid or, when encrypted, has been altered. The stream is closed once the snapshot is read.
+     *
+     * @param inputStream The stream to read the snapshot from.
+     * @param clientId    The client id to import the tokens of, null to import all the tokens of the snapshot.
+     * @param snapshotKey The AES key the snapshot was encrypted with, null if it was written in plain text.
+     * @return The number of token items imported.
+     */
+    int importSnapshot(final InputStream inputStream, final String clientId, final SecretKey snapshotKey,
+                       final RequestContext requestContext) throws MsalClientException {
+        final Map<String, String> accessTokens = new HashMap<>();
+        final Map<String, String> refreshTokens = new HashMap<>();
+        JsonReader reader = null;
+        try {
+            final InputStream snapshotStream = snapshotKey == null ? inputStream
+                    : TokenCacheCipher.decryptStream(inputStream, snapshotKey);
+            reader = new JsonReader(new BufferedReader(new InputStreamReader(snapshotStream,
+                    Charset.forName(MsalUtils.ENCODING_UTF8))));
+            reader.beginObject();
+            if (!reader.hasNext() || !SNAPSHOT_VERSION_FIELD.equals(reader.nextName())
+                    || !isSupportedSnapshotVersion(reader.nextInt())) {
+                throw new MsalClientException(MsalClientException.TOKEN_CACHE_SNAPSHOT_NOT_SUPPORTED, "The token cache "
+                        + "snapshot doesn't start with a supported version.");
+            }
+
+            while (reader.hasNext()) {
+                final String name = reader.nextName();
+                if (SNAPSHOT_ACCESS_TOKENS_FIELD.equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readSnapshotItem(reader, AccessTokenCacheItem.class, clientId, accessTokens);
+                    }
+                    reader.endArray();
+                } else if (SNAPSHOT_REFRESH_TOKENS_FIELD.equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readSnapshotItem(reader, RefreshTokenCacheItem.class, clientId, refreshTokens);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
             }
+            reader.endObject();
+            // read up to the end, so the authentication tag of an encrypted snapshot is verified.
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new MsalClientException(MsalClientException.JSON_PARSE_FAILURE, "The token cache snapshot has "
+                        + "trailing data.");
+            }
+        } catch (final IOException e) {
+            throw new MsalClientException(MsalClientException.IO_ERROR, "Fail to read the token cache snapshot.", e);
+        } catch (final JsonParseException | IllegalStateException | NumberFormatException e) {
+            throw new MsalClientException(MsalClientException.JSON_PARSE_FAILURE, "The token cache snapshot is malformed.", e);
+        } catch (final GeneralSecurityException e) {
+            throw new MsalClientException(MsalClientException.TOKEN_CACHE_ENCRYPTION_FAILED, "Fail to decrypt the token "
+                    + "cache snapshot.", e);
+        } finally {
+            safeCloseStream(reader == null ? inputStream : reader);
         }
 
-        Logger.verbosePII(TAG, requestContext, "Retrieve all the refresh tokens for given client id: " + clientId);
-        Logger.verbose(TAG, requestContext, "Returned refresh token number is " + allRTsForApp.size());
-        return Collections.unmodifiableList(allRTsForApp);
+        mTokenCacheAccessor.saveTokens(accessTokens, refreshTokens);
+        Logger.info(TAG, requestContext, "Imported %d access tokens and %d refresh tokens.", accessTokens.size(),
+                refreshTokens.size());
+        return accessTokens.size() + refreshTokens.size();
+    }
+
+    private static boolean isSupportedSnapshotVersion(final int version) {
+        return version >= 1 && version <= SNAPSHOT_VERSION;
     }
 
     /**
-     * @param clientId Client id that is used to filter all {@link AccessTokenCacheItem}s that exist in the cache.
-     * @return The unmodifiable List of {@link AccessTokenCacheItem}s that match the given client id.
-     */
-    private List<AccessTokenCacheItem> getAllAccessTokensForApp(final String clientId, final RequestContext requestContext) {
-        final List<AccessTokenCacheItem> allATs = getAllAccessTokens(requestContext);
-        final List<AccessTokenCacheItem> allATsForApp = new ArrayList<>(allATs.size());
-        for (final AccessTokenCacheItem accessTokenCacheItem : allATs) {
-            if (clientId.equalsIgnoreCase(accessTokenCacheItem.getClientId())) {
-                allATsForApp.add(accessTokenCacheItem);
+     * Read the next token item of a snapshot and add it to the given records by its cache key, unless it belongs to
+     * another client id. The item must hold its token and all the fields of its cache key.
+     */
+    private <T extends BaseTokenCacheItem> void readSnapshotItem(final JsonReader reader, final Class<T> itemType,
+                                                                 final String clientId, final Map<String, String> records)
+            throws MsalClientException {
+        final T tokenCacheItem = mGson.fromJson(reader, itemType);
+        if (tokenCacheItem == null) {
+            throw new MsalClientException(MsalClientException.JSON_PARSE_FAILURE, "The token cache snapshot has a null "
+                    + "token item.");
+        }
+
+        if (clientId != null && !clientId.equalsIgnoreCase(tokenCacheItem.getClientId())) {
+            return;
+        }
+
+        final String token = tokenCacheItem instanceof AccessTokenCacheItem
+                ? ((AccessTokenCacheItem) tokenCacheItem).getAccessToken()
+                : ((RefreshTokenCacheItem) tokenCacheItem).getRefreshToken();
+        if (MsalUtils.isEmpty(token)) {
+            throw new MsalClientException(MsalClientException.JSON_PARSE_FAILURE, "The token cache snapshot has a token "
+                    + "item without its token.");
+        }
+
+        final String cacheKey;
+        try {
+            cacheKey = tokenCacheItem.extractTokenCacheKey().toString();
+        } catch (final IllegalArgumentException | NullPointerException e) {
+            throw new MsalClientException(MsalClientException.JSON_PARSE_FAILURE, "The token cache snapshot has a token "
+                    + "item without the fields of its cache key.", e);
+        }
+
+        records.put(cacheKey, mGson.toJson(tokenCacheItem));
+    }
+
+    private static void writeRecords(final JsonWriter writer, final Collection<String> records) throws IOException {
+        writer.beginArray();
+        for (final String record : records) {
+            writer.jsonValue(record);
+        }
+        writer.endArray();
+    }
+
+    private static void safeCloseStream(final Closeable stream) {
+        try {
+            stream.close();
+        } catch (final IOException e) {
+            Logger.error(TAG, null, "Fail to close the token cache snapshot stream.", e);
+        }
+    }
+
+    /**
+     * Remove the access tokens past their extended lifetime, then evict the least recently used ones until at most
+     * maxEntries are left. Refresh tokens are never touched.
+     *
+     * @param maxEntries The maximum number of access token items to keep.
+     * @return The number of bytes reclaimed from the storage.
+     */
+    long compactAccessTokens(final int maxEntries) {
+        final Map<String, String> keysToRemove = new HashMap<>();
+        final int expiredCount;
+        // Entries are read and removed under the lock, so a token another process just saved isn't evicted.
+        final TokenCacheLock cacheLock = mTokenCacheAccessor.getCacheLock();
+        cacheLock.lock();
+        try {
+            final Map<String, String> allEntries = mTokenCacheAccessor.getAllAccessTokenEntries();
+            final List<Map.Entry<String, AccessTokenCacheItem>> liveEntries = new ArrayList<>(allEntries.size());
+            for (final Map.Entry<String, String> entry : allEntries.entrySet()) {
+                final AccessTokenCacheItem accessTokenCacheItem = mGson.fromJson(entry.getValue(), AccessTokenCacheItem.class);
+                if (accessTokenCacheItem.isPastExtendedLifetime()) {
+                    keysToRemove.put(entry.getKey(), entry.getValue());
+                } else {
+                    liveEntries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), accessTokenCacheItem));
+                }
+            }
+
+            expiredCount = keysToRemove.size();
+            if (liveEntries.size() > maxEntries) {
+                Collections.sort(liveEntries, new Comparator<Map.Entry<String, AccessTokenCacheItem>>() {
+                    @Override
+                    public int compare(final Map.Entry<String, AccessTokenCacheItem> lhs,
+                                       final Map.Entry<String, AccessTokenCacheItem> rhs) {
+                        final long lhsLastUsed = getLastUsed(lhs.getKey(), lhs.getValue());
+                        final long rhsLastUsed = getLastUsed(rhs.getKey(), rhs.getValue());
+                        return lhsLastUsed < rhsLastUsed ? -1 : (lhsLastUsed == rhsLastUsed ? 0 : 1);
+                    }
+                });
+
+                for (final Map.Entry<String, AccessTokenCacheItem> entry : liveEntries.subList(0, liveEntries.size() - maxEntries)) {
+                    keysToRemove.put(entry.getKey(), allEntries.get(entry.getKey()));
+                }
             }
+
+            mTokenCacheAccessor.deleteAccessTokens(keysToRemove.keySet());
+        } finally {
+            cacheLock.unlock();
         }
 
-        return Collections.unmodifiableList(allATsForApp);
+        long reclaimedBytes = 0;
+        final Charset charset = Charset.forName(MsalUtils.ENCODING_UTF8);
+        for (final Map.Entry<String, String> removedEntry : keysToRemove.entrySet()) {
+            mCacheState.getAccessTokenLastUsed().remove(removedEntry.getKey());
+            reclaimedBytes += removedEntry.getKey().getBytes(charset).length + removedEntry.getValue().getBytes(charset).length;
+        }
+
+        Logger.info(TAG, null, "Cache maintenance removed %d expired and %d least recently used access tokens, "
+                + "reclaimed %d bytes.", expiredCount, keysToRemove.size() - expiredCount, reclaimedBytes);
+        Metrics.getInstance().add(Metrics.Counter.ACCESS_TOKEN_EVICTED, keysToRemove.size());
+        Metrics.getInstance().add(Metrics.Counter.CACHE_BYTES_RECLAIMED, reclaimedBytes);
+        return reclaimedBytes;
+    }
+
+    private void markAccessTokenUsed(final AccessTokenCacheItem accessTokenCacheItem) {
+        mCacheState.getAccessTokenLastUsed().put(accessTokenCacheItem.extractTokenCacheKey().toString(), System.currentTimeMillis());
+    }
+
+    private long getLastUsed(final String accessTokenKey, final AccessTokenCacheItem accessTokenCacheItem) {
+        final Long lastUsed = mCacheState.getAccessTokenLastUsed().get(accessTokenKey);
+        return lastUsed == null ? accessTokenCacheItem.getCachedAt() : Math.max(lastUsed, accessTokenCacheItem.getCachedAt());
+    }
+
+    /**
+     * Read the access tokens of the user an access token lookup is made in: the partition of the request's client id
+     * and authority, or all the partitions of the client id if the authority is not provided. The tokens of the other
+     * users are not decrypted.
+     *
+     * @return The {@link AccessTokenCacheItem}s to pass to the lookups.
+     */
+    List<AccessTokenCacheItem> getAccessTokensForLookup(final AuthenticationRequestParameters requestParam, final User user,
+                                                        final boolean isAuthorityProvided) {
+        final TokenCacheAccessor.KeyFilter userFilter = TokenCacheKey.forUser(user.getUserIdentifier());
+        if (!isAuthorityProvided) {
+            return getAllAccessTokensForApp(requestParam.getClientId(), userFilter, requestParam.getRequestContext());
+        }
+
+        return getAccessTokensInPartition(requestParam.getClientId(), requestParam.getAuthority().getAuthorityHost(),
+                userFilter, requestParam.getRequestContext());
+    }
+
+    /**
+     * @param clientId Client id that is used to filter all {@link AccessTokenCacheItem}s that exist in the cache.
+     * @param filter   The {@link TokenCacheAccessor.KeyFilter} of the access tokens to read, null to read all of them.
+     * @return The unmodifiable List of {@link AccessTokenCacheItem}s that match the given client id, read from the
+     * partitions of the client id only.
+     */
+    private List<AccessTokenCacheItem> getAllAccessTokensForApp(final String clientId, final TokenCacheAccessor.KeyFilter filter,
+                                                                final RequestContext requestContext) {
+        return Collections.unmodifiableList(deserializeAccessTokens(mTokenCacheAccessor.getAccessTokensForClientId(clientId,
+                filter, requestContext.getTelemetryRequestId())));
+    }
+
+    /**
+     * @return The {@link AccessTokenCacheItem}s in the partition of the given client id and environment whose key
+     * matches the filter, all of them if the filter is null.
+     */
+    private List<AccessTokenCacheItem> getAccessTokensInPartition(final String clientId, final String environment,
+                                                                  final TokenCacheAccessor.KeyFilter filter,
+                                                                  final RequestContext requestContext) {
+        return deserializeAccessTokens(mTokenCacheAccessor.getAccessTokens(clientId, environment, filter,
+                requestContext.getTelemetryRequestId()));
+    }
+
+    /**
+     * @return The {@link RefreshTokenCacheItem}s in the partition of the given client id and environment whose key
+     * matches the filter, all of them if the filter is null.
+     */
+    private List<RefreshTokenCacheItem> getRefreshTokensInPartition(final String clientId, final String environment,
+                                                                    final TokenCacheAccessor.KeyFilter filter,
+                                                                    final RequestContext requestContext) {
+        final Collection<String> refreshTokensAsString = mTokenCacheAccessor.getRefreshTokens(clientId, environment,
+                filter, requestContext.getTelemetryRequestId());
+        final List<RefreshTokenCacheItem> refreshTokenCacheItems = new ArrayList<>(refreshTokensAsString.size());
+        for (final String refreshTokenAsString : refreshTokensAsString) {
+            refreshTokenCacheItems.add(mGson.fromJson(refreshTokenAsString, RefreshTokenCacheItem.class));
+        }
+
+        return refreshTokenCacheItems;
+    }
+
+    private List<AccessTokenCacheItem> deserializeAccessTokens(final Collection<String> accessTokensAsString) {
+        final List<AccessTokenCacheItem> accessTokenCacheItems = new ArrayList<>(accessTokensAsString.size());
+        for (final String accessTokenAsString : accessTokensAsString) {
+            accessTokenCacheItems.add(mGson.fromJson(accessTokenAsString, AccessTokenCacheItem.class));
+        }
+
+        return accessTokenCacheItems;
     }
 
     /**
      * Look up refresh tokens with the given {@link RefreshTokenCacheKey}. Refresh token item has to match environment,
      * client id and user identifier.
      */
-    private List<RefreshTokenCacheItem> getRefreshTokens(final RefreshTokenCacheKey refreshTokenCacheKey, final RequestContext requestContext) {
-        final List<RefreshTokenCacheItem> allRTs = getAllRefreshTokens(requestContext);
+    private List<RefreshTokenCacheItem> getRefreshTokens(final RefreshTokenCacheKey refreshTokenCacheKey, final String environment,
+                                                         final RequestContext requestContext) {
+        final List<RefreshTokenCacheItem> partitionRTs = getRefreshTokensInPartition(refreshTokenCacheKey.mClientId,
+                environment, refreshTokenCacheKey, requestContext);
 
         final List<RefreshTokenCacheItem> foundRTs = new ArrayList<>();
-        for (final RefreshTokenCacheItem refreshTokenCacheItem : allRTs) {
+        for (final RefreshTokenCacheItem refreshTokenCacheItem : partitionRTs) {
             if (refreshTokenCacheKey.matches(refreshTokenCacheItem)) {
                 foundRTs.add(refreshTokenCacheItem);
             }
         }
 
         Logger.verbose(TAG, requestContext, "Retrieve refresh tokens for the given cache key");
-        Logger.verbosePII(TAG, requestContext, "Key used to retrieve refresh tokens is: " + refreshTokenCacheKey.toString());
+        Logger.verbosePII(TAG, requestContext, "Key used to retrieve refresh tokens is: %s", refreshTokenCacheKey);
         return foundRTs;
     }
 
@@ -439,8 +911,15 @@ class TokenCache {
      * For access token item, authority, clientid, user identifier has to be matched. Scopes in the item has to contain all
      * the scopes in the key.
      */
-    private List<AccessTokenCacheItem> getAccessTokens(final AccessTokenCacheKey tokenCacheKey, final RequestContext requestContext) {
-        final List<AccessTokenCacheItem> accessTokens = getAllAccessTokens(requestContext);
+    private List<AccessTokenCacheItem> getAccessTokens(final AccessTokenCacheKey tokenCacheKey, final String environment,
+                                                       final RequestContext requestContext) {
+        return filterAccessTokens(tokenCacheKey, getAccessTokensInPartition(tokenCacheKey.mClientId, environment,
+                tokenCacheKey, requestContext), requestContext);
+    }
+
+    private List<AccessTokenCacheItem> filterAccessTokens(final AccessTokenCacheKey tokenCacheKey,
+                                                          final List<AccessTokenCacheItem> accessTokens,
+                                                          final RequestContext requestContext) {
         final List<AccessTokenCacheItem> foundATs = new ArrayList<>();
         for (final AccessTokenCacheItem accessTokenCacheItem : accessTokens) {
             if (tokenCacheKey.matches(accessTokenCacheItem) && accessTokenCacheItem.getScope().containsAll(tokenCacheKey.getScope())) {
@@ -449,7 +928,36 @@ class TokenCache {
         }
 
         Logger.verbose(TAG, requestContext, "Retrieve access tokens for the given cache key.");
-        Logger.verbosePII(TAG, requestContext, "Key used to retrieve access tokens is: " + tokenCacheKey);
+        Logger.verbosePII(TAG, requestContext, "Key used to retrieve access tokens is: %s", tokenCacheKey);
         return foundATs;
     }
-}
\ No newline at end of file
+
+    /**
+     * Immutable index of the users with a refresh token in a partition, keyed by user identifier.
+     */
+    static final class UserIndex {
+        private final Map<String, User> mUsersByIdentifier;
+        private final List<User> mUsers;
+
+        UserIndex(final Map<String, User> usersByIdentifier) {
+            mUsersByIdentifier = usersByIdentifier;
+            mUsers = Collections.unmodifiableList(new ArrayList<>(usersByIdentifier.values()));
+        }
+
+        List<User> getUsers() {
+            return mUsers;
+        }
+
+        UserIndex withUser(final String userIdentifier, final User user) {
+            final Map<String, User> usersByIdentifier = new HashMap<>(mUsersByIdentifier);
+            usersByIdentifier.put(userIdentifier, user);
+            return new UserIndex(usersByIdentifier);
+        }
+
+        UserIndex withoutUser(final String userIdentifier) {
+            final Map<String, User> usersByIdentifier = new HashMap<>(mUsersByIdentifier);
+            usersByIdentifier.remove(userIdentifier);
+            return new UserIndex(usersByIdentifier);
+        }
+    }
+}
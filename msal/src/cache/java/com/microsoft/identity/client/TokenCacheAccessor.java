@@ -23,26 +23,59 @@
 
 package com.microsoft.identity.client;
 
-import android.app.Activity;
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.content.SharedPreferences.Editor;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * MSAL Internal class for access data storage for token read and write.
+ * MSAL Internal class for access data storage for token read and write, on top of a {@link TokenCacheStorage}. The
+ * default storage is the {@link FileTokenCacheStorage}.
+ * <p>
+ * Tokens are partitioned by client id and environment, each partition has its own access token and refresh token
+ * storage partition that is only read when a lookup needs it. The partition is derived from the cache key, keys it
+ * can't be derived from are kept in the original unpartitioned storage.
+ * <p>
+ * The storage can be shared by several processes of the app. Writes are made while holding the {@link TokenCacheLock},
+ * which also increments the cache generation, so the state a process loaded from the storage doesn't go stale.
+ * <p>
+ * With encryption enabled, the records are written encrypted with the {@link TokenCacheCipher}, the keys stay in plain
+ * text so lookups and deletions by key don't decrypt anything. A record is decrypted the first time it's read, the plain
+ * text is then kept in memory until the record changes. Plain text and encrypted records can be read in either mode.
  */
 final class TokenCacheAccessor {
     private static final String TAG = TokenCacheAccessor.class.getSimpleName();
 
     private static final String ACCESS_TOKEN_SHARED_PREFERENCE = "com.microsoft.identity.client.token";
     private static final String REFRESH_TOKEN_SHARED_PREFERENCE = "com.microsoft.identity.client.refreshToken";
+    private static final String PARTITION_INDEX_SHARED_PREFERENCE = "com.microsoft.identity.client.partitions";
+    private static final String PARTITION_DELIMITER = ".";
+
+    /**
+     * Filter of the records to read, applied to their cache key before the record is decrypted or deserialized.
+     */
+    interface KeyFilter {
+        /**
+         * @return True if the record stored with the given cache key is read.
+         */
+        boolean matchesKey(String cacheKey);
+    }
 
     private final Context mContext;
-    private final SharedPreferences mAccessTokenSharedPreference;
-    private final SharedPreferences mRefreshTokenSharedPreference;
+    private final TokenCacheLock mCacheLock;
+    private final TokenCacheStorage mStorage;
+    private final TokenCacheState mState;
+    private volatile boolean mIsEncryptionEnabled;
 
     /**
      * Constructor for {@link TokenCacheAccessor}. Access token and refresh token will be stored separately.
@@ -50,20 +83,28 @@ final class TokenCacheAccessor {
      * @param context
      */
     TokenCacheAccessor(final Context context) {
+        this(context, context == null ? null : FileTokenCacheStorage.getInstance(context));
+    }
+
+    /**
+     * Constructor for {@link TokenCacheAccessor} on top of the given {@link TokenCacheStorage}.
+     *
+     * @param context The application context.
+     * @param storage The {@link TokenCacheStorage} the tokens are persisted into.
+     */
+    TokenCacheAccessor(final Context context, final TokenCacheStorage storage) {
         if (context == null) {
             throw new IllegalArgumentException("context");
         }
 
-        mContext = context;
-
-        mAccessTokenSharedPreference = mContext.getSharedPreferences(ACCESS_TOKEN_SHARED_PREFERENCE,
-                Activity.MODE_PRIVATE);
-        mRefreshTokenSharedPreference = mContext.getSharedPreferences(REFRESH_TOKEN_SHARED_PREFERENCE,
-                Activity.MODE_PRIVATE);
-
-        if (mAccessTokenSharedPreference == null || mRefreshTokenSharedPreference == null) {
-            throw new IllegalStateException("Fail to create SharedPreference");
+        if (storage == null) {
+            throw new IllegalArgumentException("storage");
         }
+
+        mContext = context;
+        mCacheLock = TokenCacheLock.getInstance(context);
+        mStorage = storage;
+        mState = TokenCacheState.getInstance(storage);
     }
 
     private static CacheEvent.Builder createNewCacheEventBuilder(final String eventName, final boolean isRT) {
@@ -85,64 +126,178 @@ final class TokenCacheAccessor {
     /**
      * When storing access token, the key needs to be a strict match.
      */
-    void saveAccessToken(final String accessTokenCacheKey, final String accessTokenItem, final RequestContext requestContext) {
+    void saveAccessToken(final String accessTokenCacheKey, final String accessTokenItem, final RequestContext requestContext)
+            throws MsalClientException {
+        migrateLegacyStorage();
         // there shouldn't be any case that this method is called with null/empty key or item
         if (MsalUtils.isEmpty(accessTokenCacheKey) || MsalUtils.isEmpty(accessTokenItem)) {
             throw new IllegalArgumentException("accessTokenCacheKey/accessTokenItem empty or null");
         }
 
+        final String record = toRecord(accessTokenCacheKey, accessTokenItem);
         final CacheEvent.Builder cacheEventBuilder = createAndStartNewCacheEvent(requestContext.getTelemetryRequestId(), EventConstants.EventName.TOKEN_CACHE_WRITE, false);
 
-        final Editor editor = mAccessTokenSharedPreference.edit();
-        editor.putString(accessTokenCacheKey, accessTokenItem);
-        editor.apply();
+        final String partitionId = getPartitionIdForAccessTokenKey(accessTokenCacheKey);
+        mCacheLock.lock();
+        try {
+            registerPartition(partitionId);
+            commit(getAccessTokenPartition(partitionId), Collections.singletonMap(accessTokenCacheKey, record),
+                    Collections.<String>emptyList());
+        } finally {
+            mCacheLock.unlock();
+        }
 
         Telemetry.getInstance().stopEvent(requestContext.getTelemetryRequestId(), cacheEventBuilder);
         Logger.verbose(TAG, requestContext, "Access token is saved into cache.");
-        Logger.verbosePII(TAG, requestContext, "Access token is saved with key: " + accessTokenCacheKey);
+        Logger.verbosePII(TAG, requestContext, "Access token is saved with key: %s", accessTokenCacheKey);
     }
 
     /**
      * Save the refresh token item.
      */
-    void saveRefreshToken(final String refreshTokenCacheKey, final String refreshTokenItem, final RequestContext requestContext) {
+    void saveRefreshToken(final String refreshTokenCacheKey, final String refreshTokenItem, final RequestContext requestContext)
+            throws MsalClientException {
+        migrateLegacyStorage();
         // there shouldn't be any case that this method is called with null/empty key or item
         if (MsalUtils.isEmpty(refreshTokenCacheKey) || MsalUtils.isEmpty(refreshTokenItem)) {
             throw new IllegalArgumentException("refreshTokenCacheKey/refreshTokenItem empty or null");
         }
 
+        final String record = toRecord(refreshTokenCacheKey, refreshTokenItem);
         final CacheEvent.Builder cacheEventBuilder = createAndStartNewCacheEvent(requestContext.getTelemetryRequestId(), EventConstants.EventName.TOKEN_CACHE_WRITE, true);
 
-        final Editor editor = mRefreshTokenSharedPreference.edit();
-        editor.putString(refreshTokenCacheKey, refreshTokenItem);
-        editor.apply();
+        final String partitionId = getPartitionIdForRefreshTokenKey(refreshTokenCacheKey);
+        mCacheLock.lock();
+        try {
+            registerPartition(partitionId);
+            commit(getRefreshTokenPartition(partitionId), Collections.singletonMap(refreshTokenCacheKey, record),
+                    Collections.<String>emptyList());
+        } finally {
+            mCacheLock.unlock();
+        }
 
         Telemetry.getInstance().stopEvent(requestContext.getTelemetryRequestId(), cacheEventBuilder);
         Logger.verbose(TAG, requestContext, "Refresh token is successfully saved into cache.");
-        Logger.verbosePII(TAG, requestContext, "Refresh token is saved with key: " + refreshTokenCacheKey);
+        Logger.verbosePII(TAG, requestContext, "Refresh token is saved with key: %s", refreshTokenCacheKey);
     }
 
     void deleteAccessToken(final String accessTokenKey, final RequestContext requestContext) {
+        migrateLegacyStorage();
         final CacheEvent.Builder cacheEventBuilder = createAndStartNewCacheEvent(requestContext.getTelemetryRequestId(), EventConstants.EventName.TOKEN_CACHE_DELETE, false);
-        final Editor editor = mAccessTokenSharedPreference.edit();
-        editor.remove(accessTokenKey);
-        editor.apply();
+        mCacheLock.lock();
+        try {
+            commit(getAccessTokenPartition(getPartitionIdForAccessTokenKey(accessTokenKey)),
+                    Collections.<String, String>emptyMap(), Collections.singletonList(accessTokenKey));
+            mState.getDecryptedRecords().remove(accessTokenKey);
+        } finally {
+            mCacheLock.unlock();
+        }
         Telemetry.getInstance().stopEvent(requestContext.getTelemetryRequestId(), cacheEventBuilder);
     }
 
+    /**
+     * Delete the given access token items with a single edit per partition. Used by the cache maintenance, which runs
+     * outside of any request so no cache event is recorded.
+     *
+     * @param accessTokenKeys The string values of the access token cache item keys to remove.
+     */
+    void deleteAccessTokens(final Collection<String> accessTokenKeys) {
+        migrateLegacyStorage();
+        if (accessTokenKeys.isEmpty()) {
+            return;
+        }
+
+        mCacheLock.lock();
+        try {
+            final Map<String, List<String>> removedKeys = new HashMap<>();
+            for (final String accessTokenKey : accessTokenKeys) {
+                final String partition = getAccessTokenPartition(getPartitionIdForAccessTokenKey(accessTokenKey));
+                List<String> partitionKeys = removedKeys.get(partition);
+                if (partitionKeys == null) {
+                    partitionKeys = new ArrayList<>();
+                    removedKeys.put(partition, partitionKeys);
+                }
+                partitionKeys.add(accessTokenKey);
+                mState.getDecryptedRecords().remove(accessTokenKey);
+            }
+
+            for (final Map.Entry<String, List<String>> partitionKeys : removedKeys.entrySet()) {
+                commit(partitionKeys.getKey(), Collections.<String, String>emptyMap(), partitionKeys.getValue());
+            }
+        } finally {
+            mCacheLock.unlock();
+        }
+        Logger.verbose(TAG, null, "Removed %d access token items from cache.", accessTokenKeys.size());
+    }
+
+    /**
+     * Delete all the access and refresh tokens of the user in the given partitions, with a single write per storage
+     * partition while holding the {@link TokenCacheLock}. The user identifier is the last segment of both the access and refresh
+     * token cache keys, so the items are matched on their keys without being deserialized.
+     *
+     * @param partitionIds   The partitions to delete the tokens from.
+     * @param userIdentifier The unique identifier of the user.
+     * @return The keys of the deleted items.
+     */
+    List<String> deleteTokensForUser(final Collection<String> partitionIds, final String userIdentifier,
+                                     final RequestContext requestContext) {
+        migrateLegacyStorage();
+        final CacheEvent.Builder cacheEventBuilder = createAndStartNewCacheEvent(requestContext.getTelemetryRequestId(),
+                EventConstants.EventName.TOKEN_CACHE_DELETE, true).setIsAT(true);
+        final String keySuffix = TokenCacheKey.TOKEN_CACHE_KEY_DELIMITER + userIdentifier;
+        final List<String> deletedKeys = new ArrayList<>();
+        mCacheLock.lock();
+        try {
+            for (final String partitionId : partitionIds) {
+                deletedKeys.addAll(deleteKeysWithSuffix(getAccessTokenPartition(partitionId), keySuffix));
+                deletedKeys.addAll(deleteKeysWithSuffix(getRefreshTokenPartition(partitionId), keySuffix));
+            }
+        } finally {
+            mCacheLock.unlock();
+        }
+
+        Telemetry.getInstance().stopEvent(requestContext.getTelemetryRequestId(), cacheEventBuilder);
+        Logger.verbose(TAG, requestContext, "Removed %d token items of the user from cache.", deletedKeys.size());
+        return deletedKeys;
+    }
+
+    private List<String> deleteKeysWithSuffix(final String partition, final String keySuffix) {
+        final List<String> deletedKeys = new ArrayList<>();
+        for (final String key : mStorage.getAll(partition).keySet()) {
+            if (key.endsWith(keySuffix)) {
+                deletedKeys.add(key);
+            }
+        }
+
+        if (!deletedKeys.isEmpty()) {
+            commit(partition, Collections.<String, String>emptyMap(), deletedKeys);
+            for (final String key : deletedKeys) {
+                mState.getDecryptedRecords().remove(key);
+            }
+        }
+
+        return deletedKeys;
+    }
+
     /**
      * Delete the refresh token item.
      *
      * @param refreshTokenCacheKey The string value of the refresh token cache item key to remove.
      */
     void deleteRefreshToken(final String refreshTokenCacheKey, final RequestContext requestContext) {
+        migrateLegacyStorage();
         Logger.verbose(TAG, requestContext, "Remove the given refresh token item.");
-        Logger.verbosePII(TAG, requestContext, "Refresh token is deleted with key: " + refreshTokenCacheKey);
+        Logger.verbosePII(TAG, requestContext, "Refresh token is deleted with key: %s", refreshTokenCacheKey);
 
         final CacheEvent.Builder cacheEventBuilder = createAndStartNewCacheEvent(requestContext.getTelemetryRequestId(), EventConstants.EventName.TOKEN_CACHE_DELETE, true);
-        final Editor editor = mRefreshTokenSharedPreference.edit();
-        editor.remove(refreshTokenCacheKey);
-        editor.apply();
+        mCacheLock.lock();
+        try {
+            commit(getRefreshTokenPartition(getPartitionIdForRefreshTokenKey(refreshTokenCacheKey)),
+                    Collections.<String, String>emptyMap(), Collections.singletonList(refreshTokenCacheKey));
+            mState.getDecryptedRecords().remove(refreshTokenCacheKey);
+        } finally {
+            mCacheLock.unlock();
+        }
         Telemetry.getInstance().stopEvent(requestContext.getTelemetryRequestId(), cacheEventBuilder);
     }
 
@@ -150,19 +305,571 @@ final class TokenCacheAccessor {
      * @return Immutable List of all the {@link AccessTokenCacheItem}s.
      */
     Collection<String> getAllAccessTokens(final String telemetryRequestId) {
+        migrateLegacyStorage();
+        final CacheEvent.Builder cacheEventBuilder = createAndStartNewCacheEvent(telemetryRequestId, EventConstants.EventName.TOKEN_CACHE_LOOKUP, false);
+        final Collection<String> allATs = getAllAccessTokenEntries().values();
+        Telemetry.getInstance().stopEvent(telemetryRequestId, cacheEventBuilder);
+        return allATs;
+    }
+
+    /**
+     * @param filter The {@link KeyFilter} of the access tokens to read, null to read all of them.
+     * @return Immutable List of the {@link AccessTokenCacheItem}s in the partition of the given client id and
+     * environment, no other partition is read.
+     */
+    Collection<String> getAccessTokens(final String clientId, final String environment, final KeyFilter filter,
+                                       final String telemetryRequestId) {
+        migrateLegacyStorage();
+        final String partitionId = getPartitionId(clientId, environment);
+        if (mStorage.get(PARTITION_INDEX_SHARED_PREFERENCE, partitionId) == null) {
+            return Collections.emptyList();
+        }
+
         final CacheEvent.Builder cacheEventBuilder = createAndStartNewCacheEvent(telemetryRequestId, EventConstants.EventName.TOKEN_CACHE_LOOKUP, false);
-        final Map<String, String> allAT = (Map<String, String>) mAccessTokenSharedPreference.getAll();
+        final Collection<String> partitionATs = readRecords(getAccessTokenPartition(partitionId), filter).values();
         Telemetry.getInstance().stopEvent(telemetryRequestId, cacheEventBuilder);
-        return allAT.values();
+        return Collections.unmodifiableCollection(partitionATs);
+    }
+
+    /**
+     * @param filter The {@link KeyFilter} of the access tokens to read, null to read all of them.
+     * @return Immutable List of the {@link AccessTokenCacheItem}s in all the partitions of the given client id.
+     */
+    Collection<String> getAccessTokensForClientId(final String clientId, final KeyFilter filter,
+                                                  final String telemetryRequestId) {
+        migrateLegacyStorage();
+        final CacheEvent.Builder cacheEventBuilder = createAndStartNewCacheEvent(telemetryRequestId, EventConstants.EventName.TOKEN_CACHE_LOOKUP, false);
+        final List<String> clientATs = new ArrayList<>();
+        for (final String partitionId : getPartitionIds(clientId)) {
+            clientATs.addAll(readRecords(getAccessTokenPartition(partitionId), filter).values());
+        }
+        Telemetry.getInstance().stopEvent(telemetryRequestId, cacheEventBuilder);
+        return Collections.unmodifiableList(clientATs);
+    }
+
+    /**
+     * @return Immutable List of the {@link RefreshTokenCacheItem}s in all the partitions of the given client id.
+     */
+    Collection<String> getRefreshTokensForClientId(final String clientId, final String telemetryRequestId) {
+        migrateLegacyStorage();
+        final CacheEvent.Builder cacheEventBuilder = createAndStartNewCacheEvent(telemetryRequestId, EventConstants.EventName.TOKEN_CACHE_LOOKUP, true);
+        final List<String> clientRTs = new ArrayList<>();
+        for (final String partitionId : getPartitionIds(clientId)) {
+            clientRTs.addAll(readRecords(getRefreshTokenPartition(partitionId), null).values());
+        }
+        Telemetry.getInstance().stopEvent(telemetryRequestId, cacheEventBuilder);
+        return Collections.unmodifiableList(clientRTs);
+    }
+
+    /**
+     * @return Immutable map of all the {@link AccessTokenCacheItem}s keyed by their cache key. Used by the cache
+     * maintenance, no cache event is recorded.
+     */
+    Map<String, String> getAllAccessTokenEntries() {
+        migrateLegacyStorage();
+        final Map<String, String> allATs = readRecords(getAccessTokenPartition(null), null);
+        for (final String partitionId : getPartitionIds(null)) {
+            allATs.putAll(readRecords(getAccessTokenPartition(partitionId), null));
+        }
+
+        return Collections.unmodifiableMap(allATs);
     }
 
     /**
      * @return Immutable List of all the {@link RefreshTokenCacheItem}s.
      */
     Collection<String> getAllRefreshTokens(final String telemetryRequestId) {
+        migrateLegacyStorage();
+        final CacheEvent.Builder cacheEventBuilder = createAndStartNewCacheEvent(telemetryRequestId, EventConstants.EventName.TOKEN_CACHE_LOOKUP, true);
+        final List<String> allRTs = new ArrayList<>(readRecords(getRefreshTokenPartition(null), null).values());
+        for (final String partitionId : getPartitionIds(null)) {
+            allRTs.addAll(readRecords(getRefreshTokenPartition(partitionId), null).values());
+        }
+        Telemetry.getInstance().stopEvent(telemetryRequestId, cacheEventBuilder);
+        return Collections.unmodifiableList(allRTs);
+    }
+
+    /**
+     * @param filter The {@link KeyFilter} of the refresh tokens to read, null to read all of them.
+     * @return Immutable List of the {@link RefreshTokenCacheItem}s in the partition of the given client id and
+     * environment, no other partition is read.
+     */
+    Collection<String> getRefreshTokens(final String clientId, final String environment, final KeyFilter filter,
+                                        final String telemetryRequestId) {
+        migrateLegacyStorage();
+        final String partitionId = getPartitionId(clientId, environment);
+        if (mStorage.get(PARTITION_INDEX_SHARED_PREFERENCE, partitionId) == null) {
+            return Collections.emptyList();
+        }
+
         final CacheEvent.Builder cacheEventBuilder = createAndStartNewCacheEvent(telemetryRequestId, EventConstants.EventName.TOKEN_CACHE_LOOKUP, true);
-        final Map<String, String> allRTs = (Map<String, String>) mRefreshTokenSharedPreference.getAll();
+        final Collection<String> partitionRTs = readRecords(getRefreshTokenPartition(partitionId), filter).values();
         Telemetry.getInstance().stopEvent(telemetryRequestId, cacheEventBuilder);
-        return allRTs.values();
+        return Collections.unmodifiableCollection(partitionRTs);
+    }
+
+    /**
+     * Remove all the tokens from every partition and from the unpartitioned storage.
+     */
+    void removeAllTokens() {
+        mCacheLock.lock();
+        try {
+            for (final String partitionId : getPartitionIds(null)) {
+                clear(getAccessTokenPartition(partitionId));
+                clear(getRefreshTokenPartition(partitionId));
+            }
+
+            clear(getAccessTokenPartition(null));
+            clear(getRefreshTokenPartition(null));
+            clear(PARTITION_INDEX_SHARED_PREFERENCE);
+            mState.getDecryptedRecords().clear();
+
+            // the derived state wasn't updated for this write.
+            mState.invalidateDerivedState();
+        } finally {
+            mCacheLock.unlock();
+        }
+    }
+
+    /**
+     * Save the access and refresh token items keyed by their cache key, with a single write per storage partition. Used to
+     * restore the tokens in bulk outside of any request, so no cache event is recorded. The in-memory state derived from
+     * the storage is rebuilt on its next use.
+     *
+     * @param accessTokens  The access token items to save, keyed by their cache key.
+     * @param refreshTokens The refresh token items to save, keyed by their cache key.
+     */
+    void saveTokens(final Map<String, String> accessTokens, final Map<String, String> refreshTokens)
+            throws MsalClientException {
+        migrateLegacyStorage();
+        // encrypted before the lock is taken, the records are only written under it.
+        final Map<String, Map<String, String>> partitionATs = new HashMap<>();
+        for (final Map.Entry<String, String> accessToken : accessTokens.entrySet()) {
+            addToPartition(partitionATs, getPartitionIdForAccessTokenKey(accessToken.getKey()), accessToken.getKey(),
+                    toRecord(accessToken.getKey(), accessToken.getValue()));
+        }
+
+        final Map<String, Map<String, String>> partitionRTs = new HashMap<>();
+        for (final Map.Entry<String, String> refreshToken : refreshTokens.entrySet()) {
+            addToPartition(partitionRTs, getPartitionIdForRefreshTokenKey(refreshToken.getKey()), refreshToken.getKey(),
+                    toRecord(refreshToken.getKey(), refreshToken.getValue()));
+        }
+
+        mCacheLock.lock();
+        try {
+            final Set<String> partitionIds = new HashSet<>(partitionATs.keySet());
+            partitionIds.addAll(partitionRTs.keySet());
+            registerPartitions(partitionIds);
+            for (final Map.Entry<String, Map<String, String>> partition : partitionATs.entrySet()) {
+                commit(getAccessTokenPartition(partition.getKey()), partition.getValue(), Collections.<String>emptyList());
+            }
+
+            for (final Map.Entry<String, Map<String, String>> partition : partitionRTs.entrySet()) {
+                commit(getRefreshTokenPartition(partition.getKey()), partition.getValue(), Collections.<String>emptyList());
+            }
+
+            // the derived state wasn't updated for this write.
+            mState.invalidateDerivedState();
+        } finally {
+            mCacheLock.unlock();
+        }
+    }
+
+    private static void addToPartition(final Map<String, Map<String, String>> partitions, final String partitionId,
+                                       final String cacheKey, final String record) {
+        Map<String, String> partition = partitions.get(partitionId);
+        if (partition == null) {
+            partition = new HashMap<>();
+            partitions.put(partitionId, partition);
+        }
+        partition.put(cacheKey, record);
+    }
+
+    /**
+     * Record the generation an in-memory state derived from the storage, like an index, was built at. The state stays up
+     * to date through the writes of this process, its owner is expected to update it with them.
+     *
+     * @param name       The name of the derived state.
+     * @param generation The generation read before the storage was read to build the state.
+     */
+    void setDerivedStateGeneration(final String name, final long generation) {
+        mState.setDerivedStateGeneration(name, generation);
+    }
+
+    /**
+     * @return True if the storage hasn't been written by another process since the derived state was built.
+     */
+    boolean isDerivedStateUpToDate(final String name) {
+        return mState.isDerivedStateUpToDate(name, mCacheLock.getGeneration());
+    }
+
+    /**
+     * Enable or disable the encryption of the records written by this accessor. Records already stored are left as they
+     * are, see {@link #encryptPlainTextRecords()}.
+     */
+    void setEncryptionEnabled(final boolean isEncryptionEnabled) {
+        mIsEncryptionEnabled = isEncryptionEnabled;
+    }
+
+    /**
+     * Encrypt the records still stored in plain text, with a single write per storage partition. Must be called with
+     * encryption enabled.
+     *
+     * @return The number of records encrypted.
+     */
+    int encryptPlainTextRecords() throws MsalClientException {
+        migrateLegacyStorage();
+        final TokenCacheCipher cipher = TokenCacheCipher.getInstance(mContext);
+        int encryptedCount = 0;
+        mCacheLock.lock();
+        try {
+            final List<String> partitions = new ArrayList<>();
+            partitions.add(getAccessTokenPartition(null));
+            partitions.add(getRefreshTokenPartition(null));
+            for (final String partitionId : getPartitionIds(null)) {
+                partitions.add(getAccessTokenPartition(partitionId));
+                partitions.add(getRefreshTokenPartition(partitionId));
+            }
+
+            for (final String partition : partitions) {
+                final Map<String, String> encryptedRecords = new HashMap<>();
+                for (final Map.Entry<String, String> record : mStorage.getAll(partition).entrySet()) {
+                    if (!TokenCacheCipher.isEncrypted(record.getValue())) {
+                        encryptedRecords.put(record.getKey(), cipher.encrypt(record.getValue(), record.getKey()));
+                    }
+                }
+
+                if (!encryptedRecords.isEmpty()) {
+                    commit(partition, encryptedRecords, Collections.<String>emptyList());
+                    encryptedCount += encryptedRecords.size();
+                }
+            }
+        } finally {
+            mCacheLock.unlock();
+        }
+
+        Logger.info(TAG, null, "Encrypted %d token cache records stored in plain text.", encryptedCount);
+        return encryptedCount;
+    }
+
+    /**
+     * @return The {@link TokenCacheState} derived from the storage of this accessor.
+     */
+    TokenCacheState getCacheState() {
+        return mState;
+    }
+
+    /**
+     * @return The {@link TokenCacheLock} the writes into the storage are made with.
+     */
+    TokenCacheLock getCacheLock() {
+        return mCacheLock;
+    }
+
+    /**
+     * The partition id is made of the url safe encoded lower case client id and environment.
+     *
+     * @return The partition id for the given client id and environment.
+     */
+    static String getPartitionId(final String clientId, final String environment) {
+        return MsalUtils.base64UrlEncodeToString(clientId.toLowerCase(Locale.US)) + PARTITION_DELIMITER
+                + MsalUtils.base64UrlEncodeToString(environment.toLowerCase(Locale.US));
+    }
+
+    /**
+     * Access token key is made of the encoded authority, client id, scopes and user identifier, the environment is the
+     * host of the authority.
+     *
+     * @return The partition id, or null if the key is not in the format of {@link AccessTokenCacheKey}.
+     */
+    private static String getPartitionIdForAccessTokenKey(final String accessTokenKey) {
+        final String[] keySegments = TokenCacheKey.getKeySegments(accessTokenKey);
+        if (keySegments.length != 4) {
+            return null;
+        }
+
+        try {
+            final String authority = TokenCacheKey.decodeKeySegment(keySegments[0]);
+            return getPartitionId(TokenCacheKey.decodeKeySegment(keySegments[1]), new URL(authority).getHost());
+        } catch (final IllegalArgumentException | MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Refresh token key is made of the encoded environment, client id and user identifier.
+     *
+     * @return The partition id, or null if the key is not in the format of {@link RefreshTokenCacheKey}.
+     */
+    private static String getPartitionIdForRefreshTokenKey(final String refreshTokenKey) {
+        final String[] keySegments = TokenCacheKey.getKeySegments(refreshTokenKey);
+        if (keySegments.length != 3) {
+            return null;
+        }
+
+        try {
+            return getPartitionId(TokenCacheKey.decodeKeySegment(keySegments[1]),
+                    TokenCacheKey.decodeKeySegment(keySegments[0]));
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param clientId The client id to filter the partitions with, null for all the partitions.
+     * @return The ids of the known partitions.
+     */
+    List<String> getPartitionIds(final String clientId) {
+        migrateLegacyStorage();
+        final String lowerCaseClientId = clientId == null ? null : clientId.toLowerCase(Locale.US);
+        final List<String> partitionIds = new ArrayList<>();
+        for (final Map.Entry<String, String> partition : mStorage.getAll(PARTITION_INDEX_SHARED_PREFERENCE).entrySet()) {
+            if (lowerCaseClientId == null || lowerCaseClientId.equals(partition.getValue())) {
+                partitionIds.add(partition.getKey());
+            }
+        }
+
+        return partitionIds;
+    }
+
+    /**
+     * @return The record to store for the item, encrypted if encryption is enabled.
+     */
+    private String toRecord(final String cacheKey, final String item) throws MsalClientException {
+        if (!mIsEncryptionEnabled) {
+            return item;
+        }
+
+        final String record = TokenCacheCipher.getInstance(mContext).encrypt(item, cacheKey);
+        mState.getDecryptedRecords().put(cacheKey, new AbstractMap.SimpleImmutableEntry<>(record, item));
+        return record;
+    }
+
+    /**
+     * Read the records of the storage partition matching the filter keyed by their cache key. The filter is applied to
+     * the keys first, only the matching encrypted records are decrypted, unless the process has already decrypted them.
+     * A record that fails authentication can never be read and is deleted, one that can't be decrypted for another
+     * reason, e.g. the Keystore is unavailable, is left out as if it wasn't in the cache.
+     *
+     * @param filter The {@link KeyFilter} of the records to read, null to read all of them.
+     */
+    private Map<String, String> readRecords(final String partition, final KeyFilter filter) {
+        final Map<String, String> records = new HashMap<>();
+        final Map<String, String> unauthenticRecords = new HashMap<>();
+        for (final Map.Entry<String, String> record : mStorage.getAll(partition).entrySet()) {
+            if (filter != null && !filter.matchesKey(record.getKey())) {
+                continue;
+            }
+
+            if (!TokenCacheCipher.isEncrypted(record.getValue())) {
+                records.put(record.getKey(), record.getValue());
+                continue;
+            }
+
+            final Map.Entry<String, String> decryptedRecord = mState.getDecryptedRecords().get(record.getKey());
+            if (decryptedRecord != null && decryptedRecord.getKey().equals(record.getValue())) {
+                records.put(record.getKey(), decryptedRecord.getValue());
+                continue;
+            }
+
+            final String item = decryptRecord(record.getKey(), record.getValue(), unauthenticRecords);
+            if (item != null) {
+                records.put(record.getKey(), item);
+            }
+        }
+
+        if (!unauthenticRecords.isEmpty()) {
+            deleteUnauthenticRecords(partition, unauthenticRecords);
+        }
+
+        return records;
+    }
+
+    /**
+     * @return The item of the encrypted record, null if it can't be decrypted. A record that fails authentication is
+     * added to the records to delete.
+     */
+    private String decryptRecord(final String cacheKey, final String record, final Map<String, String> unauthenticRecords) {
+        final TokenCacheCipher cipher;
+        try {
+            cipher = TokenCacheCipher.getInstance(mContext);
+        } catch (final MsalClientException e) {
+            Logger.error(TAG, null, "Fail to load the token cache cipher, the encrypted record is skipped.", e);
+            return null;
+        }
+
+        try {
+            final String item = cipher.decrypt(record, cacheKey);
+            mState.getDecryptedRecords().put(cacheKey, new AbstractMap.SimpleImmutableEntry<>(record, item));
+            return item;
+        } catch (final MsalClientException e) {
+            if (TokenCacheCipher.isUnauthenticRecord(e)) {
+                unauthenticRecords.put(cacheKey, record);
+            } else {
+                Logger.error(TAG, null, "Fail to decrypt the token cache record, it's skipped.", e);
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Delete the records that failed authentication, unless they've been replaced since they were read.
+     *
+     * @param unauthenticRecords The records that failed authentication keyed by their cache key.
+     */
+    private void deleteUnauthenticRecords(final String partition, final Map<String, String> unauthenticRecords) {
+        Logger.warning(TAG, null, "Deleting %d token cache records that fail authentication.", unauthenticRecords.size());
+        mCacheLock.lock();
+        try {
+            final List<String> removedKeys = new ArrayList<>();
+            for (final Map.Entry<String, String> record : unauthenticRecords.entrySet()) {
+                if (record.getValue().equals(mStorage.get(partition, record.getKey()))) {
+                    removedKeys.add(record.getKey());
+                }
+            }
+
+            if (!removedKeys.isEmpty()) {
+                commit(partition, Collections.<String, String>emptyMap(), removedKeys);
+            }
+        } finally {
+            mCacheLock.unlock();
+        }
+    }
+
+    private static String getAccessTokenPartition(final String partitionId) {
+        return getPartition(ACCESS_TOKEN_SHARED_PREFERENCE, partitionId);
+    }
+
+    private static String getRefreshTokenPartition(final String partitionId) {
+        return getPartition(REFRESH_TOKEN_SHARED_PREFERENCE, partitionId);
+    }
+
+    /**
+     * @return The name of the storage partition of the tokens in the partition. A null partition id is the
+     * unpartitioned storage.
+     */
+    private static String getPartition(final String storageName, final String partitionId) {
+        if (partitionId == null) {
+            return storageName;
+        }
+
+        return storageName + PARTITION_DELIMITER + partitionId;
+    }
+
+    /**
+     * Write the changes into the storage partition, they're durable before the generation is incremented, other
+     * processes reload the storage as soon as they see the new generation. Must be called while holding the
+     * {@link TokenCacheLock}.
+     */
+    private void commit(final String partition, final Map<String, String> records, final Collection<String> removedKeys) {
+        mStorage.write(partition, records, removedKeys);
+        mState.advanceDerivedStateGenerations(mCacheLock.incrementGeneration());
+    }
+
+    /**
+     * Remove all the records of the storage partition. Must be called while holding the {@link TokenCacheLock}.
+     */
+    private void clear(final String partition) {
+        final Collection<String> keys = mStorage.getAll(partition).keySet();
+        if (!keys.isEmpty()) {
+            commit(partition, Collections.<String, String>emptyMap(), new ArrayList<>(keys));
+        }
+    }
+
+    /**
+     * Add the partition to the index with its client id, the first time a token is written into it. Must be called
+     * while holding the {@link TokenCacheLock}.
+     */
+    private void registerPartition(final String partitionId) {
+        if (partitionId != null) {
+            registerPartitions(Collections.singletonList(partitionId));
+        }
+    }
+
+    /**
+     * Add the partitions that are not in the index yet, with a single write. Must be called while holding the
+     * {@link TokenCacheLock}.
+     */
+    private void registerPartitions(final Collection<String> partitionIds) {
+        final Map<String, String> newPartitions = new HashMap<>();
+        for (final String partitionId : partitionIds) {
+            if (partitionId != null && mStorage.get(PARTITION_INDEX_SHARED_PREFERENCE, partitionId) == null) {
+                final String encodedClientId = partitionId.substring(0, partitionId.indexOf(PARTITION_DELIMITER));
+                newPartitions.put(partitionId, TokenCacheKey.decodeKeySegment(encodedClientId));
+            }
+        }
+
+        if (!newPartitions.isEmpty()) {
+            commit(PARTITION_INDEX_SHARED_PREFERENCE, newPartitions, Collections.<String>emptyList());
+        }
+    }
+
+    /**
+     * Tokens saved before the storage was partitioned are moved into their partitions, once per process and storage.
+     * It's done lazily by the first read or write of the cache, usually the first cache maintenance pass in the
+     * background. The first process to get the lock migrates them, the storage is empty for the others.
+     */
+    private void migrateLegacyStorage() {
+        if (mState.isLegacyStorageMigrated()) {
+            return;
+        }
+
+        mCacheLock.lock();
+        try {
+            // the migration reads and writes through the same methods, which don't start it again.
+            if (mState.isLegacyStorageMigrated() || mState.isMigratingLegacyStorage()) {
+                return;
+            }
+
+            mState.setMigratingLegacyStorage(true);
+            try {
+                migrateLegacyTokens(getAccessTokenPartition(null), false);
+                migrateLegacyTokens(getRefreshTokenPartition(null), true);
+            } finally {
+                mState.setMigratingLegacyStorage(false);
+            }
+
+            mState.setLegacyStorageMigrated();
+        } finally {
+            mCacheLock.unlock();
+        }
+    }
+
+    /**
+     * Move the tokens of the legacy storage partition into their partitions, with a single write per partition and
+     * for the index. Must be called while holding the {@link TokenCacheLock}.
+     */
+    private void migrateLegacyTokens(final String legacyPartition, final boolean isRT) {
+        final Map<String, String> legacyTokens = mStorage.getAll(legacyPartition);
+        if (legacyTokens.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Map<String, String>> partitionTokens = new HashMap<>();
+        final List<String> migratedKeys = new ArrayList<>();
+        for (final Map.Entry<String, String> legacyToken : legacyTokens.entrySet()) {
+            final String partitionId = isRT ? getPartitionIdForRefreshTokenKey(legacyToken.getKey())
+                    : getPartitionIdForAccessTokenKey(legacyToken.getKey());
+            if (partitionId == null) {
+                continue;
+            }
+
+            addToPartition(partitionTokens, partitionId, legacyToken.getKey(), legacyToken.getValue());
+            migratedKeys.add(legacyToken.getKey());
+        }
+
+        registerPartitions(partitionTokens.keySet());
+        for (final Map.Entry<String, Map<String, String>> partition : partitionTokens.entrySet()) {
+            // commit the copies before the legacy entries are removed.
+            commit(isRT ? getRefreshTokenPartition(partition.getKey()) : getAccessTokenPartition(partition.getKey()),
+                    partition.getValue(), Collections.<String>emptyList());
+        }
+
+        if (!migratedKeys.isEmpty()) {
+            commit(legacyPartition, Collections.<String, String>emptyMap(), migratedKeys);
+        }
+        Logger.info(TAG, null, "Migrated %d %s tokens into %d partitions.", migratedKeys.size(),
+                isRT ? "refresh" : "access", partitionTokens.size());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,339 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.security.KeyPairGeneratorSpec;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.Calendar;
+import java.util.Collections;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * MSAL internal class encrypting the token cache records at rest.
+ * <p>
+ * Records are encrypted with AES-GCM under a data key that is generated once per app, and stored wrapped by a key
+ * living in the Android Keystore. The data key is unwrapped the first time a record is encrypted or decrypted, and kept
+ * in memory for the life of the process, so the Keystore is only reached once. The cache key of the record is bound to
+ * it as associated data, an encrypted record can't be moved under another key.
+ */
+final class TokenCacheCipher {
+    private static final String TAG = TokenCacheCipher.class.getSimpleName();
+
+    /**
+     * Prefix of the encrypted records, records without it are stored in plain text.
+     */
+    static final String ENCRYPTED_RECORD_PREFIX = "E1:";
+
+    private static final String ANDROID_KEY_STORE = "AndroidKeyStore";
+    private static final String WRAPPING_KEY_ALIAS = "com.microsoft.identity.client.tokenCacheKey";
+    private static final String DATA_KEY_SHARED_PREFERENCE = "com.microsoft.identity.client.tokenCacheKey";
+    private static final String WRAPPED_DATA_KEY = "wrapped_data_key";
+
+    private static final String DATA_KEY_ALGORITHM = "AES";
+    private static final int DATA_KEY_SIZE = 256;
+    private static final String AES_GCM_CIPHER = "AES/GCM/NoPadding";
+    private static final String RSA_CIPHER = "RSA/ECB/PKCS1Padding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final int WRAPPING_KEY_VALIDITY_YEARS = 100;
+
+    // The data key is wrapped with an AES Keystore key from API 23, with an RSA Keystore key pair below.
+    private static final byte WRAPPED_WITH_AES = 1;
+    private static final byte WRAPPED_WITH_RSA = 2;
+
+    private static TokenCacheCipher sInstance;
+
+    private static final ThreadLocal<Cipher> RECORD_CIPHER = new ThreadLocal<>();
+
+    private final SecretKey mDataKey;
+    private final SecureRandom mSecureRandom = new SecureRandom();
+
+    private TokenCacheCipher(final SecretKey dataKey) {
+        mDataKey = dataKey;
+    }
+
+    /**
+     * Get the {@link TokenCacheCipher} of the process, the data key is unwrapped from the Keystore on the first call,
+     * or created if the app doesn't have one yet.
+     *
+     * @throws MsalClientException If the data key can't be created or unwrapped.
+     */
+    static synchronized TokenCacheCipher getInstance(final Context context) throws MsalClientException {
+        if (sInstance == null) {
+            sInstance = new TokenCacheCipher(loadDataKey(context));
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * @return True if the record is encrypted.
+     */
+    static boolean isEncrypted(final String record) {
+        return record != null && record.startsWith(ENCRYPTED_RECORD_PREFIX);
+    }
+
+    /**
+     * Encrypt the record with a new random IV.
+     *
+     * @param record   The plain text record.
+     * @param cacheKey The cache key the record is stored with.
+     * @return The encrypted record, made of the {@link #ENCRYPTED_RECORD_PREFIX} and the encoded IV and cipher text.
+     */
+    String encrypt(final String record, final String cacheKey) throws MsalClientException {
+        final byte[] iv = new byte[IV_LENGTH];
+        mSecureRandom.nextBytes(iv);
+        try {
+            final Cipher cipher = getRecordCipher();
+            cipher.init(Cipher.ENCRYPT_MODE, mDataKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            cipher.updateAAD(cacheKey.getBytes(Charset.forName(MsalUtils.ENCODING_UTF8)));
+            final byte[] cipherText = cipher.doFinal(record.getBytes(Charset.forName(MsalUtils.ENCODING_UTF8)));
+
+            final ByteBuffer encrypted = ByteBuffer.allocate(IV_LENGTH + cipherText.length).put(iv).put(cipherText);
+            return ENCRYPTED_RECORD_PREFIX + Base64.encodeToString(encrypted.array(), Base64.NO_WRAP);
+        } catch (final GeneralSecurityException e) {
+            throw new MsalClientException(MsalClientException.TOKEN_CACHE_ENCRYPTION_FAILED, "Fail to encrypt the token "
+                    + "cache record.", e);
+        }
+    }
+
+    /**
+     * Decrypt the record and verify it was stored with the given cache key.
+     *
+     * @param record   The encrypted record.
+     * @param cacheKey The cache key the record is stored with.
+     * @return The plain text record.
+     */
+    String decrypt(final String record, final String cacheKey) throws MsalClientException {
+        try {
+            final byte[] encrypted = Base64.decode(record.substring(ENCRYPTED_RECORD_PREFIX.length()), Base64.NO_WRAP);
+            if (encrypted.length <= IV_LENGTH) {
+                throw new MsalClientException(MsalClientException.TOKEN_CACHE_ENCRYPTION_FAILED, "The encrypted token "
+                        + "cache record is truncated.");
+            }
+
+            final Cipher cipher = getRecordCipher();
+            cipher.init(Cipher.DECRYPT_MODE, mDataKey, new GCMParameterSpec(TAG_LENGTH_BITS, encrypted, 0, IV_LENGTH));
+            cipher.updateAAD(cacheKey.getBytes(Charset.forName(MsalUtils.ENCODING_UTF8)));
+            return new String(cipher.doFinal(encrypted, IV_LENGTH, encrypted.length - IV_LENGTH),
+                    Charset.forName(MsalUtils.ENCODING_UTF8));
+        } catch (final GeneralSecurityException | IllegalArgumentException e) {
+            throw new MsalClientException(MsalClientException.TOKEN_CACHE_ENCRYPTION_FAILED, "Fail to decrypt the token "
+                    + "cache record.", e);
+        }
+    }
+
+    /**
+     * @param exception The exception thrown by {@link #decrypt(String, String)}.
+     * @return True if the record itself failed to decrypt: it's malformed, has been altered, or wasn't encrypted for
+     * its cache key with the current data key. Such a record can never be decrypted.
+     */
+    static boolean isUnauthenticRecord(final MsalClientException exception) {
+        final Throwable cause = exception.getCause();
+        return cause == null || cause instanceof AEADBadTagException || cause instanceof IllegalArgumentException;
+    }
+
+    /**
+     * Wrap the stream to encrypt what is written into it with AES-GCM under the given key. The random IV is written
+     * first, the authentication tag is written when the returned stream is closed.
+     *
+     * @param outputStream The stream to write the encrypted data into.
+     * @param key          The AES key to encrypt with.
+     */
+    static OutputStream encryptStream(final OutputStream outputStream, final SecretKey key)
+            throws GeneralSecurityException, IOException {
+        final byte[] iv = new byte[IV_LENGTH];
+        new SecureRandom().nextBytes(iv);
+        final Cipher cipher = Cipher.getInstance(AES_GCM_CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        outputStream.write(iv);
+        return new CipherOutputStream(outputStream, cipher);
+    }
+
+    /**
+     * Wrap the stream written by {@link #encryptStream(OutputStream, SecretKey)} to decrypt it. Reading fails with an
+     * {@link IOException} if the data was not encrypted with the given key or was altered.
+     *
+     * @param inputStream The stream to read the encrypted data from.
+     * @param key         The AES key to decrypt with.
+     */
+    static InputStream decryptStream(final InputStream inputStream, final SecretKey key)
+            throws GeneralSecurityException, IOException {
+        final byte[] iv = new byte[IV_LENGTH];
+        int read = 0;
+        while (read < IV_LENGTH) {
+            final int count = inputStream.read(iv, read, IV_LENGTH - read);
+            if (count < 0) {
+                throw new IOException("The encrypted stream is truncated.");
+            }
+            read += count;
+        }
+
+        final Cipher cipher = Cipher.getInstance(AES_GCM_CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        return new CipherInputStream(inputStream, cipher);
+    }
+
+    /**
+     * Cipher instances are not thread safe, each thread keeps its own instead of looking up the provider per record.
+     */
+    private static Cipher getRecordCipher() throws GeneralSecurityException {
+        Cipher cipher = RECORD_CIPHER.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(AES_GCM_CIPHER);
+            RECORD_CIPHER.set(cipher);
+        }
+
+        return cipher;
+    }
+
+    /**
+     * Unwrap the data key of the app, or create and store it the first time. Done while holding the
+     * {@link TokenCacheLock}, so the processes of the app agree on a single data key.
+     */
+    private static SecretKey loadDataKey(final Context context) throws MsalClientException {
+        final TokenCacheLock cacheLock = TokenCacheLock.getInstance(context);
+        cacheLock.lock();
+        try {
+            final KeyStore keyStore = KeyStore.getInstance(ANDROID_KEY_STORE);
+            keyStore.load(null);
+
+            // Reloaded from disk if the cache has been written since, another process may have created the data key.
+            final FileTokenCacheStorage dataKeyStorage = FileTokenCacheStorage.getInstance(context);
+            final String wrappedDataKey = dataKeyStorage.get(DATA_KEY_SHARED_PREFERENCE, WRAPPED_DATA_KEY);
+            if (wrappedDataKey != null && keyStore.containsAlias(WRAPPING_KEY_ALIAS)) {
+                return unwrapDataKey(keyStore, Base64.decode(wrappedDataKey, Base64.NO_WRAP));
+            }
+
+            if (wrappedDataKey != null) {
+                // The Keystore entry is gone, e.g. the storage was restored from a backup on another device.
+                Logger.warning(TAG, null, "The token cache wrapping key doesn't exist, the records encrypted with the "
+                        + "previous data key can't be read.");
+            }
+
+            final KeyGenerator keyGenerator = KeyGenerator.getInstance(DATA_KEY_ALGORITHM);
+            keyGenerator.init(DATA_KEY_SIZE);
+            final SecretKey dataKey = keyGenerator.generateKey();
+            final byte[] wrapped = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                    ? wrapWithAesKey(dataKey) : wrapWithRsaKey(context, dataKey);
+            if (!dataKeyStorage.commit(DATA_KEY_SHARED_PREFERENCE, Collections.singletonMap(WRAPPED_DATA_KEY,
+                    Base64.encodeToString(wrapped, Base64.NO_WRAP)), Collections.<String>emptyList())) {
+                throw new MsalClientException(MsalClientException.TOKEN_CACHE_ENCRYPTION_FAILED, "Fail to store the "
+                        + "token cache data key.");
+            }
+            cacheLock.incrementGeneration();
+
+            Logger.info(TAG, null, "Created the token cache data key.");
+            return dataKey;
+        } catch (final GeneralSecurityException | IOException | IllegalArgumentException e) {
+            throw new MsalClientException(MsalClientException.TOKEN_CACHE_ENCRYPTION_FAILED, "Fail to load the token "
+                    + "cache data key from the Android Keystore.", e);
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private static SecretKey unwrapDataKey(final KeyStore keyStore, final byte[] wrapped) throws GeneralSecurityException {
+        final Key wrappingKey = keyStore.getKey(WRAPPING_KEY_ALIAS, null);
+        final byte[] dataKey;
+        if (wrapped[0] == WRAPPED_WITH_AES) {
+            final Cipher cipher = Cipher.getInstance(AES_GCM_CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, wrappingKey, new GCMParameterSpec(TAG_LENGTH_BITS, wrapped, 1, IV_LENGTH));
+            dataKey = cipher.doFinal(wrapped, 1 + IV_LENGTH, wrapped.length - 1 - IV_LENGTH);
+        } else if (wrapped[0] == WRAPPED_WITH_RSA) {
+            final Cipher cipher = Cipher.getInstance(RSA_CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, wrappingKey);
+            dataKey = cipher.doFinal(wrapped, 1, wrapped.length - 1);
+        } else {
+            throw new GeneralSecurityException("Unknown token cache data key wrapping: " + wrapped[0]);
+        }
+
+        return new SecretKeySpec(dataKey, DATA_KEY_ALGORITHM);
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private static byte[] wrapWithAesKey(final SecretKey dataKey) throws GeneralSecurityException {
+        final KeyGenerator keyGenerator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, ANDROID_KEY_STORE);
+        keyGenerator.init(new KeyGenParameterSpec.Builder(WRAPPING_KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .build());
+        final SecretKey wrappingKey = keyGenerator.generateKey();
+
+        // The Keystore picks the IV of its keys.
+        final Cipher cipher = Cipher.getInstance(AES_GCM_CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, wrappingKey);
+        final byte[] iv = cipher.getIV();
+        final byte[] wrappedKey = cipher.doFinal(dataKey.getEncoded());
+        return ByteBuffer.allocate(1 + iv.length + wrappedKey.length).put(WRAPPED_WITH_AES).put(iv).put(wrappedKey).array();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static byte[] wrapWithRsaKey(final Context context, final SecretKey dataKey) throws GeneralSecurityException {
+        final Calendar start = Calendar.getInstance();
+        final Calendar end = Calendar.getInstance();
+        end.add(Calendar.YEAR, WRAPPING_KEY_VALIDITY_YEARS);
+        final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA", ANDROID_KEY_STORE);
+        keyPairGenerator.initialize(new KeyPairGeneratorSpec.Builder(context)
+                .setAlias(WRAPPING_KEY_ALIAS)
+                .setSubject(new X500Principal("CN=" + WRAPPING_KEY_ALIAS))
+                .setSerialNumber(BigInteger.ONE)
+                .setStartDate(start.getTime())
+                .setEndDate(end.getTime())
+                .build());
+
+        final Cipher cipher = Cipher.getInstance(RSA_CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, keyPairGenerator.generateKeyPair().getPublic());
+        final byte[] wrappedKey = cipher.doFinal(dataKey.getEncoded());
+        return ByteBuffer.allocate(1 + wrappedKey.length).put(WRAPPED_WITH_RSA).put(wrappedKey).array();
+    }
+}
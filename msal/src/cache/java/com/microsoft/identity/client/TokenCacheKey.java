@@ -23,12 +23,15 @@
 
 package com.microsoft.identity.client;
 
+import android.util.Base64;
+
+import java.nio.charset.Charset;
 import java.util.Locale;
 
 /**
  * Object used to group the all the conditions to lookup into token cache. Base token cache key class.
  */
-abstract class TokenCacheKey<T extends BaseTokenCacheItem> {
+abstract class TokenCacheKey<T extends BaseTokenCacheItem> implements TokenCacheAccessor.KeyFilter {
     static final String TOKEN_CACHE_KEY_DELIMITER = "$";
     final String mClientId;
     final String mUserIdentifier;
@@ -45,4 +48,28 @@ abstract class TokenCacheKey<T extends BaseTokenCacheItem> {
     }
 
     abstract boolean matches(T tokenCacheItem);
+
+    /**
+     * @return A {@link TokenCacheAccessor.KeyFilter} matching the keys of the tokens of the given user, the user
+     * identifier is the last segment of both the access token and the refresh token keys.
+     */
+    static TokenCacheAccessor.KeyFilter forUser(final String userIdentifier) {
+        return new TokenCacheAccessor.KeyFilter() {
+            @Override
+            public boolean matchesKey(final String cacheKey) {
+                return cacheKey.endsWith(TOKEN_CACHE_KEY_DELIMITER + userIdentifier);
+            }
+        };
+    }
+
+    /**
+     * @return The segments of the cache key, each segment but the user identifier is url safe encoded.
+     */
+    static String[] getKeySegments(final String cacheKey) {
+        return cacheKey.split("\\" + TOKEN_CACHE_KEY_DELIMITER);
+    }
+
+    static String decodeKeySegment(final String keySegment) {
+        return new String(Base64.decode(keySegment, Base64.URL_SAFE), Charset.forName(MsalUtils.ENCODING_UTF8));
+    }
 }
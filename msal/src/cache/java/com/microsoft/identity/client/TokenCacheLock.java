@@ -0,0 +1,215 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * MSAL internal class coordinating the writes into the token cache storage across the processes of the app.
+ * <p>
+ * The lock is held with an exclusive lock on a file, so it's honored by every process of the app, and is reentrant for
+ * the thread holding it. The same file holds the generation of the cache, which is incremented on every write. A
+ * process compares the generation with the one it last loaded the storage at to know if another process wrote into
+ * it, without reading the storage itself.
+ * <p>
+ * The lock also keeps the generation each file of the storage loaded by the process was loaded at. A file loaded at the
+ * current generation is up to date, the writes made by the process while holding the lock keep it so. The states
+ * derived from a storage's records are tracked by its {@link TokenCacheState}.
+ */
+final class TokenCacheLock {
+    private static final String TAG = TokenCacheLock.class.getSimpleName();
+
+    private static final String LOCK_FILE_NAME = "com.microsoft.identity.client.cache.lock";
+    private static final int GENERATION_SIZE = 8;
+
+    private static TokenCacheLock sInstance;
+
+    private final ReentrantLock mProcessLock = new ReentrantLock();
+    private final Map<String, Long> mLoadedGenerations = new ConcurrentHashMap<>();
+    private final FileChannel mChannel;
+
+    /**
+     * The generation of the cache when the lock file can't be opened, only the writes of the process increment it.
+     */
+    private final AtomicLong mProcessGeneration = new AtomicLong();
+    private FileLock mFileLock;
+
+    /**
+     * Constructor for {@link TokenCacheLock}. If the lock file can't be opened, the lock only applies to the current
+     * process and the generation is kept in memory.
+     *
+     * @param lockFile The file holding the lock and the generation.
+     */
+    TokenCacheLock(final File lockFile) {
+        FileChannel channel = null;
+        try {
+            channel = new RandomAccessFile(lockFile, "rw").getChannel();
+        } catch (final IOException e) {
+            Logger.error(TAG, null, "Fail to open the token cache lock file, cache writes are not coordinated "
+                    + "across processes.", e);
+        }
+
+        mChannel = channel;
+    }
+
+    /**
+     * @return The {@link TokenCacheLock} shared by all the token caches of the process.
+     */
+    static synchronized TokenCacheLock getInstance(final Context context) {
+        if (sInstance == null) {
+            sInstance = new TokenCacheLock(new File(context.getFilesDir(), LOCK_FILE_NAME));
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Acquire the lock, blocking until no other thread or process holds it.
+     */
+    void lock() {
+        mProcessLock.lock();
+        if (mProcessLock.getHoldCount() > 1 || mChannel == null) {
+            return;
+        }
+
+        try {
+            mFileLock = mChannel.lock();
+        } catch (final IOException e) {
+            Logger.error(TAG, null, "Fail to acquire the token cache file lock.", e);
+        }
+    }
+
+    /**
+     * Release the lock, the file lock is released when the outermost hold is released.
+     */
+    void unlock() {
+        if (mProcessLock.getHoldCount() == 1 && mFileLock != null) {
+            try {
+                mFileLock.release();
+            } catch (final IOException e) {
+                Logger.error(TAG, null, "Fail to release the token cache file lock.", e);
+            }
+            mFileLock = null;
+        }
+
+        mProcessLock.unlock();
+    }
+
+    /**
+     * Reading the generation doesn't need the lock, a torn read only causes an extra reload of the storage.
+     *
+     * @return The current generation of the cache, 0 if the cache has never been written.
+     */
+    long getGeneration() {
+        if (mChannel == null) {
+            return mProcessGeneration.get();
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(GENERATION_SIZE);
+        try {
+            while (buffer.hasRemaining()) {
+                if (mChannel.read(buffer, buffer.position()) < 0) {
+                    return 0;
+                }
+            }
+        } catch (final IOException e) {
+            Logger.error(TAG, null, "Fail to read the token cache generation.", e);
+            return 0;
+        }
+
+        buffer.flip();
+        return buffer.getLong();
+    }
+
+    /**
+     * Increment the generation after a write into the storage. Must be called while holding the lock.
+     *
+     * @return The new generation of the cache.
+     */
+    long incrementGeneration() {
+        if (!mProcessLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Token cache lock is not held");
+        }
+
+        final long generation;
+        if (mChannel == null) {
+            generation = mProcessGeneration.incrementAndGet();
+        } else {
+            generation = getGeneration() + 1;
+            writeGeneration(generation);
+        }
+
+        // Nothing else has been written while the lock is held, what was up to date before this write still is.
+        for (final Map.Entry<String, Long> loadedGeneration : mLoadedGenerations.entrySet()) {
+            if (loadedGeneration.getValue() == generation - 1) {
+                loadedGeneration.setValue(generation);
+            }
+        }
+
+        return generation;
+    }
+
+    /**
+     * Record the generation a state was loaded from the storage at.
+     *
+     * @param name       The name of the state.
+     * @param generation The generation read before the storage was read.
+     * @return The generation the state was previously loaded at, null if it wasn't loaded.
+     */
+    Long setLoadedGeneration(final String name, final long generation) {
+        return mLoadedGenerations.put(name, generation);
+    }
+
+    /**
+     * @return The generation the state was loaded at, null if it wasn't loaded.
+     */
+    Long getLoadedGeneration(final String name) {
+        return mLoadedGenerations.get(name);
+    }
+
+    private void writeGeneration(final long generation) {
+        final ByteBuffer buffer = ByteBuffer.allocate(GENERATION_SIZE);
+        buffer.putLong(generation);
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                mChannel.write(buffer, buffer.position());
+            }
+        } catch (final IOException e) {
+            Logger.error(TAG, null, "Fail to write the token cache generation.", e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.identity.client;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MSAL internal class running the {@link TokenCache} maintenance in the background: once for each storage when the
+ * first {@link PublicClientApplication} on top of it is created, then periodically for the life of the process. The
+ * passes only touch the storage, so a single cache is serviced per {@link TokenCacheStorage} instance.
+ */
+final class TokenCacheMaintenance {
+    private static final String TAG = TokenCacheMaintenance.class.getSimpleName();
+
+    static final long MAINTENANCE_INTERVAL_HOURS = 6;
+
+    /**
+     * The cache serviced for each storage, keyed by the state shared by the caches on top of it. The caches are held
+     * weakly so they don't outlive their application, the entry is kept so the first pass isn't run again.
+     */
+    private static final Map<TokenCacheState, WeakReference<TokenCache>> TOKEN_CACHES = new WeakHashMap<>();
+
+    private static ScheduledExecutorService sExecutor;
+    private static boolean sIsScheduled;
+
+    /**
+     * Private constructor to prevent the class from being initiated.
+     */
+    private TokenCacheMaintenance() {
+    }
+
+    /**
+     * Schedule the maintenance for the given {@link TokenCache}. The first pass on its storage runs right away, the next
+     * ones run with the periodic passes. Nothing is done if another live cache on the same storage is scheduled.
+     */
+    static synchronized void schedule(final TokenCache tokenCache) {
+        final TokenCacheState cacheState = tokenCache.getCacheState();
+        final boolean isFirstPass = !TOKEN_CACHES.containsKey(cacheState);
+        final WeakReference<TokenCache> scheduledCache = TOKEN_CACHES.get(cacheState);
+        if (scheduledCache != null && scheduledCache.get() != null) {
+            return;
+        }
+
+        TOKEN_CACHES.put(cacheState, new WeakReference<>(tokenCache));
+        if (isFirstPass) {
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    runMaintenance(tokenCache);
+                }
+            });
+        }
+
+        if (sIsScheduled) {
+            return;
+        }
+
+        sIsScheduled = true;
+        getExecutor().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (final TokenCache scheduledTokenCache : getScheduledTokenCaches()) {
+                    runMaintenance(scheduledTokenCache);
+                }
+            }
+        }, MAINTENANCE_INTERVAL_HOURS, MAINTENANCE_INTERVAL_HOURS, TimeUnit.HOURS);
+    }
+
+    private static synchronized List<TokenCache> getScheduledTokenCaches() {
+        final List<TokenCache> tokenCaches = new ArrayList<>(TOKEN_CACHES.size());
+        for (final WeakReference<TokenCache> scheduledCache : TOKEN_CACHES.values()) {
+            final TokenCache tokenCache = scheduledCache.get();
+            if (tokenCache != null) {
+                tokenCaches.add(tokenCache);
+            }
+        }
+
+        return tokenCaches;
+    }
+
+    /**
+     * Encrypt the tokens of the given {@link TokenCache} still stored in plain text, in the background.
+     */
+    static synchronized void encryptPlainTextTokens(final TokenCache tokenCache) {
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    tokenCache.encryptPlainTextTokens();
+                } catch (final MsalClientException | RuntimeException e) {
+                    Logger.error(TAG, null, "Fail to encrypt the tokens stored in plain text.", e);
+                }
+            }
+        });
+    }
+
+    private static ScheduledExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, TAG);
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+
+        return sExecutor;
+    }
+
+    private static void runMaintenance(final TokenCache tokenCache) {
+        try {
+            tokenCache.compactAccessTokens(TokenCache.MAX_ACCESS_TOKEN_ENTRIES);
+        } catch (final RuntimeException e) {
+            // An exception would cancel the following runs, the next pass will try again.
+            Logger.error(TAG, null, "Token cache maintenance failed.", e);
+        }
+    }
+}
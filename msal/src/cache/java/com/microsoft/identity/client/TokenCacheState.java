@@ -0,0 +1,168 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MSAL internal class holding the in-memory state derived from a {@link TokenCacheStorage} instance: the decrypted
+ * records, the last use of the access tokens, the user indexes and the generations they were built at. It's shared by
+ * all the token caches of the process on top of the same storage, and never by caches on different storages.
+ * <p>
+ * A derived state is up to date while the cache generation is the one it was built at. The writes made through the
+ * storage by the process advance the generations, the changes made to the storage outside of the sdk drop them.
+ */
+final class TokenCacheState implements TokenCacheStorage.ChangeListener {
+    private static final String TAG = TokenCacheState.class.getSimpleName();
+
+    private static final Map<TokenCacheStorage, TokenCacheState> STATES = new WeakHashMap<>();
+
+    /**
+     * The encrypted records decrypted by the process keyed by their cache key, each with the encrypted record it was
+     * decrypted from, the entry is stale once the stored record differs.
+     */
+    private final Map<String, Map.Entry<String, String>> mDecryptedRecords = new ConcurrentHashMap<>();
+
+    /**
+     * Last time an access token was returned from the cache in this process, keyed by the cache key.
+     */
+    private final Map<String, Long> mAccessTokenLastUsed = new ConcurrentHashMap<>();
+
+    /**
+     * The users with a refresh token, by partition id. An index is replaced as a whole when it changes.
+     */
+    private final Map<String, TokenCache.UserIndex> mUserIndexes = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> mDerivedStateGenerations = new ConcurrentHashMap<>();
+
+    private volatile boolean mIsLegacyStorageMigrated;
+    private boolean mIsMigratingLegacyStorage;
+
+    /**
+     * Private constructor, the state is obtained with {@link #getInstance(TokenCacheStorage)}.
+     */
+    private TokenCacheState() {
+    }
+
+    /**
+     * @return The {@link TokenCacheState} of the storage instance, created and registered as its
+     * {@link TokenCacheStorage.ChangeListener} the first time.
+     */
+    static TokenCacheState getInstance(final TokenCacheStorage storage) {
+        synchronized (STATES) {
+            TokenCacheState state = STATES.get(storage);
+            if (state == null) {
+                state = new TokenCacheState();
+                storage.addChangeListener(state);
+                STATES.put(storage, state);
+            }
+
+            return state;
+        }
+    }
+
+    @Override
+    public void onChanged(final String partition) {
+        Logger.verbose(TAG, null, "Token cache storage has been changed outside of the sdk.");
+        // the derived state wasn't updated for this write.
+        invalidateDerivedState();
+    }
+
+    Map<String, Map.Entry<String, String>> getDecryptedRecords() {
+        return mDecryptedRecords;
+    }
+
+    Map<String, Long> getAccessTokenLastUsed() {
+        return mAccessTokenLastUsed;
+    }
+
+    Map<String, TokenCache.UserIndex> getUserIndexes() {
+        return mUserIndexes;
+    }
+
+    /**
+     * Record the generation a derived state was built at.
+     *
+     * @param name       The name of the derived state.
+     * @param generation The generation read before the storage was read to build the state.
+     */
+    void setDerivedStateGeneration(final String name, final long generation) {
+        mDerivedStateGenerations.put(name, generation);
+    }
+
+    /**
+     * @return True if the derived state was built at the given current generation.
+     */
+    boolean isDerivedStateUpToDate(final String name, final long currentGeneration) {
+        final Long generation = mDerivedStateGenerations.get(name);
+        return generation != null && generation == currentGeneration;
+    }
+
+    /**
+     * Advance the derived states that were up to date before a write the process made into the storage, their owners
+     * are expected to update them with it.
+     *
+     * @param generation The generation after the write.
+     */
+    void advanceDerivedStateGenerations(final long generation) {
+        for (final Map.Entry<String, Long> derivedStateGeneration : mDerivedStateGenerations.entrySet()) {
+            if (derivedStateGeneration.getValue() == generation - 1) {
+                derivedStateGeneration.setValue(generation);
+            }
+        }
+    }
+
+    /**
+     * Drop the generations of the derived states, after a write their owners didn't apply. They're rebuilt on their
+     * next use.
+     */
+    void invalidateDerivedState() {
+        mDerivedStateGenerations.clear();
+    }
+
+    boolean isLegacyStorageMigrated() {
+        return mIsLegacyStorageMigrated;
+    }
+
+    void setLegacyStorageMigrated() {
+        mIsLegacyStorageMigrated = true;
+    }
+
+    /**
+     * Must be called while holding the {@link TokenCacheLock}.
+     */
+    boolean isMigratingLegacyStorage() {
+        return mIsMigratingLegacyStorage;
+    }
+
+    /**
+     * Must be called while holding the {@link TokenCacheLock}.
+     */
+    void setMigratingLegacyStorage(final boolean isMigratingLegacyStorage) {
+        mIsMigratingLegacyStorage = isMigratingLegacyStorage;
+    }
+}
@@ -32,6 +32,7 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -60,6 +61,7 @@ final class HttpRequest {
     private final byte[] mRequestContent;
     private final String mRequestContentType;
     private final String mRequestMethod;
+    private final Map<String, String> mCommonHeaders;
     private final Map<String, String> mRequestHeaders = new HashMap<>();
     private final RequestContext mRequestContext;
 
@@ -67,10 +69,13 @@ final class HttpRequest {
      * Constructor for {@link HttpRequest} with request {@link URL} and request headers.
      *
      * @param requestUrl     The {@link URL} to make the http request.
+     * @param commonHeaders  Shared headers used to send the http request, they're applied before the request headers.
      * @param requestHeaders Headers used to send the http request.
      */
-    private HttpRequest(final URL requestUrl, final Map<String, String> requestHeaders, final String requestMethod, final RequestContext requestContext) {
-        this(requestUrl, requestHeaders, requestMethod, null, null, requestContext);
+    private HttpRequest(final URL requestUrl, final Map<String, String> commonHeaders,
+                        final Map<String, String> requestHeaders, final String requestMethod,
+                        final RequestContext requestContext) {
+        this(requestUrl, commonHeaders, requestHeaders, requestMethod, null, null, requestContext);
     }
 
     /**
@@ -78,15 +83,18 @@ final class HttpRequest {
      * type.
      *
      * @param requestUrl         The {@link URL} to make the http request.
+     * @param commonHeaders      Shared headers used to send the http request, they're not copied.
      * @param requestHeaders     Headers used to send the http request.
      * @param requestContent     Post message sent in the post request.
      * @param requestContentType Request content type.
      */
-    private HttpRequest(final URL requestUrl, final Map<String, String> requestHeaders,
-                        final String requestMethod, final byte[] requestContent,
-                        final String requestContentType, final RequestContext requestContext) {
+    private HttpRequest(final URL requestUrl, final Map<String, String> commonHeaders,
+                        final Map<String, String> requestHeaders, final String requestMethod,
+                        final byte[] requestContent, final String requestContentType,
+                        final RequestContext requestContext) {
         mRequestUrl = requestUrl;
 
+        mCommonHeaders = commonHeaders;
         mRequestHeaders.put(HOST, requestUrl.getAuthority());
         mRequestHeaders.putAll(requestHeaders);
 
@@ -108,7 +116,24 @@ final class HttpRequest {
                                         final byte[] requestContent, final String requestContentType,
                                         final RequestContext requestContext)
             throws IOException, MsalServiceException {
-        final HttpRequest httpRequest = new HttpRequest(requestUrl, requestHeaders, REQUEST_METHOD_POST,
+        return sendPost(requestUrl, Collections.<String, String>emptyMap(), requestHeaders, requestContent,
+                requestContentType, requestContext);
+    }
+
+    /**
+     * Send post request {@link URL}, shared headers, request headers, post message and the request content type.
+     *
+     * @param requestUrl         The {@link URL} to make the http request.
+     * @param commonHeaders      Immutable headers shared across requests, request headers with the same name win.
+     * @param requestHeaders     Headers used to send the http request.
+     * @param requestContent     Post message sent in the post request.
+     * @param requestContentType Request content type.
+     */
+    static HttpResponse sendPost(final URL requestUrl, final Map<String, String> commonHeaders,
+                                 final Map<String, String> requestHeaders, final byte[] requestContent,
+                                 final String requestContentType, final RequestContext requestContext)
+            throws IOException, MsalServiceException {
+        final HttpRequest httpRequest = new HttpRequest(requestUrl, commonHeaders, requestHeaders, REQUEST_METHOD_POST,
                 requestContent, requestContentType, requestContext);
         Logger.verbose(TAG, requestContext, "Sending Http Post request.");
         return httpRequest.send();
@@ -123,7 +148,21 @@ final class HttpRequest {
     public static HttpResponse sendGet(final URL requestUrl, final Map<String, String> requestHeaders,
                                        final RequestContext requestContext)
             throws IOException, MsalServiceException {
-        final HttpRequest httpRequest = new HttpRequest(requestUrl, requestHeaders, REQUEST_METHOD_GET, requestContext);
+        return sendGet(requestUrl, Collections.<String, String>emptyMap(), requestHeaders, requestContext);
+    }
+
+    /**
+     * Send Get request {@link URL}, shared headers and request headers.
+     *
+     * @param requestUrl     The {@link URL} to make the http request.
+     * @param commonHeaders  Immutable headers shared across requests, request headers with the same name win.
+     * @param requestHeaders Headers used to send the http request.
+     */
+    static HttpResponse sendGet(final URL requestUrl, final Map<String, String> commonHeaders,
+                                final Map<String, String> requestHeaders, final RequestContext requestContext)
+            throws IOException, MsalServiceException {
+        final HttpRequest httpRequest = new HttpRequest(requestUrl, commonHeaders, requestHeaders, REQUEST_METHOD_GET,
+                requestContext);
 
         Logger.verbose(TAG, requestContext, "Sending Http Get request.");
         return httpRequest.send();
@@ -159,6 +198,7 @@ final class HttpRequest {
             // In android, network timeout is thrown as the SocketTimeOutException, we need to catch this and perform
             // retry. If retry also fails with timeout, the socketTimeoutException will be bubbled up
             Logger.verbose(TAG, mRequestContext, "Request timeout with SocketTimeoutException, will retry one more time.");
+            Metrics.getInstance().increment(Metrics.Counter.HTTP_RETRY);
             waitBeforeRetry();
             return executeHttpSend();
         }
@@ -166,6 +206,7 @@ final class HttpRequest {
         if (isRetryableError(httpResponse.getStatusCode())) {
             // retry if we get 500/503/504
             Logger.verbose(TAG, mRequestContext, "Received retryable status code 500/503/504, will retry one more time.");
+            Metrics.getInstance().increment(Metrics.Counter.HTTP_RETRY);
             waitBeforeRetry();
             return executeHttpSend();
         }
@@ -200,7 +241,7 @@ final class HttpRequest {
             final int statusCode = urlConnection.getResponseCode();
             httpEventBuilder.setStatusCode(statusCode);
             final String responseBody = responseStream == null ? "" : convertStreamToString(responseStream);
-            Logger.verbose(TAG, mRequestContext, "Returned status code is: " + statusCode);
+            Logger.verbose(TAG, mRequestContext, "Returned status code is: %d", statusCode);
             response = new HttpResponse(statusCode, responseBody, urlConnection.getHeaderFields());
         } finally {
             safeCloseStream(responseStream);
@@ -214,11 +255,9 @@ final class HttpRequest {
         final HttpURLConnection urlConnection = HttpUrlConnectionFactory.createHttpURLConnection(mRequestUrl);
         urlConnection.setRequestProperty("Connection", "close");
 
-        // Apply request headers and update the headers with default attributes first
-        final Set<Map.Entry<String, String>> headerEntries = mRequestHeaders.entrySet();
-        for (final Map.Entry<String, String> entry : headerEntries) {
-            urlConnection.setRequestProperty(entry.getKey(), entry.getValue());
-        }
+        // Apply the shared headers first, request headers override them
+        applyRequestHeaders(urlConnection, mCommonHeaders);
+        applyRequestHeaders(urlConnection, mRequestHeaders);
 
         urlConnection.setConnectTimeout(MsalSettings.INSTANCE.getConnectTimeOut());
         urlConnection.setReadTimeout(MsalSettings.INSTANCE.getReadTimeOut());
@@ -229,6 +268,13 @@ final class HttpRequest {
         return urlConnection;
     }
 
+    private static void applyRequestHeaders(final HttpURLConnection urlConnection, final Map<String, String> headers) {
+        final Set<Map.Entry<String, String>> headerEntries = headers.entrySet();
+        for (final Map.Entry<String, String> entry : headerEntries) {
+            urlConnection.setRequestProperty(entry.getKey(), entry.getValue());
+        }
+    }
+
     private static void setRequestBody(final HttpURLConnection connection, final byte[] contentRequest,
                                        final String requestContentType) throws IOException {
         if (contentRequest == null) {
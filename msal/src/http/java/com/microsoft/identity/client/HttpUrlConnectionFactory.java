@@ -26,15 +26,15 @@ package com.microsoft.identity.client;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Internal class for create {@link java.net.HttpURLConnection}.
  * For testability, test case could set the mocked {@link java.net.HttpURLConnection} to inject dependency.
  */
 final class HttpUrlConnectionFactory {
-    private static Queue<HttpURLConnection> sMockedConnectionQueue = new LinkedList<>();
+    private static Queue<HttpURLConnection> sMockedConnectionQueue = new ConcurrentLinkedQueue<>();
 
     /**
      * Private constructor to prevent the class from being initiated.
@@ -75,8 +75,10 @@ final class HttpUrlConnectionFactory {
      * @throws IOException if it fails to open connection with the provided URL.
      */
     static HttpURLConnection createHttpURLConnection(final URL url) throws IOException {
-        if (!sMockedConnectionQueue.isEmpty()) {
-            return sMockedConnectionQueue.poll();
+        // batch silent requests create connections from several threads.
+        final HttpURLConnection mockedConnection = sMockedConnectionQueue.poll();
+        if (mockedConnection != null) {
+            return mockedConnection;
         }
 
         return (HttpURLConnection) url.openConnection();
@@ -42,6 +42,10 @@ final class Constants {
 
     public static final String AUTHORIZATION_FINAL_URL = "com.microsoft.identity.client.finalUrl";
 
+    public static final String USE_EMBEDDED_WEBVIEW = "com.microsoft.identity.request.embedded.webview";
+
+    public static final String REDIRECT_URI_KEY = "com.microsoft.identity.request.redirect.uri";
+
     static final class UIResponse {
         static final int CANCEL = 2001;
 
@@ -64,7 +64,7 @@ final class MsalUtils {
     /**
      * The encoding scheme the sdk uses.
      */
-    public static final String ENCODING_UTF8 = "UTF_8";
+    public static final String ENCODING_UTF8 = "UTF-8";
 
     /**
      * Default access token expiration time in seconds.
@@ -414,6 +414,33 @@ final class MsalUtils {
         return url;
     }
 
+    /**
+     * Check if the url is the redirect uri. The scheme and authority are compared case insensitively and the path
+     * exactly, the query and fragment carrying the authorization response are ignored.
+     *
+     * @param url         The url to check.
+     * @param redirectUri The redirect uri of the app.
+     * @return True if the url is the redirect uri, false if it's not or either of them isn't a hierarchical uri.
+     */
+    static boolean isRedirectUri(final String url, final String redirectUri) {
+        if (isEmpty(url) || isEmpty(redirectUri)) {
+            return false;
+        }
+
+        final Uri uri = Uri.parse(url);
+        final Uri redirect = Uri.parse(redirectUri);
+        if (!uri.isHierarchical() || !redirect.isHierarchical() || uri.getScheme() == null
+                || uri.getEncodedAuthority() == null) {
+            return false;
+        }
+
+        final String path = uri.getEncodedPath() == null ? "" : uri.getEncodedPath();
+        final String redirectPath = redirect.getEncodedPath() == null ? "" : redirect.getEncodedPath();
+        return uri.getScheme().equalsIgnoreCase(redirect.getScheme())
+                && uri.getEncodedAuthority().equalsIgnoreCase(redirect.getEncodedAuthority())
+                && path.equals(redirectPath);
+    }
+
     static String getUniqueUserIdentifier(final String uid, final String utid) {
         return base64UrlEncodeToString(uid) + "." + base64UrlEncodeToString(utid);
     }
@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -49,7 +50,12 @@ final class Oauth2Client {
 
     private final Map<String, String> mBodyParameters = new HashMap<>();
     private final Map<String, String> mQueryParameters = new HashMap<>();
-    private final Map<String, String> mHeader = new HashMap<>(PlatformIdHelper.getPlatformIdParameters());
+    private final Map<String, String> mHeader = new HashMap<>();
+
+    /**
+     * Headers sent with every request, computed once. Per request headers in {@link #mHeader} are layered on top.
+     */
+    private static final Map<String, String> COMMON_HEADERS = createCommonHeaders();
 
     private final RequestContext mRequestContext;
 
@@ -69,6 +75,14 @@ final class Oauth2Client {
         mHeader.put(key, value);
     }
 
+    private static Map<String, String> createCommonHeaders() {
+        final Map<String, String> commonHeaders = new HashMap<>(PlatformIdHelper.getPlatformIdParameters());
+        commonHeaders.put(HEADER_ACCEPT, HEADER_ACCEPT_VALUE);
+        commonHeaders.put(OauthConstants.OauthHeader.CORRELATION_ID_IN_RESPONSE, "true");
+
+        return Collections.unmodifiableMap(commonHeaders);
+    }
+
     /**
      * Send post request to get token with the given authority. Authority will hold the token endpoint.
      */
@@ -131,15 +145,11 @@ final class Oauth2Client {
         // append query parameter to the endpoint first
         final URL endpointWithQP = new URL(MsalUtils.appendQueryParameterToUrl(endpoint, mQueryParameters));
 
-        // add common headers
-        addHeader(HEADER_ACCEPT, HEADER_ACCEPT_VALUE);
-        addHeader(OauthConstants.OauthHeader.CORRELATION_ID_IN_RESPONSE, "true");
-
         final HttpResponse response;
         if (HttpRequest.REQUEST_METHOD_GET.equals(requestMethod)) {
-            response = HttpRequest.sendGet(endpointWithQP, mHeader, mRequestContext);
+            response = HttpRequest.sendGet(endpointWithQP, COMMON_HEADERS, mHeader, mRequestContext);
         } else {
-            response = HttpRequest.sendPost(endpointWithQP, mHeader,
+            response = HttpRequest.sendPost(endpointWithQP, COMMON_HEADERS, mHeader,
                     buildRequestMessage(mBodyParameters), POST_CONTENT_TYPE, mRequestContext);
         }
 
@@ -153,8 +163,8 @@ final class Oauth2Client {
 
         final Map<String, String> responseItems = parseResponseItems(httpResponse);
 
-        Logger.info(TAG, mRequestContext, "Http response status code is: " + httpResponse.getStatusCode());
-        Logger.verbosePII(TAG, mRequestContext, "HttpResponse body is: " + httpResponse.getBody());
+        Logger.info(TAG, mRequestContext, "Http response status code is: %d", httpResponse.getStatusCode());
+        Logger.verbosePII(TAG, mRequestContext, "HttpResponse body is: %s", httpResponse.getBody());
 
         if (httpResponse.getStatusCode() == HttpURLConnection.HTTP_OK) {
             return delegate.parseSuccessRawResponse(responseItems);
@@ -178,7 +188,7 @@ final class Oauth2Client {
         return responseItems;
     }
 
-    private byte[] buildRequestMessage(final Map<String, String> bodyParameters) throws UnsupportedEncodingException {
+    byte[] buildRequestMessage(final Map<String, String> bodyParameters) throws UnsupportedEncodingException {
         final Set<String> requestBodyEntries = new HashSet<>();
         final Set<Map.Entry<String, String>> bodyEntries = bodyParameters.entrySet();
         for (Map.Entry<String, String> bodyEntry : bodyEntries) {
@@ -213,8 +223,8 @@ final class Oauth2Client {
                 final UUID correlationId = UUID.fromString(correlationIdInHeader);
                 //CHECKSTYLE:OFF: checkstyle:EmptyBlock
                 if (!correlationId.equals(correlationIdInRequest)) {
-                    Logger.warning(TAG, mRequestContext, "Returned correlation is: " + correlationId + ", it doesn't match the sent in the "
-                            + "request: " + correlationIdInRequest);
+                    Logger.warning(TAG, mRequestContext, "Returned correlation is: %s, it doesn't match the sent in the request: %s",
+                            correlationId, correlationIdInRequest);
                 }
             } catch (final IllegalArgumentException e) {
                 Logger.error(TAG, mRequestContext, "Returned correlation id is not formatted correctly", e);
@@ -40,7 +40,22 @@ final class PlatformIdHelper {
     private PlatformIdHelper() {
     }
 
+    /**
+     * Holder of the platform id parameters, they don't change for the life of the process so they're computed once
+     * on first use.
+     */
+    private static final class PlatformIdParametersHolder {
+        private static final Map<String, String> PLATFORM_ID_PARAMETERS = createPlatformIdParameters();
+    }
+
+    /**
+     * @return The shared, unmodifiable map of platform id parameters.
+     */
     static Map<String, String> getPlatformIdParameters() {
+        return PlatformIdParametersHolder.PLATFORM_ID_PARAMETERS;
+    }
+
+    private static Map<String, String> createPlatformIdParameters() {
         final Map<String, String> platformParameters = new HashMap<>();
 
         platformParameters.put(PlatformIdParameters.PRODUCT, PlatformIdParameters.PRODUCT_NAME);
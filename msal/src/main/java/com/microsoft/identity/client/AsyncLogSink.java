@@ -0,0 +1,238 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bounded ring buffer that hands log messages off to the external {@link ILoggerCallback} on a background thread,
+ * so that slow loggers (for example ones writing to a file) don't add latency to the request pipeline.
+ * Producers never block: when the buffer is full, a message is dropped according to the
+ * {@link Logger.OverflowPolicy}, and the number of dropped messages is reported to the callback once there is
+ * room again.
+ */
+final class AsyncLogSink {
+    private static final String TAG = AsyncLogSink.class.getSimpleName();
+    private static final String DRAIN_THREAD_NAME = "msal-async-logger";
+
+    private final Object mLock = new Object();
+    private final AtomicReference<ILoggerCallback> mCallback;
+    private final Logger.OverflowPolicy mOverflowPolicy;
+    private final Thread mDrainThread;
+
+    // Entries are kept in parallel arrays so that enqueueing doesn't allocate.
+    private final String[] mTags;
+    private final Logger.LogLevel[] mLogLevels;
+    private final String[] mMessages;
+    private final boolean[] mContainsPII;
+
+    // All guarded by mLock.
+    private int mHead;
+    private int mSize;
+    private int mDroppedCount;
+    private boolean mIsDelivering;
+    private boolean mIsStopped;
+
+    /**
+     * Create the sink and start its drain thread.
+     *
+     * @param capacity       The maximum number of messages held in the buffer.
+     * @param overflowPolicy The {@link Logger.OverflowPolicy} applied when the buffer is full.
+     * @param callback       Reference to the {@link ILoggerCallback} the messages are delivered to.
+     */
+    AsyncLogSink(final int capacity, final Logger.OverflowPolicy overflowPolicy,
+                 final AtomicReference<ILoggerCallback> callback) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflowPolicy is null");
+        }
+
+        mCallback = callback;
+        mOverflowPolicy = overflowPolicy;
+        mTags = new String[capacity];
+        mLogLevels = new Logger.LogLevel[capacity];
+        mMessages = new String[capacity];
+        mContainsPII = new boolean[capacity];
+
+        mDrainThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, DRAIN_THREAD_NAME);
+        mDrainThread.setDaemon(true);
+        mDrainThread.start();
+    }
+
+    /**
+     * Enqueue a log message. Never blocks.
+     *
+     * @return False if the sink is already shut down, true otherwise (even if the message was dropped on overflow).
+     */
+    boolean offer(final String tag, final Logger.LogLevel logLevel, final String message, final boolean containsPII) {
+        synchronized (mLock) {
+            if (mIsStopped) {
+                return false;
+            }
+
+            final int capacity = mMessages.length;
+            if (mSize == capacity) {
+                mDroppedCount++;
+                if (mOverflowPolicy == Logger.OverflowPolicy.DROP_NEWEST) {
+                    return true;
+                }
+
+                // DROP_OLDEST, overwrite the head.
+                clearSlot(mHead);
+                mHead = (mHead + 1) % capacity;
+                mSize--;
+            }
+
+            final int tail = (mHead + mSize) % capacity;
+            mTags[tail] = tag;
+            mLogLevels[tail] = logLevel;
+            mMessages[tail] = message;
+            mContainsPII[tail] = containsPII;
+            mSize++;
+            mLock.notifyAll();
+        }
+
+        return true;
+    }
+
+    /**
+     * Wait until all the messages enqueued so far are delivered to the callback.
+     *
+     * @param timeoutInMillis The maximum time to wait.
+     * @return True if the buffer was drained, false if the timeout elapsed first.
+     */
+    boolean flush(final long timeoutInMillis) {
+        // Called from within the callback, waiting would never finish.
+        if (Thread.currentThread() == mDrainThread) {
+            return false;
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMillis);
+        synchronized (mLock) {
+            while (mSize > 0 || mDroppedCount > 0 || mIsDelivering) {
+                final long remainingInMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingInMillis <= 0 || !mDrainThread.isAlive()) {
+                    return false;
+                }
+
+                try {
+                    mLock.wait(remainingInMillis);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Flush the pending messages and stop the drain thread. Messages offered afterwards are rejected.
+     *
+     * @param timeoutInMillis The maximum time to wait for the pending messages to be delivered.
+     */
+    void shutdown(final long timeoutInMillis) {
+        flush(timeoutInMillis);
+        synchronized (mLock) {
+            mIsStopped = true;
+            mLock.notifyAll();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            final String tag;
+            final Logger.LogLevel logLevel;
+            final String message;
+            final boolean containsPII;
+
+            synchronized (mLock) {
+                mIsDelivering = false;
+                while (mSize == 0 && mDroppedCount == 0 && !mIsStopped) {
+                    mLock.notifyAll();
+                    try {
+                        mLock.wait();
+                    } catch (final InterruptedException e) {
+                        mIsStopped = true;
+                    }
+                }
+
+                if (mDroppedCount > 0) {
+                    tag = TAG;
+                    logLevel = Logger.LogLevel.WARNING;
+                    message = mDroppedCount + " log messages were dropped because the async log buffer was full.";
+                    containsPII = false;
+                    mDroppedCount = 0;
+                } else if (mSize > 0) {
+                    tag = mTags[mHead];
+                    logLevel = mLogLevels[mHead];
+                    message = mMessages[mHead];
+                    containsPII = mContainsPII[mHead];
+                    clearSlot(mHead);
+                    mHead = (mHead + 1) % mMessages.length;
+                    mSize--;
+                } else {
+                    // Stopped and nothing left to deliver.
+                    mLock.notifyAll();
+                    return;
+                }
+
+                mIsDelivering = true;
+            }
+
+            deliver(tag, logLevel, message, containsPII);
+        }
+    }
+
+    private void deliver(final String tag, final Logger.LogLevel logLevel, final String message, final boolean containsPII) {
+        final ILoggerCallback callback = mCallback.get();
+        if (callback == null) {
+            return;
+        }
+
+        try {
+            callback.log(tag, logLevel, message, containsPII);
+        } catch (final RuntimeException e) {
+            // A misbehaving callback must not kill the drain thread, nothing else to report the failure to.
+            return;
+        }
+    }
+
+    private void clearSlot(final int index) {
+        mTags[index] = null;
+        mLogLevels[index] = null;
+        mMessages[index] = null;
+    }
+}
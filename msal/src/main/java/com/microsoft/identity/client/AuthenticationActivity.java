@@ -24,17 +24,15 @@
 package com.microsoft.identity.client;
 
 import android.app.Activity;
-import android.content.ComponentName;
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
-import android.support.customtabs.CustomTabsClient;
 import android.support.customtabs.CustomTabsIntent;
-import android.support.customtabs.CustomTabsServiceConnection;
 import android.support.customtabs.CustomTabsSession;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
 
-import java.lang.ref.WeakReference;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -44,6 +42,8 @@ import java.util.concurrent.TimeUnit;
  * custom tab; Otherwise the sdk will launch chrome.
  * AuthenticationActivity will be responsible for checking if it's safe to launch chrome custom tab, if not, will
  * go with chrome browser, if chrome is not installed, we throw error back.
+ * If embedded WebView is requested, the authorize request is loaded in a WebView hosted by this activity instead, and the
+ * redirect is intercepted in process.
  */
 public final class AuthenticationActivity extends Activity {
 
@@ -54,21 +54,23 @@ public final class AuthenticationActivity extends Activity {
     private int mRequestId;
     private boolean mRestarted;
     private String mChromePackageWithCustomTabSupport;
-    private CustomTabsIntent mCustomTabsIntent;
-    private MsalCustomTabsServiceConnection mCustomTabsServiceConnection;
     private UiEvent.Builder mUiEventBuilder;
     private String mTelemetryRequestId;
+    private boolean mUseEmbeddedWebView;
+    private String mRedirectUri;
+    private WebView mWebView;
+    private boolean mIsRedirectHandled;
 
     @Override
     protected void onCreate(final Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        mChromePackageWithCustomTabSupport = MsalUtils.getChromePackageWithCustomTabSupport(getApplicationContext());
-
         // If activity is killed by the os, savedInstance will be the saved bundle.
         if (savedInstanceState != null) {
             Logger.verbose(TAG, null, "AuthenticationActivity is re-created after killed by the os.");
             mRestarted = true;
+            mRequestId = savedInstanceState.getInt(Constants.REQUEST_ID);
+            setDefaultResult();
             mTelemetryRequestId = savedInstanceState.getString(Constants.TELEMETRY_REQUEST_ID);
             mUiEventBuilder = new UiEvent.Builder();
             return;
@@ -82,117 +84,70 @@ public final class AuthenticationActivity extends Activity {
 
         mRequestUrl = data.getStringExtra(Constants.REQUEST_URL_KEY);
         mRequestId = data.getIntExtra(Constants.REQUEST_ID, 0);
+        setDefaultResult();
         if (MsalUtils.isEmpty(mRequestUrl)) {
             sendError(MsalClientException.UNRESOLVABLE_INTENT, "Request url is not set on the intent");
             return;
         }
 
+        mUseEmbeddedWebView = data.getBooleanExtra(Constants.USE_EMBEDDED_WEBVIEW, false);
+        mRedirectUri = data.getStringExtra(Constants.REDIRECT_URI_KEY);
+        if (mUseEmbeddedWebView) {
+            if (MsalUtils.isEmpty(mRedirectUri)) {
+                sendError(MsalClientException.UNRESOLVABLE_INTENT, "Redirect uri is not set on the intent");
+                return;
+            }
+
+            // The embedded WebView doesn't depend on the browser installed on the device.
+            startUiEvent(data);
+            return;
+        }
+
+        mChromePackageWithCustomTabSupport = BrowserCapabilityResolver.getInstance().getChromePackageWithCustomTabSupport(getApplicationContext());
+
         // We'll use custom tab if the chrome installed on the device comes with custom tab support(on 45 and above it
         // does). If the chrome package doesn't contain the support, we'll use chrome to launch the UI.
-        if (MsalUtils.getChromePackage(this.getApplicationContext()) == null) {
+        if (BrowserCapabilityResolver.getInstance().getChromePackage(this.getApplicationContext()) == null) {
             Logger.info(TAG, null, "Chrome is not installed on the device, cannot continue with auth.");
             sendError(MsalClientException.CHROME_NOT_INSTALLED, "Chrome is not installed on the device, cannot proceed with auth");
             return;
         }
 
+        startUiEvent(data);
+    }
+
+    private void startUiEvent(final Intent data) {
         mTelemetryRequestId = data.getStringExtra(Constants.TELEMETRY_REQUEST_ID);
         mUiEventBuilder = new UiEvent.Builder();
         Telemetry.getInstance().startEvent(mTelemetryRequestId, mUiEventBuilder);
     }
 
     @Override
-    protected void onStart() {
-        super.onStart();
-        if (mChromePackageWithCustomTabSupport != null) {
-            warmUpCustomTabs();
+    protected void onDestroy() {
+        if (mWebView != null) {
+            EmbeddedWebViewProvider.release(mWebView);
+            mWebView = null;
         }
-    }
 
-    @Override
-    protected void onStop() {
-        super.onStop();
-        if (null != mCustomTabsServiceConnection && mCustomTabsServiceConnection.getCustomTabsServiceIsBound()) {
-            unbindService(mCustomTabsServiceConnection);
-        }
+        super.onDestroy();
     }
 
-    private void warmUpCustomTabs() {
-        final CountDownLatch latch = new CountDownLatch(1);
-        mCustomTabsServiceConnection = new MsalCustomTabsServiceConnection(latch);
-
-        // Initiate the service-bind action
-        CustomTabsClient.bindCustomTabsService(
-                this,
-                mChromePackageWithCustomTabSupport,
-                mCustomTabsServiceConnection
-        );
-
-        boolean initCustomTabsWithSession = true;
-        try {
-            // await returns true if count is 0, false if action times out
-            // invert this boolean to indicate if we should skip warming up
-            boolean timedOut = !latch.await(CUSTOMTABS_MAX_CONNECTION_TIMEOUT, TimeUnit.SECONDS);
-            if (timedOut) {
-                // if the request timed out, we don't actually know whether or not the service connected.
-                // to be safe, we'll skip warmup and rely on mCustomTabsServiceIsBound
-                // to unbind the Service when onStop() is called.
-                initCustomTabsWithSession = false;
-                Logger.warning(TAG, null, "Connection to CustomTabs timed out. Skipping warmup.");
-            }
-        } catch (InterruptedException e) {
-            Logger.error(TAG, null, "Failed to connect to CustomTabs. Skipping warmup.", e);
-            initCustomTabsWithSession = false;
+    @Override
+    public void onBackPressed() {
+        if (mWebView != null && mWebView.canGoBack()) {
+            mWebView.goBack();
+            return;
         }
 
-        final CustomTabsIntent.Builder builder = initCustomTabsWithSession
-                ? new CustomTabsIntent.Builder(mCustomTabsServiceConnection.getCustomTabsSession()) : new CustomTabsIntent.Builder();
-
-        // Create the Intent used to launch the Url
-        mCustomTabsIntent = builder.setShowTitle(true).build();
-        mCustomTabsIntent.intent.setPackage(mChromePackageWithCustomTabSupport);
+        cancelRequest();
     }
 
-    private static class MsalCustomTabsServiceConnection extends CustomTabsServiceConnection {
-
-        private final WeakReference<CountDownLatch> mLatchWeakReference;
-        private CustomTabsClient mCustomTabsClient;
-        private CustomTabsSession mCustomTabsSession;
-        private boolean mCustomTabsServiceIsBound;
-
-        MsalCustomTabsServiceConnection(final CountDownLatch latch) {
-            mLatchWeakReference = new WeakReference<>(latch);
-        }
-
-        @Override
-        public void onCustomTabsServiceConnected(ComponentName name, CustomTabsClient client) {
-            final CountDownLatch latch = mLatchWeakReference.get();
-
-            mCustomTabsServiceIsBound = true;
-            mCustomTabsClient = client;
-            mCustomTabsClient.warmup(0L);
-            mCustomTabsSession = mCustomTabsClient.newSession(null);
-
-            if (null != latch) {
-                latch.countDown();
-            }
-        }
-
-        @Override
-        public void onServiceDisconnected(ComponentName componentName) {
-            mCustomTabsServiceIsBound = false;
-        }
-
-        /**
-         * Gets the {@link CustomTabsSession} associated to this CustomTabs connection.
-         *
-         * @return the session.
-         */
-        CustomTabsSession getCustomTabsSession() {
-            return mCustomTabsSession;
-        }
-
-        boolean getCustomTabsServiceIsBound() {
-            return mCustomTabsServiceIsBound;
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (mChromePackageWithCustomTabSupport != null) {
+            // No-op if the session is already connected or connecting, e.g. started from PublicClientApplication.
+            CustomTabsManager.getInstance().warmUp(getApplicationContext());
         }
     }
 
@@ -206,6 +161,17 @@ public final class AuthenticationActivity extends Activity {
         super.onNewIntent(intent);
         Logger.info(TAG, null, "onNewIntent is called, received redirect from system webview.");
         final String url = intent.getStringExtra(Constants.CUSTOM_TAB_REDIRECT);
+        completeWithRedirect(url);
+    }
+
+    /**
+     * Start the auth code redemption right away, and return the final url to the caller.
+     */
+    private void completeWithRedirect(final String url) {
+        if (!MsalUtils.isEmpty(url) && InteractiveRequest.onRedirectReceived(mRequestId, url)
+                && mUiEventBuilder != null) {
+            mUiEventBuilder.setRedirectFastPath();
+        }
 
         final Intent resultIntent = new Intent();
         resultIntent.putExtra(Constants.AUTHORIZATION_FINAL_URL, url);
@@ -217,6 +183,11 @@ public final class AuthenticationActivity extends Activity {
     protected void onResume() {
         super.onResume();
 
+        if (mWebView != null) {
+            // The embedded WebView is hosted in this activity, coming back to it doesn't cancel the flow.
+            return;
+        }
+
         if (mRestarted) {
             cancelRequest();
             return;
@@ -226,24 +197,90 @@ public final class AuthenticationActivity extends Activity {
 
         mRequestUrl = this.getIntent().getStringExtra(Constants.REQUEST_URL_KEY);
 
-        Logger.infoPII(TAG, null, "Request to launch is: " + mRequestUrl);
-        if (mChromePackageWithCustomTabSupport != null) {
+        Logger.infoPII(TAG, null, "Request to launch is: %s", mRequestUrl);
+        if (mUseEmbeddedWebView) {
+            Logger.info(TAG, null, "Embedded WebView is requested, loading the request in the WebView.");
+            mWebView = EmbeddedWebViewProvider.obtain(this);
+            mWebView.setWebViewClient(new EmbeddedWebViewClient());
+            setContentView(mWebView);
+            mWebView.loadUrl(mRequestUrl);
+        } else if (mChromePackageWithCustomTabSupport != null) {
             Logger.info(TAG, null, "ChromeCustomTab support is available, launching chrome tab.");
-            mCustomTabsIntent.launchUrl(this, Uri.parse(mRequestUrl));
+            CustomTabsManager.getInstance().getSession(getApplicationContext(),
+                    TimeUnit.SECONDS.toMillis(CUSTOMTABS_MAX_CONNECTION_TIMEOUT), new CustomTabsManager.SessionListener() {
+                        @Override
+                        public void onSessionResolved(final CustomTabsSession customTabsSession) {
+                            launchCustomTab(customTabsSession);
+                        }
+                    });
         } else {
             Logger.info(TAG, null, "Chrome tab support is not available, launching chrome browser.");
             final Intent browserIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(mRequestUrl));
-            browserIntent.setPackage(MsalUtils.getChromePackage(this.getApplicationContext()));
+            browserIntent.setPackage(BrowserCapabilityResolver.getInstance().getChromePackage(this.getApplicationContext()));
             browserIntent.addCategory(Intent.CATEGORY_BROWSABLE);
             this.startActivity(browserIntent);
         }
     }
 
+    private void launchCustomTab(final CustomTabsSession customTabsSession) {
+        if (isFinishing() || isDestroyed()) {
+            Logger.verbose(TAG, null, "AuthenticationActivity is finishing, skip launching chrome tab.");
+            return;
+        }
+
+        final CustomTabsIntent.Builder builder = customTabsSession != null
+                ? new CustomTabsIntent.Builder(customTabsSession) : new CustomTabsIntent.Builder();
+
+        // Create the Intent used to launch the Url
+        final CustomTabsIntent customTabsIntent = builder.setShowTitle(true).build();
+        customTabsIntent.intent.setPackage(mChromePackageWithCustomTabSupport);
+        customTabsIntent.launchUrl(this, Uri.parse(mRequestUrl));
+    }
+
+    /**
+     * Complete the flow if the url is the redirect uri, the final url is parsed into {@link AuthorizationResult} by the
+     * caller the same way as the one received by {@link BrowserTabActivity}.
+     *
+     * @return True if the url is the redirect uri and shouldn't be loaded.
+     */
+    private boolean interceptRedirect(final String url) {
+        if (!MsalUtils.isRedirectUri(url, mRedirectUri)) {
+            return false;
+        }
+
+        if (!mIsRedirectHandled) {
+            mIsRedirectHandled = true;
+            Logger.info(TAG, null, "Embedded WebView is redirected to the redirect uri.");
+            completeWithRedirect(url);
+        }
+
+        return true;
+    }
+
+    private final class EmbeddedWebViewClient extends WebViewClient {
+        @Override
+        public boolean shouldOverrideUrlLoading(final WebView view, final String url) {
+            return interceptRedirect(url);
+        }
+
+        @Override
+        public void onPageStarted(final WebView view, final String url, final Bitmap favicon) {
+            // Server side redirects are not always reported to shouldOverrideUrlLoading.
+            if (interceptRedirect(url)) {
+                view.stopLoading();
+                return;
+            }
+
+            super.onPageStarted(view, url, favicon);
+        }
+    }
+
     @Override
     protected void onSaveInstanceState(final Bundle outState) {
         super.onSaveInstanceState(outState);
 
         outState.putString(Constants.REQUEST_URL_KEY, mRequestUrl);
+        outState.putInt(Constants.REQUEST_ID, mRequestId);
         outState.putString(Constants.TELEMETRY_REQUEST_ID, mTelemetryRequestId);
     }
 
@@ -256,6 +293,16 @@ public final class AuthenticationActivity extends Activity {
         returnToCaller(Constants.UIResponse.CANCEL, new Intent());
     }
 
+    /**
+     * The activity can be finished without going through {@link #returnToCaller(int, Intent)}, e.g. by the os, the
+     * default result is a cancellation that still carries the request id so it reaches the request it's for.
+     */
+    private void setDefaultResult() {
+        final Intent cancelIntent = new Intent();
+        cancelIntent.putExtra(Constants.REQUEST_ID, mRequestId);
+        setResult(Constants.UIResponse.CANCEL, cancelIntent);
+    }
+
     /**
      * Return the error back to caller.
      *
@@ -263,7 +310,7 @@ public final class AuthenticationActivity extends Activity {
      * @param data       {@link Intent} contains the detailed result.
      */
     private void returnToCaller(final int resultCode, final Intent data) {
-        Logger.info(TAG, null, "Return to caller with resultCode: " + resultCode + "; requestId: " + mRequestId);
+        Logger.info(TAG, null, "Return to caller with resultCode: %d; requestId: %d", resultCode, mRequestId);
         data.putExtra(Constants.REQUEST_ID, mRequestId);
 
         if (null != mUiEventBuilder) {
@@ -281,8 +328,8 @@ public final class AuthenticationActivity extends Activity {
      * @param errorDescription The error description to send back.
      */
     private void sendError(final String errorCode, final String errorDescription) {
-        Logger.info(TAG, null, "Sending error back to the caller, errorCode: " + errorCode + "; errorDescription"
-                + errorDescription);
+        Logger.info(TAG, null, "Sending error back to the caller, errorCode: %s; errorDescription: %s", errorCode,
+                errorDescription);
         final Intent errorIntent = new Intent();
         errorIntent.putExtra(Constants.UIResponse.ERROR_CODE, errorCode);
         errorIntent.putExtra(Constants.UIResponse.ERROR_DESCRIPTION, errorDescription);
@@ -37,9 +37,16 @@ public final class AuthenticationResult {
     private final String mTenantId;
     private final String mRawIdToken;
     private final String mUniqueId;
+    private final boolean mIsExtendedLifetimeToken;
 
     AuthenticationResult(final AccessTokenCacheItem accessTokenCacheItem) throws MsalClientException {
+        this(accessTokenCacheItem, false);
+    }
+
+    AuthenticationResult(final AccessTokenCacheItem accessTokenCacheItem, final boolean isExtendedLifetimeToken)
+            throws MsalClientException {
         mAccessTokenCacheItem = accessTokenCacheItem;
+        mIsExtendedLifetimeToken = isExtendedLifetimeToken;
         mUser = accessTokenCacheItem.getUser();
         mRawIdToken = accessTokenCacheItem.getRawIdToken();
         final IdToken idToken = accessTokenCacheItem.getIdToken();
@@ -68,6 +75,15 @@ public final class AuthenticationResult {
         return mAccessTokenCacheItem.getExpiresOn();
     }
 
+    /**
+     * @return True if the access token is past {@link #getExpiresOn()} but still within the extended lifetime issued by
+     * the service. It's only returned when the token endpoint is unavailable, the token will be refreshed by the next
+     * silent request once the service recovers.
+     */
+    public boolean isExtendedLifetimeToken() {
+        return mIsExtendedLifetimeToken;
+    }
+
     /**
      * @return A unique tenant identifier that was used in token acquisiton. Could be null if tenant information is not
      * returned by the service.
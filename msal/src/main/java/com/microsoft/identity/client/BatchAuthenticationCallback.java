@@ -0,0 +1,45 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import java.util.List;
+
+/**
+ * Callback passed with batch silent token acquisition. The result of every scope set of the batch is returned back
+ * together via the callback.
+ */
+public interface BatchAuthenticationCallback {
+
+    /**
+     * Every scope set of the batch has either succeeded or failed. Both lists are in the order the scope sets were
+     * requested, for each scope set exactly one of the result and the exception is non null.
+     *
+     * @param authenticationResults The {@link AuthenticationResult} of each scope set, null for the ones that failed.
+     * @param exceptions            The {@link MsalException} of each scope set, null for the ones that succeeded. The
+     *                              exception could be {@link MsalClientException}, {@link MsalServiceException} or
+     *                              {@link MsalUiRequiredException}.
+     */
+    void onCompleted(final List<AuthenticationResult> authenticationResults, final List<MsalException> exceptions);
+}
@@ -0,0 +1,199 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves and caches the browser capabilities needed for the interactive flow: the installed chrome package, the chrome
+ * package with custom tab support and whether the redirect uri is handled by {@link BrowserTabActivity}. Each of them
+ * requires a call to the {@link PackageManager}, the results are computed once and cached until a package is added,
+ * removed or replaced on the device. Safe to be queried from any thread.
+ */
+final class BrowserCapabilityResolver {
+    private static final String TAG = BrowserCapabilityResolver.class.getSimpleName();
+    private static final BrowserCapabilityResolver INSTANCE = new BrowserCapabilityResolver();
+
+    private final Map<String, Boolean> mHasCustomTabRedirectActivity = new HashMap<>();
+    private PackageManager mPackageManager;
+    private int mGeneration;
+    private boolean mIsChromePackageResolved;
+    private String mChromePackage;
+    private boolean mIsChromePackageWithCustomTabSupportResolved;
+    private String mChromePackageWithCustomTabSupport;
+    private boolean mIsPackageChangeReceiverRegistered;
+
+    private final BroadcastReceiver mPackageChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(final Context context, final Intent intent) {
+            Logger.verbose(TAG, null, "Received %s, invalidating cached browser capabilities.", intent.getAction());
+            invalidate();
+        }
+    };
+
+    private BrowserCapabilityResolver() {
+        // Singleton, use getInstance().
+    }
+
+    /**
+     * @return The single instance of {@link BrowserCapabilityResolver}.
+     */
+    static BrowserCapabilityResolver getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param context The {@link Context} used to query the {@link PackageManager}.
+     * @return The chrome package with custom tab support, or null if none, see
+     * {@link MsalUtils#getChromePackageWithCustomTabSupport(Context)}.
+     */
+    String getChromePackageWithCustomTabSupport(final Context context) {
+        final int generation;
+        synchronized (this) {
+            generation = prepareCache(context);
+            if (mIsChromePackageWithCustomTabSupportResolved) {
+                return mChromePackageWithCustomTabSupport;
+            }
+        }
+
+        registerPackageChangeReceiverIfNeeded(context);
+        final String chromePackageWithCustomTabSupport = MsalUtils.getChromePackageWithCustomTabSupport(context);
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mIsChromePackageWithCustomTabSupportResolved = true;
+                mChromePackageWithCustomTabSupport = chromePackageWithCustomTabSupport;
+            }
+        }
+
+        return chromePackageWithCustomTabSupport;
+    }
+
+    /**
+     * @param context The {@link Context} used to query the {@link PackageManager}.
+     * @return The installed chrome package, or null if chrome is not installed, see
+     * {@link MsalUtils#getChromePackage(Context)}.
+     */
+    String getChromePackage(final Context context) {
+        final int generation;
+        synchronized (this) {
+            generation = prepareCache(context);
+            if (mIsChromePackageResolved) {
+                return mChromePackage;
+            }
+        }
+
+        registerPackageChangeReceiverIfNeeded(context);
+        final String chromePackage = MsalUtils.getChromePackage(context);
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mIsChromePackageResolved = true;
+                mChromePackage = chromePackage;
+            }
+        }
+
+        return chromePackage;
+    }
+
+    /**
+     * @param context The {@link Context} used to query the {@link PackageManager}.
+     * @param url     The redirect uri.
+     * @return True if the redirect uri is only handled by {@link BrowserTabActivity}, see
+     * {@link MsalUtils#hasCustomTabRedirectActivity(Context, String)}.
+     */
+    boolean hasCustomTabRedirectActivity(final Context context, final String url) {
+        final int generation;
+        synchronized (this) {
+            generation = prepareCache(context);
+            final Boolean hasCustomTabRedirectActivity = mHasCustomTabRedirectActivity.get(url);
+            if (hasCustomTabRedirectActivity != null) {
+                return hasCustomTabRedirectActivity;
+            }
+        }
+
+        registerPackageChangeReceiverIfNeeded(context);
+        final boolean hasCustomTabRedirectActivity = MsalUtils.hasCustomTabRedirectActivity(context, url);
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mHasCustomTabRedirectActivity.put(url, hasCustomTabRedirectActivity);
+            }
+        }
+
+        return hasCustomTabRedirectActivity;
+    }
+
+    /**
+     * Drop all the cached results, they'll be resolved again on the next query.
+     */
+    synchronized void invalidate() {
+        mGeneration++;
+        mIsChromePackageResolved = false;
+        mChromePackage = null;
+        mIsChromePackageWithCustomTabSupportResolved = false;
+        mChromePackageWithCustomTabSupport = null;
+        mHasCustomTabRedirectActivity.clear();
+    }
+
+    /**
+     * The cached results are only valid for the {@link PackageManager} they were resolved with, drop them if the given
+     * context comes with a different one.
+     *
+     * @return The current generation of the cache.
+     */
+    private int prepareCache(final Context context) {
+        final PackageManager packageManager = context.getPackageManager();
+        if (packageManager != mPackageManager) {
+            invalidate();
+            mPackageManager = packageManager;
+        }
+
+        return mGeneration;
+    }
+
+    private void registerPackageChangeReceiverIfNeeded(final Context context) {
+        synchronized (this) {
+            if (mIsPackageChangeReceiverRegistered) {
+                return;
+            }
+
+            mIsPackageChangeReceiverRegistered = true;
+        }
+
+        final Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        final IntentFilter packageChangeFilter = new IntentFilter();
+        packageChangeFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageChangeFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageChangeFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageChangeFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageChangeFilter.addDataScheme("package");
+        appContext.registerReceiver(mPackageChangeReceiver, packageChangeFilter);
+    }
+}
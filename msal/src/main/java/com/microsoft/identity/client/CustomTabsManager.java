@@ -0,0 +1,279 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.customtabs.CustomTabsClient;
+import android.support.customtabs.CustomTabsServiceConnection;
+import android.support.customtabs.CustomTabsSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process wide holder of the chrome custom tab session. Binding to the custom tab service, warmup and creating the
+ * session are all done off the main thread, the session is kept for the subsequent interactive requests.
+ */
+final class CustomTabsManager {
+    private static final String TAG = CustomTabsManager.class.getSimpleName();
+    private static final CustomTabsManager INSTANCE = new CustomTabsManager();
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final List<SessionListener> mPendingListeners = new ArrayList<>();
+    private Handler mMainHandler;
+    private ConnectionState mConnectionState = ConnectionState.DISCONNECTED;
+    private CustomTabsSession mCustomTabsSession;
+    private String mPendingUrl;
+
+    /**
+     * Listener notified on the main thread once the custom tab session is resolved.
+     */
+    interface SessionListener {
+        /**
+         * @param customTabsSession The warmed up {@link CustomTabsSession}, or null if the session is not available
+         *                          within the given timeout.
+         */
+        void onSessionResolved(final CustomTabsSession customTabsSession);
+    }
+
+    private enum ConnectionState {
+        DISCONNECTED,
+        CONNECTING,
+        CONNECTED
+    }
+
+    private CustomTabsManager() {
+        // Singleton, use getInstance().
+    }
+
+    /**
+     * @return The single instance of {@link CustomTabsManager}.
+     */
+    static CustomTabsManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start connecting to the custom tab service in the background if it's not connected or connecting already.
+     * Returns immediately.
+     *
+     * @param context The application {@link Context} used to bind the custom tab service.
+     */
+    synchronized void warmUp(final Context context) {
+        if (mConnectionState != ConnectionState.DISCONNECTED) {
+            return;
+        }
+
+        mConnectionState = ConnectionState.CONNECTING;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    connect(context);
+                } catch (final RuntimeException e) {
+                    Logger.error(TAG, null, "Failed to connect to CustomTabs. Skipping warmup.", e);
+                    onConnectionFailed();
+                }
+            }
+        });
+    }
+
+    /**
+     * Deliver the custom tab session to the listener on the main thread as soon as it's ready, or with null if it's not
+     * ready when the timeout passes. Never blocks the calling thread.
+     *
+     * @param context       The application {@link Context} used to bind the custom tab service if not done yet.
+     * @param timeoutMillis The max time to wait for the session.
+     * @param listener      The {@link SessionListener} to notify, called exactly once.
+     */
+    void getSession(final Context context, final long timeoutMillis, final SessionListener listener) {
+        synchronized (this) {
+            if (mConnectionState == ConnectionState.CONNECTED) {
+                postToMainThread(listener, mCustomTabsSession);
+                return;
+            }
+
+            mPendingListeners.add(listener);
+            warmUp(context);
+        }
+
+        getMainHandler().postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (CustomTabsManager.this) {
+                    if (!mPendingListeners.remove(listener)) {
+                        // Already notified with the resolved session.
+                        return;
+                    }
+                }
+
+                Logger.warning(TAG, null, "Connection to CustomTabs timed out. Skipping warmup.");
+                listener.onSessionResolved(null);
+            }
+        }, timeoutMillis);
+    }
+
+    /**
+     * Tell the browser that the given url is likely to be launched, so that it can pre-connect and pre-fetch it while
+     * the {@link AuthenticationActivity} is starting. If the session is not ready yet, the url is sent once it's ready.
+     *
+     * @param context The application {@link Context} used to bind the custom tab service if not done yet.
+     * @param url     The url that will be loaded in the custom tab.
+     */
+    void mayLaunchUrl(final Context context, final String url) {
+        final CustomTabsSession customTabsSession;
+        synchronized (this) {
+            if (mConnectionState != ConnectionState.CONNECTED) {
+                mPendingUrl = url;
+                warmUp(context);
+                return;
+            }
+
+            customTabsSession = mCustomTabsSession;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                notifyMayLaunchUrl(customTabsSession, url);
+            }
+        });
+    }
+
+    private void connect(final Context context) {
+        final BrowserCapabilityResolver browserCapabilityResolver = BrowserCapabilityResolver.getInstance();
+        // Also resolved here so that AuthenticationActivity finds it cached.
+        browserCapabilityResolver.getChromePackage(context);
+        final String chromePackageWithCustomTabSupport = browserCapabilityResolver.getChromePackageWithCustomTabSupport(context);
+        if (chromePackageWithCustomTabSupport == null) {
+            onConnectionFailed();
+            return;
+        }
+
+        final CustomTabsServiceConnection serviceConnection = new CustomTabsServiceConnection() {
+            @Override
+            public void onCustomTabsServiceConnected(final ComponentName name, final CustomTabsClient client) {
+                final CustomTabsServiceConnection connection = this;
+                // Called on the main thread, warmup and newSession are both binder calls.
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        client.warmup(0L);
+                        final CustomTabsSession customTabsSession = client.newSession(null);
+                        if (customTabsSession == null) {
+                            Logger.warning(TAG, null, "Failed to create a CustomTabs session.");
+                            // Unbound so the next request binds the service again instead of keeping a null session.
+                            context.unbindService(connection);
+                            onConnectionFailed();
+                            return;
+                        }
+
+                        onSessionReady(customTabsSession);
+                    }
+                });
+            }
+
+            @Override
+            public void onServiceDisconnected(final ComponentName name) {
+                Logger.verbose(TAG, null, "CustomTabs service is disconnected.");
+                synchronized (CustomTabsManager.this) {
+                    mConnectionState = ConnectionState.DISCONNECTED;
+                    mCustomTabsSession = null;
+                }
+            }
+        };
+
+        if (!CustomTabsClient.bindCustomTabsService(context, chromePackageWithCustomTabSupport, serviceConnection)) {
+            Logger.warning(TAG, null, "Failed to bind to CustomTabs service.");
+            onConnectionFailed();
+        }
+    }
+
+    private void onSessionReady(final CustomTabsSession customTabsSession) {
+        final List<SessionListener> listeners;
+        final String pendingUrl;
+        synchronized (this) {
+            mConnectionState = ConnectionState.CONNECTED;
+            mCustomTabsSession = customTabsSession;
+            listeners = new ArrayList<>(mPendingListeners);
+            mPendingListeners.clear();
+            pendingUrl = mPendingUrl;
+            mPendingUrl = null;
+        }
+
+        if (pendingUrl != null) {
+            notifyMayLaunchUrl(customTabsSession, pendingUrl);
+        }
+
+        Logger.verbose(TAG, null, "CustomTabs session is ready.");
+        for (final SessionListener listener : listeners) {
+            postToMainThread(listener, customTabsSession);
+        }
+    }
+
+    private void onConnectionFailed() {
+        final List<SessionListener> listeners;
+        synchronized (this) {
+            // Allow the next request to try again, e.g. chrome may be installed or updated in the meantime.
+            mConnectionState = ConnectionState.DISCONNECTED;
+            mPendingUrl = null;
+            listeners = new ArrayList<>(mPendingListeners);
+            mPendingListeners.clear();
+        }
+
+        for (final SessionListener listener : listeners) {
+            postToMainThread(listener, null);
+        }
+    }
+
+    private void notifyMayLaunchUrl(final CustomTabsSession customTabsSession, final String url) {
+        if (!customTabsSession.mayLaunchUrl(Uri.parse(url), null, null)) {
+            Logger.verbose(TAG, null, "CustomTabs session rejected mayLaunchUrl.");
+        }
+    }
+
+    private void postToMainThread(final SessionListener listener, final CustomTabsSession customTabsSession) {
+        getMainHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onSessionResolved(customTabsSession);
+            }
+        });
+    }
+
+    private synchronized Handler getMainHandler() {
+        if (mMainHandler == null) {
+            mMainHandler = new Handler(Looper.getMainLooper());
+        }
+
+        return mMainHandler;
+    }
+}
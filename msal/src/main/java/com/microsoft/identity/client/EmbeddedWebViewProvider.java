@@ -0,0 +1,126 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.annotation.SuppressLint;
+import android.app.Activity;
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.ViewGroup;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+
+/**
+ * Provides the {@link WebView} for the embedded authorization mode. Creating the first {@link WebView} in the process
+ * loads the WebView implementation, which is costly, so one instance is created ahead of time with the application
+ * context and handed to the {@link AuthenticationActivity} when it's needed. WebViews can only be touched on the main
+ * thread, all the state here is only accessed on it.
+ */
+final class EmbeddedWebViewProvider {
+    private static final String TAG = EmbeddedWebViewProvider.class.getSimpleName();
+
+    private static Handler sMainHandler;
+    private static WebView sWarmWebView;
+
+    private EmbeddedWebViewProvider() {
+        // Utility class.
+    }
+
+    /**
+     * Create the warm {@link WebView} on the main thread if there is none. Can be called from any thread.
+     *
+     * @param context The {@link Context} whose application context is used until the WebView is obtained.
+     */
+    static void warmUp(final Context context) {
+        final Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        getMainHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                if (sWarmWebView == null) {
+                    Logger.verbose(TAG, null, "Creating warm WebView for embedded authorization.");
+                    sWarmWebView = createWebView(new MutableContextWrapper(appContext));
+                }
+            }
+        });
+    }
+
+    /**
+     * Hand out the warm {@link WebView} re-based on the given activity, or create a new one if it's not ready. Main
+     * thread only.
+     *
+     * @param activity The {@link Activity} that will host the WebView.
+     * @return The {@link WebView} to load the authorize request.
+     */
+    static WebView obtain(final Activity activity) {
+        final WebView webView = sWarmWebView;
+        sWarmWebView = null;
+        if (webView == null) {
+            Logger.verbose(TAG, null, "No warm WebView available, creating a new one.");
+            return createWebView(new MutableContextWrapper(activity));
+        }
+
+        ((MutableContextWrapper) webView.getContext()).setBaseContext(activity);
+        return webView;
+    }
+
+    /**
+     * Destroy the {@link WebView} obtained with {@link #obtain(Activity)}, and warm up the one for the next request.
+     * WebViews are not reused across requests so that no page state is carried over. Main thread only.
+     *
+     * @param webView The {@link WebView} to release.
+     */
+    static void release(final WebView webView) {
+        final Context context = ((MutableContextWrapper) webView.getContext()).getBaseContext();
+        webView.stopLoading();
+        if (webView.getParent() instanceof ViewGroup) {
+            ((ViewGroup) webView.getParent()).removeView(webView);
+        }
+
+        webView.destroy();
+        warmUp(context);
+    }
+
+    @SuppressLint("SetJavaScriptEnabled")
+    private static WebView createWebView(final MutableContextWrapper context) {
+        final WebView webView = new WebView(context);
+        final WebSettings settings = webView.getSettings();
+        // The sign-in page requires javascript and dom storage.
+        settings.setJavaScriptEnabled(true);
+        settings.setDomStorageEnabled(true);
+        settings.setAllowFileAccess(false);
+        settings.setAllowContentAccess(false);
+        return webView;
+    }
+
+    private static synchronized Handler getMainHandler() {
+        if (sMainHandler == null) {
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+
+        return sMainHandler;
+    }
+}
@@ -28,6 +28,7 @@ import android.util.Log;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -65,16 +66,38 @@ import java.util.concurrent.atomic.AtomicReference;
  *     Logger.getInstance().setEnablePII(true);
  * }
  * </pre>
+ * To keep a slow external logger (for example one writing to a file) off the calling thread, messages can be
+ * handed to it from a bounded buffer on a background thread:
+ * <pre>
+ * {@code
+ *     Logger.getInstance().enableAsyncLogging(1024, Logger.OverflowPolicy.DROP_OLDEST);
+ * }
+ * </pre>
+ * Internally, messages that are expensive to build should either use the parameterized overloads, which only format
+ * the message once the level and PII checks pass, or be guarded with {@link #isLoggable(LogLevel, boolean)}.
  */
 public final class Logger {
     private static final Logger INSTANCE = new Logger();
     static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    static final long ASYNC_FLUSH_TIMEOUT_MILLIS = 1000;
+
+    // SimpleDateFormat is not thread safe, keep one per logging thread instead of creating one per message.
+    private static final ThreadLocal<SimpleDateFormat> UTC_DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return dateFormat;
+        }
+    };
 
     // Turn on the verbose level logging by default.
-    private LogLevel mLogLevel = LogLevel.VERBOSE;
+    private volatile LogLevel mLogLevel = LogLevel.VERBOSE;
     private AtomicReference<ILoggerCallback> mExternalLogger = new AtomicReference<>(null);
-    private boolean mLogcatLogEnabled = false;
-    private boolean mEnablePII = false;
+    private volatile boolean mLogcatLogEnabled = false;
+    private volatile boolean mEnablePII = false;
+    private final AtomicReference<AsyncLogSink> mAsyncLogSink = new AtomicReference<>(null);
+    private boolean mIsCrashHandlerInstalled = false;
 
     /**
      * @return The single instance of {@link Logger}.
@@ -130,6 +153,68 @@ public final class Logger {
         mEnablePII = enablePII;
     }
 
+    /**
+     * Deliver the messages for the external logger from a bounded buffer on a background thread instead of on the
+     * thread generating them. Logcat logging is not affected. If an uncaught exception occurs, the pending messages
+     * are flushed before the previously installed {@link Thread.UncaughtExceptionHandler} runs.
+     *
+     * @param bufferCapacity The maximum number of messages waiting to be delivered.
+     * @param overflowPolicy The {@link OverflowPolicy} applied when the buffer is full.
+     */
+    public synchronized void enableAsyncLogging(final int bufferCapacity, final OverflowPolicy overflowPolicy) {
+        final AsyncLogSink previousSink = mAsyncLogSink.getAndSet(new AsyncLogSink(bufferCapacity, overflowPolicy, mExternalLogger));
+        if (previousSink != null) {
+            previousSink.shutdown(ASYNC_FLUSH_TIMEOUT_MILLIS);
+        }
+
+        if (!mIsCrashHandlerInstalled) {
+            final Thread.UncaughtExceptionHandler previousHandler = Thread.getDefaultUncaughtExceptionHandler();
+            Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                @Override
+                public void uncaughtException(final Thread thread, final Throwable throwable) {
+                    flush();
+                    if (previousHandler != null) {
+                        previousHandler.uncaughtException(thread, throwable);
+                    }
+                }
+            });
+            mIsCrashHandlerInstalled = true;
+        }
+    }
+
+    /**
+     * Flush the pending messages and go back to delivering messages to the external logger on the calling thread.
+     */
+    public synchronized void disableAsyncLogging() {
+        final AsyncLogSink sink = mAsyncLogSink.getAndSet(null);
+        if (sink != null) {
+            sink.shutdown(ASYNC_FLUSH_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * Block until the messages buffered for asynchronous delivery have been handed to the external logger, or one
+     * second has passed. No-op if asynchronous logging is not enabled.
+     *
+     * @return True if all the buffered messages were delivered, false otherwise.
+     */
+    public boolean flush() {
+        final AsyncLogSink sink = mAsyncLogSink.get();
+        return sink == null || sink.flush(ASYNC_FLUSH_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Check whether a message at the given level would be sent anywhere. Callers building expensive log messages
+     * should check this first so that disabled logging costs nothing.
+     *
+     * @param logLevel    The {@link LogLevel} of the message.
+     * @param containsPII True if the message contains PII.
+     * @return True if the message would be delivered to logcat or the external logger, false otherwise.
+     */
+    static boolean isLoggable(final LogLevel logLevel, final boolean containsPII) {
+        return getInstance().isEnabled(logLevel, containsPII);
+    }
+
     /**
      * Send a {@link LogLevel#ERROR} log message without PII.
      */
@@ -153,6 +238,13 @@ public final class Logger {
         getInstance().log(tag, LogLevel.WARNING, requestContext, message, null, false);
     }
 
+    /**
+     * Send a {@link LogLevel#WARNING} log message without PII, formatted with {@link String#format} only if enabled.
+     */
+    static void warning(final String tag, final RequestContext requestContext, final String format, final Object... args) {
+        getInstance().logFormatted(tag, LogLevel.WARNING, requestContext, format, args, false);
+    }
+
     /**
      * Send a {@link LogLevel#WARNING} log message with PII.
      */
@@ -167,6 +259,13 @@ public final class Logger {
         getInstance().log(tag, LogLevel.INFO, requestContext, message, null, false);
     }
 
+    /**
+     * Send a {@link LogLevel#INFO} log message without PII, formatted with {@link String#format} only if enabled.
+     */
+    static void info(final String tag, final RequestContext requestContext, final String format, final Object... args) {
+        getInstance().logFormatted(tag, LogLevel.INFO, requestContext, format, args, false);
+    }
+
     /**
      * Send a {@link LogLevel#INFO} log message with PII.
      */
@@ -174,6 +273,13 @@ public final class Logger {
         getInstance().log(tag, LogLevel.INFO, requestContext, message, null, true);
     }
 
+    /**
+     * Send a {@link LogLevel#INFO} log message with PII, formatted with {@link String#format} only if enabled.
+     */
+    static void infoPII(final String tag, final RequestContext requestContext, final String format, final Object... args) {
+        getInstance().logFormatted(tag, LogLevel.INFO, requestContext, format, args, true);
+    }
+
     /**
      * Send a {@link LogLevel#VERBOSE} log message without PII.
      */
@@ -181,6 +287,13 @@ public final class Logger {
         getInstance().log(tag, LogLevel.VERBOSE, requestContext, message, null, false);
     }
 
+    /**
+     * Send a {@link LogLevel#VERBOSE} log message without PII, formatted with {@link String#format} only if enabled.
+     */
+    static void verbose(final String tag, final RequestContext requestContext, final String format, final Object... args) {
+        getInstance().logFormatted(tag, LogLevel.VERBOSE, requestContext, format, args, false);
+    }
+
     /**
      * Send a {@link LogLevel#VERBOSE} log message with PII.
      */
@@ -189,20 +302,52 @@ public final class Logger {
     }
 
     /**
-     * Format the log message. Depends on the developer setting, the log message could be sent to logcat
-     * or the external logger set by the calling app.
+     * Send a {@link LogLevel#VERBOSE} log message with PII, formatted with {@link String#format} only if enabled.
      */
-    private void log(final String tag, final LogLevel logLevel, final RequestContext requestContext,
-                     final String message, final Throwable throwable, final boolean containsPII) {
+    static void verbosePII(final String tag, final RequestContext requestContext, final String format, final Object... args) {
+        getInstance().logFormatted(tag, LogLevel.VERBOSE, requestContext, format, args, true);
+    }
+
+    private boolean isEnabled(final LogLevel logLevel, final boolean containsPII) {
         if (logLevel.compareTo(mLogLevel) > 0) {
-            return;
+            return false;
         }
 
         // Developer turns off PII logging, if the log message contains any PII, we shouldn't send it.
         if (!mEnablePII && containsPII) {
+            return false;
+        }
+
+        return mLogcatLogEnabled || mExternalLogger.get() != null;
+    }
+
+    /**
+     * Format the parameterized message only if the message is going to be logged.
+     */
+    private void logFormatted(final String tag, final LogLevel logLevel, final RequestContext requestContext,
+                              final String format, final Object[] args, final boolean containsPII) {
+        if (!isEnabled(logLevel, containsPII)) {
             return;
         }
 
+        send(tag, logLevel, requestContext, String.format(Locale.US, format, args), null, containsPII);
+    }
+
+    /**
+     * Format the log message. Depends on the developer setting, the log message could be sent to logcat
+     * or the external logger set by the calling app.
+     */
+    private void log(final String tag, final LogLevel logLevel, final RequestContext requestContext,
+                     final String message, final Throwable throwable, final boolean containsPII) {
+        if (!isEnabled(logLevel, containsPII)) {
+            return;
+        }
+
+        send(tag, logLevel, requestContext, message, throwable, containsPII);
+    }
+
+    private void send(final String tag, final LogLevel logLevel, final RequestContext requestContext,
+                      final String message, final Throwable throwable, final boolean containsPII) {
         final StringBuilder logMessage = new StringBuilder();
         logMessage.append(formatMessage(requestContext, message));
 
@@ -215,8 +360,12 @@ public final class Logger {
             sendLogcatLogs(tag, logLevel, logMessage.toString());
         }
 
-        if (mExternalLogger.get() != null) {
-            mExternalLogger.get().log(tag, logLevel, logMessage.toString(), containsPII);
+        final ILoggerCallback externalLogger = mExternalLogger.get();
+        if (externalLogger != null) {
+            final AsyncLogSink asyncLogSink = mAsyncLogSink.get();
+            if (asyncLogSink == null || !asyncLogSink.offer(tag, logLevel, logMessage.toString(), containsPII)) {
+                externalLogger.log(tag, logLevel, logMessage.toString(), containsPII);
+            }
         }
     }
 
@@ -276,9 +425,7 @@ public final class Logger {
     }
 
     private static String getUTCDateTimeAsString() {
-        final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-        return dateFormat.format(new Date());
+        return UTC_DATE_FORMAT.get().format(new Date());
     }
 
     /**
@@ -302,4 +449,18 @@ public final class Logger {
          */
         VERBOSE
     }
+
+    /**
+     * What to do with a new log message when the asynchronous logging buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discard the oldest buffered message to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Discard the new message.
+         */
+        DROP_NEWEST
+    }
 }
@@ -132,6 +132,17 @@ public final class MsalClientException extends MsalException {
      */
     public static final String DUPLICATE_QUERY_PARAMETER = "duplicate_query_parameter";
 
+    /**
+     * The token cache record couldn't be encrypted or decrypted, or the key used to encrypt the token cache couldn't be
+     * loaded from the Android Keystore.
+     */
+    public static final String TOKEN_CACHE_ENCRYPTION_FAILED = "token_cache_encryption_failed";
+
+    /**
+     * The token cache snapshot was written by a newer version of the sdk, or is not a token cache snapshot.
+     */
+    public static final String TOKEN_CACHE_SNAPSHOT_NOT_SUPPORTED = "token_cache_snapshot_not_supported";
+
     /**
      * Temporary non-exposed error code to indicate that ADFS authority validation fails. ADFS as authority is not supported
      * for preview.
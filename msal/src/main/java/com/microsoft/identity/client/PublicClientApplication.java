@@ -32,11 +32,17 @@ import android.support.annotation.NonNull;
 
 import com.microsoft.identity.msal.BuildConfig;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
+import javax.crypto.SecretKey;
+
+import static com.microsoft.identity.client.EventConstants.ApiId.ACQUIRE_TOKENS_SILENT_ASYNC_WITH_USER;
 import static com.microsoft.identity.client.EventConstants.ApiId.ACQUIRE_TOKEN_SILENT_ASYNC_WITH_USER;
 import static com.microsoft.identity.client.EventConstants.ApiId.ACQUIRE_TOKEN_SILENT_ASYNC_WITH_USER_AUTHORITY_AND_FORCE_REFRESH;
 import static com.microsoft.identity.client.EventConstants.ApiId.API_ID_ACQUIRE;
@@ -132,6 +138,7 @@ public final class PublicClientApplication {
      */
     private boolean mValidateAuthority = true;
     private String mSliceParameters = "";
+    private boolean mUseEmbeddedWebView;
 
     /**
      * {@link PublicClientApplication#PublicClientApplication(Context)} will read the client id (which must be set) from manifest, and if authority
@@ -218,6 +225,44 @@ public final class PublicClientApplication {
         mAuthorityString = authority;
     }
 
+    /**
+     * {@link PublicClientApplication#PublicClientApplication(Context, String, String, TokenCacheStorage)} persists the
+     * tokens into an app-provided {@link TokenCacheStorage} instead of the app's
+     * {@link android.content.SharedPreferences}. The applications created on top of the same storage instance share
+     * their tokens. Tokens in the default storage are not moved, see {@link #exportTokenCache(OutputStream, SecretKey)}.
+     *
+     * @param context           Application's {@link Context}. The sdk requires the application context to be passed in
+     *                          {@link PublicClientApplication}. Cannot be null.
+     * @param clientId          The application client id.
+     * @param authority         The default authority to be used for the authority.
+     * @param tokenCacheStorage The {@link TokenCacheStorage} to persist the tokens into.
+     */
+    public PublicClientApplication(@NonNull final Context context, @NonNull final String clientId,
+                                   @NonNull final String authority, @NonNull final TokenCacheStorage tokenCacheStorage) {
+        if (context == null) {
+            throw new IllegalArgumentException("Context is null");
+        }
+
+        if (MsalUtils.isEmpty(clientId)) {
+            throw new IllegalArgumentException("client id is empty or null");
+        }
+
+        if (MsalUtils.isEmpty(authority)) {
+            throw new IllegalArgumentException("authority is empty or null");
+        }
+
+        if (tokenCacheStorage == null) {
+            throw new IllegalArgumentException("tokenCacheStorage is null.");
+        }
+
+        mAppContext = context;
+        mTokenCache = new TokenCache(mAppContext, tokenCacheStorage);
+        mClientId = clientId;
+        mAuthorityString = authority;
+
+        initializeApplication();
+    }
+
     private void initializeApplication() {
         // Init Events with defaults (application-wide)
         DefaultEvent.initializeDefaults(
@@ -229,6 +274,12 @@ public final class PublicClientApplication {
         // Since network request is sent from the sdk, if calling app doesn't declare the internet permission in the
         // manifest, we cannot make the network call.
         checkInternetPermission();
+
+        // Connect to the custom tab service in the background so that the session is ready by the time an interactive
+        // request is made.
+        CustomTabsManager.getInstance().warmUp(mAppContext);
+        InteractiveRequest.PKCEChallengeFactory.prefill();
+        TokenCacheMaintenance.schedule(mTokenCache);
         Logger.info(TAG, null, "Create new public client application.");
     }
 
@@ -273,6 +324,94 @@ public final class PublicClientApplication {
         mSliceParameters = sliceParameters;
     }
 
+    /**
+     * By default, the tokens are stored in the app's private storage in plain text. If set to true, the tokens written
+     * into the cache are encrypted with AES-GCM, under a key that is protected by the Android Keystore and only loaded once
+     * per process, and the tokens already in the cache are encrypted in the background. Encrypted tokens are read in
+     * either mode, setting it back to false only stops encrypting the new tokens.
+     *
+     * @param useEncryptedTokenCache True to encrypt the tokens stored in the cache, false otherwise.
+     */
+    public void setUseEncryptedTokenCache(final boolean useEncryptedTokenCache) {
+        mTokenCache.setEncryptionEnabled(useEncryptedTokenCache);
+    }
+
+    /**
+     * Write a snapshot of the application's tokens into the stream, e.g. to back them up and restore them on another
+     * device with {@link #importTokenCache(InputStream, SecretKey)}. Only the tokens of the application's client id are
+     * exported. The snapshot contains the refresh tokens, it should be encrypted unless it stays on the device. The
+     * stream is read from the cache and written synchronously, this should not be called on the main thread.
+     *
+     * @param outputStream The stream to write the snapshot into, closed once the snapshot is written.
+     * @param snapshotKey  The AES key to encrypt the snapshot with, null to write it in plain text.
+     * @return The number of token items exported.
+     * @throws MsalClientException If the snapshot can't be written or encrypted.
+     */
+    public int exportTokenCache(@NonNull final OutputStream outputStream, final SecretKey snapshotKey)
+            throws MsalClientException {
+        if (outputStream == null) {
+            throw new IllegalArgumentException("outputStream is null.");
+        }
+
+        final String telemetryRequestId = Telemetry.generateNewRequestId();
+        final ApiEvent.Builder apiEventBuilder = new ApiEvent.Builder(telemetryRequestId);
+        Telemetry.getInstance().startEvent(telemetryRequestId, apiEventBuilder);
+        try {
+            final int tokenCount = mTokenCache.exportSnapshot(outputStream, mClientId, snapshotKey,
+                    new RequestContext(UUID.randomUUID(), mComponent, telemetryRequestId));
+            apiEventBuilder.setApiCallWasSuccessful(true);
+            return tokenCount;
+        } finally {
+            stopTelemetryEventAndFlush(apiEventBuilder);
+        }
+    }
+
+    /**
+     * Restore the application's tokens from a snapshot written by {@link #exportTokenCache(OutputStream, SecretKey)}.
+     * Tokens of other client ids in the snapshot are ignored, tokens already in the cache with the same authority,
+     * scopes and user are replaced. Nothing is restored if the snapshot is invalid. This should not be called on the
+     * main thread.
+     *
+     * @param inputStream The stream to read the snapshot from, closed once the snapshot is read.
+     * @param snapshotKey The AES key the snapshot was encrypted with, null if it was written in plain text.
+     * @return The number of token items restored.
+     * @throws MsalClientException If the snapshot can't be read, decrypted or is not supported by this version of the
+     *                             sdk.
+     */
+    public int importTokenCache(@NonNull final InputStream inputStream, final SecretKey snapshotKey)
+            throws MsalClientException {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("inputStream is null.");
+        }
+
+        final String telemetryRequestId = Telemetry.generateNewRequestId();
+        final ApiEvent.Builder apiEventBuilder = new ApiEvent.Builder(telemetryRequestId);
+        Telemetry.getInstance().startEvent(telemetryRequestId, apiEventBuilder);
+        try {
+            final int tokenCount = mTokenCache.importSnapshot(inputStream, mClientId, snapshotKey,
+                    new RequestContext(UUID.randomUUID(), mComponent, telemetryRequestId));
+            apiEventBuilder.setApiCallWasSuccessful(true);
+            return tokenCount;
+        } finally {
+            stopTelemetryEventAndFlush(apiEventBuilder);
+        }
+    }
+
+    /**
+     * By default, the interactive request is rendered in chrome custom tab, or chrome if custom tab is not supported. If
+     * set to true, the sign-in page is loaded in a WebView embedded in the sdk's activity instead, and the redirect is
+     * handled in process. This doesn't require chrome to be installed on the device, the WebView is also created ahead
+     * of time to speed up the sign-in. Pages loaded in the embedded WebView don't share the browser's sign-in session.
+     *
+     * @param useEmbeddedWebView True to use the embedded WebView for interactive requests, false otherwise.
+     */
+    public void setUseEmbeddedWebView(final boolean useEmbeddedWebView) {
+        mUseEmbeddedWebView = useEmbeddedWebView;
+        if (useEmbeddedWebView) {
+            EmbeddedWebViewProvider.warmUp(mAppContext);
+        }
+    }
+
     /**
      * Returns the list of {@link User}s we have tokens in the cache.
      *
@@ -286,7 +425,7 @@ public final class PublicClientApplication {
         apiEventBuilder.setAuthority(authorityURL.getProtocol() + "://" + authorityURL.getHost());
         Telemetry.getInstance().startEvent(telemetryRequestId, apiEventBuilder);
 
-        List<User> users = mTokenCache.getUsers(Authority.createAuthority(mAuthorityString, mValidateAuthority).getAuthorityHost(), mClientId, new RequestContext(UUID.randomUUID(), mComponent, telemetryRequestId));
+        List<User> users = mTokenCache.getUsers(authorityURL.getHost(), mClientId, new RequestContext(UUID.randomUUID(), mComponent, telemetryRequestId));
 
         apiEventBuilder.setApiCallWasSuccessful(true);
         stopTelemetryEventAndFlush(apiEventBuilder);
@@ -561,13 +700,58 @@ public final class PublicClientApplication {
         acquireTokenSilent(scopes, user, authority, forceRefresh, wrapCallbackForTelemetryIntercept(apiEventBuilder, callback), telemetryRequestId, apiEventBuilder);
     }
 
+    /**
+     * Perform acquire token silent call for several scope sets of the same user at once, e.g. the tokens of the different
+     * resources needed by one screen. The cache is read once for all the scope sets, and the refresh token grants for
+     * the scope sets without a valid access token are sent concurrently with the user's refresh token. The results of
+     * all the scope sets are sent back together.
+     *
+     * @param scopes   The non-empty list of scope arrays, one per token to be requested.
+     *                 MSAL always sends the scopes 'openid profile offline_access'.  Do not include any of these scopes in the scope parameter.
+     * @param user     {@link User} represents the user to silently request tokens.
+     * @param callback {@link BatchAuthenticationCallback} that is used to send the results back via
+     *                 {@link BatchAuthenticationCallback#onCompleted(List, List)}, in the order of the scope arrays.
+     */
+    public void acquireTokensSilentAsync(@NonNull final List<String[]> scopes, @NonNull final User user,
+                                         @NonNull final BatchAuthenticationCallback callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("callback is null");
+        }
+
+        if (scopes == null || scopes.isEmpty()) {
+            throw new IllegalArgumentException("scopes is empty or null");
+        }
+
+        final String telemetryRequestId = Telemetry.generateNewRequestId();
+        final ApiEvent.Builder apiEventBuilder = createApiEventBuilder(telemetryRequestId, ACQUIRE_TOKENS_SILENT_ASYNC_WITH_USER);
+
+        final UUID correlationId = UUID.randomUUID();
+        final List<AuthenticationRequestParameters> requestParameters = new ArrayList<>(scopes.size());
+        for (final String[] scopesForToken : scopes) {
+            // each scope set has its own telemetry request id, since their token requests are sent concurrently.
+            final RequestContext requestContext = new RequestContext(correlationId, mComponent, Telemetry.generateNewRequestId());
+            requestParameters.add(AuthenticationRequestParameters.create(Authority.createAuthority(mAuthorityString, mValidateAuthority),
+                    mTokenCache, MsalUtils.convertArrayToSet(scopesForToken), mClientId, mSliceParameters, requestContext));
+        }
+
+        apiEventBuilder
+                .setAuthorityType(requestParameters.get(0).getAuthority().mAuthorityType)
+                .setCorrelationId(correlationId);
+
+        Logger.info(TAG, requestParameters.get(0).getRequestContext(), "Preparing a new batch silent request for %d scope sets.",
+                scopes.size());
+        final BatchSilentRequest request = new BatchSilentRequest(mAppContext, requestParameters, user);
+        request.getTokens(wrapBatchCallbackForTelemetryIntercept(apiEventBuilder, callback));
+    }
 
     /**
-     * Deletes all matching tokens (access & refresh tokens) for the {@link User} instance from the application cache.
+     * Deletes all matching tokens (access & refresh tokens) for the {@link User} instance from the application cache,
+     * for every authority and scope they were acquired with.
      *
      * @param user {@link User} whose tokens should be deleted.
+     * @return The number of token items deleted.
      */
-    public void remove(final User user) {
+    public int remove(final User user) {
         final String telemetryRequestId = Telemetry.generateNewRequestId();
         final ApiEvent.Builder apiEventBuilder = new ApiEvent.Builder(telemetryRequestId);
         final URL authorityURL = MsalUtils.getUrl(mAuthorityString);
@@ -575,11 +759,11 @@ public final class PublicClientApplication {
         Telemetry.getInstance().startEvent(telemetryRequestId, apiEventBuilder);
 
         final RequestContext requestContext = new RequestContext(UUID.randomUUID(), mComponent, telemetryRequestId);
-        mTokenCache.deleteRefreshTokenByUser(user, requestContext);
-        mTokenCache.deleteAccessTokenByUser(user, requestContext);
+        final int removedTokens = mTokenCache.removeTokensForUser(mClientId, user, requestContext);
 
         apiEventBuilder.setApiCallWasSuccessful(true);
         stopTelemetryEventAndFlush(apiEventBuilder);
+        return removedTokens;
     }
 
     /**
@@ -621,7 +805,7 @@ public final class PublicClientApplication {
 
     // TODO: if no more input validation is needed, this could be moved back to the constructor.
     private void validateInputParameters() {
-        if (!MsalUtils.hasCustomTabRedirectActivity(mAppContext, mRedirectUri)) {
+        if (!BrowserCapabilityResolver.getInstance().hasCustomTabRedirectActivity(mAppContext, mRedirectUri)) {
             throw new IllegalStateException("App doesn't have the correct configuration for "
                     + BrowserTabActivity.class.getSimpleName() + ".");
         }
@@ -665,7 +849,9 @@ public final class PublicClientApplication {
                 .setCorrelationId(requestParameters.getRequestContext().getCorrelationId());
 
         Logger.info(TAG, requestParameters.getRequestContext(), "Preparing a new interactive request");
-        final BaseRequest request = new InteractiveRequest(activity, requestParameters, extraScopesToConsent);
+        final InteractiveRequest request = new InteractiveRequest(activity, requestParameters, extraScopesToConsent);
+        request.setUseEmbeddedWebView(mUseEmbeddedWebView);
+        request.setApiEventBuilder(apiEventBuilder);
         request.getToken(callback);
     }
 
@@ -699,6 +885,7 @@ public final class PublicClientApplication {
         Logger.info(TAG, requestContext, "Preparing a new silent request");
         final SilentRequest request = new SilentRequest(mAppContext, requestParameters, forceRefresh, user);
         request.setIsAuthorityProvided(!MsalUtils.isEmpty(authority));
+        request.setApiEventBuilder(apiEventBuilder);
         request.getToken(callback);
     }
 
@@ -766,6 +953,31 @@ public final class PublicClientApplication {
         };
     }
 
+    /**
+     * Wraps {@link BatchAuthenticationCallback} instances to bind Telemetry actions. The api call is successful if every
+     * scope set of the batch is.
+     */
+    private BatchAuthenticationCallback wrapBatchCallbackForTelemetryIntercept(
+            final ApiEvent.Builder eventBinding, final BatchAuthenticationCallback batchCallback) {
+        return new BatchAuthenticationCallback() {
+            @Override
+            public void onCompleted(final List<AuthenticationResult> authenticationResults,
+                                    final List<MsalException> exceptions) {
+                eventBinding.setApiCallWasSuccessful(true);
+                for (final MsalException exception : exceptions) {
+                    if (exception != null) {
+                        eventBinding.setApiCallWasSuccessful(false);
+                        eventBinding.setApiErrorCode(exception.getErrorCode());
+                        break;
+                    }
+                }
+
+                stopTelemetryEventAndFlush(eventBinding);
+                batchCallback.onCompleted(authenticationResults, exceptions);
+            }
+        };
+    }
+
     @SuppressWarnings("PMD.UnusedPrivateMethod")
     private void stopTelemetryEventAndFlush(final ApiEvent.Builder builder) {
         final ApiEvent event = builder.build();
@@ -0,0 +1,91 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Storage the token cache is persisted into, passed to
+ * {@link PublicClientApplication#PublicClientApplication(android.content.Context, String, String, TokenCacheStorage)}
+ * to keep the tokens in an app-provided store instead of the default {@link android.content.SharedPreferences}.
+ * <p>
+ * The storage holds string records keyed by string keys, grouped in partitions named by the sdk. The records are
+ * opaque, and are encrypted by the sdk when the encrypted token cache is used. The sdk serializes its writes, across
+ * the processes of the app, and calls the storage from background threads, the storage must be thread safe. What the
+ * sdk derives from the records is kept per storage instance, the same instance should be used for all the
+ * {@link PublicClientApplication}s on top of the same store.
+ */
+public interface TokenCacheStorage {
+
+    /**
+     * @param partition The name of the partition.
+     * @param key       The key of the record.
+     * @return The record stored with the key in the partition, null if there is none.
+     */
+    String get(final String partition, final String key);
+
+    /**
+     * @param partition The name of the partition.
+     * @return All the records of the partition keyed by their key, empty if the partition doesn't exist. The returned
+     * map is not modified by the sdk.
+     */
+    Map<String, String> getAll(final String partition);
+
+    /**
+     * Put and remove records of the partition as a single transaction. The changes must be durable when the method
+     * returns, another process of the app may read them right after.
+     *
+     * @param partition   The name of the partition.
+     * @param records     The records to put, keyed by their key, replacing the records stored with the same keys.
+     * @param removedKeys The keys of the records to remove.
+     */
+    void write(final String partition, final Map<String, String> records, final Collection<String> removedKeys);
+
+    /**
+     * Register a listener to notify when the storage is changed by something else than the sdk's own writes.
+     *
+     * @param listener The {@link ChangeListener} to register.
+     */
+    void addChangeListener(final ChangeListener listener);
+
+    /**
+     * @param listener The {@link ChangeListener} to unregister.
+     */
+    void removeChangeListener(final ChangeListener listener);
+
+    /**
+     * Listener notified of the changes made to the storage by something else than the sdk's writes through
+     * {@link #write(String, Map, Collection)}, e.g. a restore or a sync of the app's own store. The sdk drops what it
+     * has derived from the records, like its index of the users, and rebuilds it on its next use.
+     */
+    interface ChangeListener {
+
+        /**
+         * @param partition The name of the partition that was changed.
+         */
+        void onChanged(final String partition);
+    }
+}
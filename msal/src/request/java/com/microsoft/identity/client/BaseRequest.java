@@ -35,13 +35,15 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base request class for handling either interactive request or silent request.
  */
 abstract class BaseRequest {
     private static final String TAG = BaseRequest.class.getSimpleName();
-    private static final ExecutorService THREAD_EXECUTOR = Executors.newSingleThreadExecutor();
+    static final ExecutorService THREAD_EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final AtomicInteger REQUEST_ID_GENERATOR = new AtomicInteger();
     private Handler mHandler;
 
     protected final RequestContext mRequestContext;
@@ -49,6 +51,9 @@ abstract class BaseRequest {
     protected final Context mContext;
     protected int mRequestId;
     protected TokenResponse mTokenResponse;
+    private ApiEvent.Builder mApiEventBuilder;
+    private AuthenticationCallback mCallback;
+    private long mPhaseStartTime;
 
     /**
      * Abstract method, implemented by subclass for its own logic before the token request.
@@ -99,33 +104,86 @@ abstract class BaseRequest {
      * 2. performTokenRequest. Use either auth code or RT found in the preTokenRequest to get a new token.
      * 3. Post token request, store the returned token into cache.
      *
+     * If the request is suspended after preTokenRequest (see {@link #isSuspendedAfterPreTokenRequest()}), the executor
+     * thread is released and the remaining steps run once {@link #resumeTokenRequest()} is called.
+     *
      * @param callback The {@link AuthenticationCallback} to deliver the result back.
      */
     void getToken(final AuthenticationCallback callback) {
-        mRequestId = callback.hashCode();
-        THREAD_EXECUTOR.execute(new Runnable() {
+        // Unique per request, interactive results are routed back to the request with it.
+        mRequestId = REQUEST_ID_GENERATOR.incrementAndGet();
+        mCallback = callback;
+        final long queuedTime = System.currentTimeMillis();
+        THREAD_EXECUTOR.execute(new TokenRequestTask(callback) {
             @Override
-            public void run() {
-                try {
-                    preTokenRequest();
-                    performTokenRequest();
-                    final AuthenticationResult result = postTokenRequest();
-
-                    Logger.info(TAG, mAuthRequestParameters.getRequestContext(), "Token request succeeds.");
-                    callbackOnSuccess(callback, result);
-                } catch (final MsalUserCancelException userCancelException) {
-                    Logger.error(TAG, mAuthRequestParameters.getRequestContext(), "User cancelled the flow.",
-                            userCancelException);
-                    callbackOnCancel(callback);
-                } catch (final MsalException msalException) {
-                    Logger.error(TAG, mAuthRequestParameters.getRequestContext(), "Error occurred during authentication.",
-                            msalException);
-                    callbackOnError(callback, msalException);
+            void execute() throws MsalUserCancelException, MsalException {
+                mPhaseStartTime = System.currentTimeMillis();
+                if (mApiEventBuilder != null) {
+                    mApiEventBuilder.setQueueWaitTime(mPhaseStartTime - queuedTime);
+                }
+
+                preTokenRequest();
+                if (isSuspendedAfterPreTokenRequest()) {
+                    Logger.verbose(TAG, mAuthRequestParameters.getRequestContext(), "Token request is suspended, "
+                            + "releasing the executor thread until it is resumed.");
+                    return;
                 }
+
+                completeTokenRequest(callback);
             }
         });
     }
 
+    /**
+     * Resume a request suspended after {@link #preTokenRequest()}. The remaining steps of the request are scheduled as a
+     * new task on the request executor, the result is delivered to the callback passed to
+     * {@link #getToken(AuthenticationCallback)}.
+     */
+    void resumeTokenRequest() {
+        THREAD_EXECUTOR.execute(new TokenRequestTask(mCallback) {
+            @Override
+            void execute() throws MsalUserCancelException, MsalException {
+                onTokenRequestResumed();
+                completeTokenRequest(mCallback);
+            }
+        });
+    }
+
+    /**
+     * @return True if the request hands off to an external flow in {@link #preTokenRequest()} and will be resumed with
+     * {@link #resumeTokenRequest()}, false if the token request should continue right away. Default is false.
+     */
+    boolean isSuspendedAfterPreTokenRequest() {
+        return false;
+    }
+
+    /**
+     * Called on the request executor when a suspended request is resumed, before the token request is sent.
+     *
+     * @throws MsalUserCancelException If user cancelled the flow while the request was suspended.
+     * @throws MsalException           If the result that resumed the request is an error.
+     */
+    void onTokenRequestResumed() throws MsalUserCancelException, MsalServiceException, MsalClientException {
+        // Nothing to do by default.
+    }
+
+    /**
+     * Set the {@link ApiEvent.Builder} tracking this request. When set, the time spent in each phase of
+     * {@link #getToken(AuthenticationCallback)} is recorded on it before the callback is invoked.
+     *
+     * @param apiEventBuilder The {@link ApiEvent.Builder} for the api call that started this request.
+     */
+    void setApiEventBuilder(final ApiEvent.Builder apiEventBuilder) {
+        mApiEventBuilder = apiEventBuilder;
+    }
+
+    /**
+     * @return The {@link ApiEvent.Builder} tracking this request, null if not set.
+     */
+    ApiEvent.Builder getApiEventBuilder() {
+        return mApiEventBuilder;
+    }
+
     /**
      * Get the decorated scopes. Will combine the input scope and the reserved scope. If client id is provided as scope,
      * it will be removed from the combined scopes.
@@ -289,20 +347,52 @@ abstract class BaseRequest {
         }
     }
 
+    /**
+     * Run performTokenRequest and postTokenRequest, and deliver the result back. The time spent in
+     * {@link #preTokenRequest()} is measured up to here, so for a suspended request it includes the time it was suspended.
+     */
+    private void completeTokenRequest(final AuthenticationCallback callback) throws MsalException {
+        long phaseStartTime = mPhaseStartTime;
+        if (mApiEventBuilder != null) {
+            final long now = System.currentTimeMillis();
+            mApiEventBuilder.setPreTokenRequestTime(now - phaseStartTime);
+            phaseStartTime = now;
+        }
+
+        performTokenRequest();
+        if (mApiEventBuilder != null) {
+            final long now = System.currentTimeMillis();
+            mApiEventBuilder.setTokenRequestTime(now - phaseStartTime);
+            phaseStartTime = now;
+        }
+
+        final AuthenticationResult result = postTokenRequest();
+        if (mApiEventBuilder != null) {
+            mApiEventBuilder.setPostTokenRequestTime(System.currentTimeMillis() - phaseStartTime);
+        }
+
+        Logger.info(TAG, mAuthRequestParameters.getRequestContext(), "Token request succeeds.");
+        callbackOnSuccess(callback, result);
+    }
+
     private void callbackOnSuccess(final AuthenticationCallback callback,
                                    final AuthenticationResult result) {
+        final long postTime = System.currentTimeMillis();
         getHandler().post(new Runnable() {
             @Override
             public void run() {
+                recordCallbackDeliveryTime(postTime);
                 callback.onSuccess(result);
             }
         });
     }
 
     private void callbackOnCancel(final AuthenticationCallback callback) {
+        final long postTime = System.currentTimeMillis();
         getHandler().post(new Runnable() {
             @Override
             public void run() {
+                recordCallbackDeliveryTime(postTime);
                 callback.onCancel();
             }
         });
@@ -310,11 +400,47 @@ abstract class BaseRequest {
 
     private void callbackOnError(final AuthenticationCallback callback,
                                  final MsalException msalException) {
+        final long postTime = System.currentTimeMillis();
         getHandler().post(new Runnable() {
             @Override
             public void run() {
+                recordCallbackDeliveryTime(postTime);
                 callback.onError(msalException);
             }
         });
     }
+
+    private void recordCallbackDeliveryTime(final long postTime) {
+        if (mApiEventBuilder != null) {
+            mApiEventBuilder.setCallbackDeliveryTime(System.currentTimeMillis() - postTime);
+        }
+    }
+
+    /**
+     * A step of the token request run on the request executor, errors thrown from it are delivered to the callback.
+     */
+    private abstract class TokenRequestTask implements Runnable {
+        private final AuthenticationCallback mTaskCallback;
+
+        TokenRequestTask(final AuthenticationCallback callback) {
+            mTaskCallback = callback;
+        }
+
+        abstract void execute() throws MsalUserCancelException, MsalException;
+
+        @Override
+        public void run() {
+            try {
+                execute();
+            } catch (final MsalUserCancelException userCancelException) {
+                Logger.error(TAG, mAuthRequestParameters.getRequestContext(), "User cancelled the flow.",
+                        userCancelException);
+                callbackOnCancel(mTaskCallback);
+            } catch (final MsalException msalException) {
+                Logger.error(TAG, mAuthRequestParameters.getRequestContext(), "Error occurred during authentication.",
+                        msalException);
+                callbackOnError(mTaskCallback, msalException);
+            }
+        }
+    }
 }
@@ -0,0 +1,299 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import android.content.Context;
+import android.os.Handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Request handling the silent flow for several scope sets of the same user at once. The cache is read once for all the
+ * access token lookups, the refresh token is looked up once per environment, and the refresh token grants for the
+ * scope sets without a valid access token are sent concurrently.
+ * <p>
+ * The endpoints of the authorities are resolved before any refresh token is looked up, and like {@link SilentRequest},
+ * the {@link TokenCacheLock} isn't held while the grants are sent. The access tokens are looked up again if the cache
+ * was written in between.
+ */
+final class BatchSilentRequest {
+    private static final String TAG = BatchSilentRequest.class.getSimpleName();
+
+    /**
+     * Maximum number of refresh token grants sent at the same time.
+     */
+    static final int MAX_CONCURRENT_GRANTS = 4;
+
+    /**
+     * Time an idle grant thread is kept alive, the pool holds no thread when no batch is running.
+     */
+    private static final long GRANT_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadPoolExecutor GRANT_EXECUTOR = createGrantExecutor();
+
+    private final Context mContext;
+    private final List<SilentRequest> mRequests;
+    private final List<AuthenticationRequestParameters> mRequestParameters;
+    private final User mUser;
+    private final AuthenticationResult[] mResults;
+    private final MsalException[] mExceptions;
+
+    /**
+     * Constructor for {@link BatchSilentRequest}.
+     *
+     * @param appContext        The app running context.
+     * @param requestParameters The {@link AuthenticationRequestParameters} of each scope set, with the same client id.
+     * @param user              The {@link User} to get the tokens for.
+     */
+    BatchSilentRequest(final Context appContext, final List<AuthenticationRequestParameters> requestParameters,
+                       final User user) {
+        if (requestParameters == null || requestParameters.isEmpty()) {
+            throw new IllegalArgumentException("requestParameters is empty or null");
+        }
+
+        mContext = appContext;
+        mRequestParameters = requestParameters;
+        mUser = user;
+        mRequests = new ArrayList<>(requestParameters.size());
+        for (final AuthenticationRequestParameters requestParameter : requestParameters) {
+            final SilentRequest request = new SilentRequest(appContext, requestParameter, false, user);
+            request.setIsAuthorityProvided(false);
+            mRequests.add(request);
+        }
+
+        mResults = new AuthenticationResult[requestParameters.size()];
+        mExceptions = new MsalException[requestParameters.size()];
+    }
+
+    /**
+     * Acquire the tokens on the request executor and deliver all the results back together on the main thread.
+     *
+     * @param callback The {@link BatchAuthenticationCallback} to deliver the results back.
+     */
+    void getTokens(final BatchAuthenticationCallback callback) {
+        final long startTime = System.currentTimeMillis();
+        BaseRequest.THREAD_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    acquireTokens();
+                } catch (final RuntimeException e) {
+                    Logger.error(TAG, null, "Batch silent request failed.", e);
+                    failPendingRequests(new MsalClientException(MsalServiceException.UNKNOWN_ERROR,
+                            "Batch silent request failed.", e));
+                } finally {
+                    for (final AuthenticationRequestParameters requestParameter : mRequestParameters) {
+                        Telemetry.getInstance().flush(requestParameter.getRequestContext().getTelemetryRequestId());
+                    }
+
+                    new Handler(mContext.getMainLooper()).post(new Runnable() {
+                        @Override
+                        public void run() {
+                            // each scope set is a silent request of its own for the latency metric.
+                            final long latency = System.currentTimeMillis() - startTime;
+                            for (int i = 0; i < mRequests.size(); i++) {
+                                Metrics.getInstance().recordSilentRequestLatency(latency);
+                            }
+
+                            callback.onCompleted(Arrays.asList(mResults), Arrays.asList(mExceptions));
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private static ThreadPoolExecutor createGrantExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_CONCURRENT_GRANTS, MAX_CONCURRENT_GRANTS,
+                GRANT_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger mThreadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, TAG + "-" + mThreadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private void acquireTokens() {
+        final TokenCache tokenCache = mRequestParameters.get(0).getTokenCache();
+        final long cacheGeneration = tokenCache.getCacheLock().getGeneration();
+
+        final List<Integer> allRequests = new ArrayList<>(mRequests.size());
+        for (int i = 0; i < mRequests.size(); i++) {
+            allRequests.add(i);
+        }
+
+        List<Integer> misses = lookUpAccessTokens(allRequests);
+        if (misses.isEmpty()) {
+            Logger.info(TAG, null, "No refresh token grant is needed for the batch of %d scope sets.", mRequests.size());
+            return;
+        }
+
+        misses = resolveEndpoints(misses);
+
+        // Another request or process may have refreshed the tokens while the endpoints were resolved.
+        if (tokenCache.getCacheLock().getGeneration() != cacheGeneration) {
+            misses = lookUpAccessTokens(misses);
+        }
+
+        redeemRefreshTokens(misses);
+    }
+
+    /**
+     * Set the given exception on every request that has neither a result nor an exception yet.
+     */
+    private void failPendingRequests(final MsalException exception) {
+        for (int i = 0; i < mRequests.size(); i++) {
+            if (mResults[i] == null && mExceptions[i] == null) {
+                mExceptions[i] = exception;
+            }
+        }
+    }
+
+    /**
+     * Look up the access tokens of the given requests with a single read of the cache.
+     *
+     * @return The requests without a valid access token in the cache.
+     */
+    private List<Integer> lookUpAccessTokens(final List<Integer> requests) {
+        final TokenCache tokenCache = mRequestParameters.get(0).getTokenCache();
+        final List<AccessTokenCacheItem> cachedATs = tokenCache.getAccessTokensForLookup(mRequestParameters.get(0), mUser,
+                false);
+
+        final List<Integer> misses = new ArrayList<>();
+        for (final int request : requests) {
+            try {
+                final AccessTokenCacheItem accessTokenCacheItem = tokenCache.findAccessTokenItemAuthorityNotProvided(
+                        mRequestParameters.get(request), mUser, cachedATs);
+                if (accessTokenCacheItem != null) {
+                    Metrics.getInstance().increment(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT);
+                    mResults[request] = new AuthenticationResult(accessTokenCacheItem);
+                } else {
+                    Metrics.getInstance().increment(Metrics.Counter.ACCESS_TOKEN_CACHE_MISS);
+                    misses.add(request);
+                }
+            } catch (final MsalClientException e) {
+                mExceptions[request] = e;
+            }
+        }
+
+        return misses;
+    }
+
+    /**
+     * Resolve the endpoints of the authorities of the given requests, which may reach the network.
+     *
+     * @return The requests whose endpoints were resolved.
+     */
+    private List<Integer> resolveEndpoints(final List<Integer> requests) {
+        final List<Integer> resolved = new ArrayList<>(requests.size());
+        for (final int request : requests) {
+            final AuthenticationRequestParameters requestParameters = mRequestParameters.get(request);
+            try {
+                requestParameters.getAuthority().resolveEndpoints(requestParameters.getRequestContext(),
+                        requestParameters.getLoginHint());
+                resolved.add(request);
+            } catch (final MsalException e) {
+                mExceptions[request] = e;
+            }
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Send the refresh token grants of the given requests concurrently, then save their results. The endpoints of the
+     * requests must already be resolved.
+     */
+    private void redeemRefreshTokens(final List<Integer> requests) {
+        final Map<String, RefreshTokenCacheItem> refreshTokens = new HashMap<>();
+        final Map<Integer, Future<Void>> grants = new LinkedHashMap<>();
+        for (final int request : requests) {
+            final AuthenticationRequestParameters requestParameters = mRequestParameters.get(request);
+            try {
+                final String environment = requestParameters.getAuthority().getAuthorityHost();
+                if (!refreshTokens.containsKey(environment)) {
+                    refreshTokens.put(environment, requestParameters.getTokenCache().findRefreshToken(requestParameters, mUser));
+                }
+
+                final RefreshTokenCacheItem refreshTokenCacheItem = refreshTokens.get(environment);
+                if (refreshTokenCacheItem == null) {
+                    throw new MsalUiRequiredException(MsalUiRequiredException.NO_TOKENS_FOUND, "No refresh token was found. ");
+                }
+
+                final SilentRequest silentRequest = mRequests.get(request);
+                grants.put(request, GRANT_EXECUTOR.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws MsalException {
+                        silentRequest.redeemRefreshToken(refreshTokenCacheItem);
+                        return null;
+                    }
+                }));
+            } catch (final MsalException e) {
+                mExceptions[request] = e;
+            }
+        }
+
+        Logger.info(TAG, null, "Sending %d refresh token grants for the batch.", grants.size());
+        for (final Map.Entry<Integer, Future<Void>> grant : grants.entrySet()) {
+            final int request = grant.getKey();
+            try {
+                grant.getValue().get();
+                mResults[request] = mRequests.get(request).postTokenRequest();
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof MsalException) {
+                    mExceptions[request] = (MsalException) e.getCause();
+                } else {
+                    mExceptions[request] = new MsalClientException(MsalServiceException.UNKNOWN_ERROR,
+                            "Refresh token grant failed.", e.getCause());
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                mExceptions[request] = new MsalClientException(MsalClientException.IO_ERROR,
+                        "Refresh token grant was interrupted.", e);
+            } catch (final MsalException e) {
+                mExceptions[request] = e;
+            }
+        }
+    }
+}
@@ -35,11 +35,21 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Request handling the interactive flow. Interactive flow skips the cache look, will launch the web UI(either custom
@@ -50,11 +60,20 @@ final class InteractiveRequest extends BaseRequest {
     private final Set<String> mExtraScopesToConsent = new HashSet<>();
 
     static final int BROWSER_FLOW = 1001;
-    private static AuthorizationResult sAuthorizationResult;
-    private static CountDownLatch sResultLock = new CountDownLatch(1);
+    private static final Map<Integer, InteractiveRequest> PENDING_REQUESTS = new HashMap<>();
+
+    private static final String STATE_AUTHORITY = "a";
+    private static final String STATE_SCOPES = "r";
+    private static final String STATE_NONCE = "n";
 
     private final ActivityWrapper mActivityWrapper;
     private PKCEChallengeFactory.PKCEChallenge mPKCEChallenge;
+    private String mStateNonce;
+    private AuthorizationResult mAuthorizationResult;
+    private boolean mUseEmbeddedWebView;
+    private boolean mIsResumedFromRedirect;
+    private long mRedirectReceivedTime;
+    private volatile long mActivityResultTime;
 
     /**
      * Constructor for {@link InteractiveRequest}.
@@ -86,7 +105,7 @@ final class InteractiveRequest extends BaseRequest {
      * Pre token request. Launch either chrome custom tab or chrome to get the auth code back.
      */
     @Override
-    synchronized void preTokenRequest() throws MsalUserCancelException, MsalClientException, MsalServiceException,
+    void preTokenRequest() throws MsalUserCancelException, MsalClientException, MsalServiceException,
             MsalUiRequiredException {
         super.preTokenRequest();
         final String authorizeUri;
@@ -100,6 +119,8 @@ final class InteractiveRequest extends BaseRequest {
         final Intent intentToLaunch = new Intent(mContext, AuthenticationActivity.class);
         intentToLaunch.putExtra(Constants.REQUEST_URL_KEY, authorizeUri);
         intentToLaunch.putExtra(Constants.REQUEST_ID, mRequestId);
+        intentToLaunch.putExtra(Constants.USE_EMBEDDED_WEBVIEW, mUseEmbeddedWebView);
+        intentToLaunch.putExtra(Constants.REDIRECT_URI_KEY, mAuthRequestParameters.getRedirectUri());
         intentToLaunch.putExtra(
                 Constants.TELEMETRY_REQUEST_ID,
                 mAuthRequestParameters.getRequestContext().getTelemetryRequestId().toString()
@@ -111,27 +132,43 @@ final class InteractiveRequest extends BaseRequest {
 
         throwIfNetworkNotAvailable();
 
-        mActivityWrapper.startActivityForResult(intentToLaunch, BROWSER_FLOW);
-        // lock the thread until onActivityResult release the lock.
-        try {
-            if (sResultLock.getCount() == 0) {
-                sResultLock = new CountDownLatch(1);
-            }
+        if (!mUseEmbeddedWebView) {
+            // Let the browser pre-connect to the authorize endpoint while AuthenticationActivity is starting.
+            CustomTabsManager.getInstance().mayLaunchUrl(mContext, authorizeUri);
+        }
 
-            sResultLock.await();
-        } catch (final InterruptedException e) {
-            Logger.error(TAG, mAuthRequestParameters.getRequestContext(), "Fail to lock the thread for waiting for authorize"
-                    + " request to return.", e);
+        // The request is resumed from onActivityResult, the executor thread is not held while the web ui is shown.
+        addPendingRequest(this);
+        try {
+            mActivityWrapper.startActivityForResult(intentToLaunch, BROWSER_FLOW);
+        } catch (final RuntimeException e) {
+            removePendingRequest(mRequestId, null);
+            throw e;
         }
+    }
 
-        processAuthorizationResult(sAuthorizationResult);
+    /**
+     * @param useEmbeddedWebView True to load the authorize request in an embedded WebView instead of the browser.
+     */
+    void setUseEmbeddedWebView(final boolean useEmbeddedWebView) {
+        mUseEmbeddedWebView = useEmbeddedWebView;
+    }
+
+    @Override
+    boolean isSuspendedAfterPreTokenRequest() {
+        return true;
+    }
+
+    @Override
+    void onTokenRequestResumed() throws MsalUserCancelException, MsalServiceException, MsalClientException {
+        processAuthorizationResult(mAuthorizationResult);
     }
 
     @Override
     void setAdditionalOauthParameters(final Oauth2Client oauth2Client) {
         oauth2Client.addBodyParameter(OauthConstants.Oauth2Parameters.GRANT_TYPE,
                 OauthConstants.Oauth2GrantType.AUTHORIZATION_CODE);
-        oauth2Client.addBodyParameter(OauthConstants.Oauth2Parameters.CODE, sAuthorizationResult.getAuthCode());
+        oauth2Client.addBodyParameter(OauthConstants.Oauth2Parameters.CODE, mAuthorizationResult.getAuthCode());
         oauth2Client.addBodyParameter(OauthConstants.Oauth2Parameters.REDIRECT_URI,
                 mAuthRequestParameters.getRedirectUri());
         // Adding code verifier per PKCE spec. See https://tools.ietf.org/html/rfc7636
@@ -140,6 +177,7 @@ final class InteractiveRequest extends BaseRequest {
 
     @Override
     AuthenticationResult postTokenRequest() throws MsalUiRequiredException, MsalServiceException, MsalClientException {
+        recordRedirectHeadStart();
         if (!isAccessTokenReturned()) {
             throwExceptionFromTokenResponse(mTokenResponse);
         }
@@ -147,26 +185,136 @@ final class InteractiveRequest extends BaseRequest {
         return super.postTokenRequest();
     }
 
-    static synchronized void onActivityResult(int requestCode, int resultCode, final Intent data) {
-        Logger.info(TAG, null, "Received request code is: " + requestCode + "; result code is: " + resultCode);
+    /**
+     * Deliver the result of {@link AuthenticationActivity} to the pending request it was launched for, matched by
+     * {@link Constants#REQUEST_ID}. The request is resumed on the request executor.
+     */
+    static void onActivityResult(int requestCode, int resultCode, final Intent data) {
+        Logger.info(TAG, null, "Received request code is: %d; result code is: %d", requestCode, resultCode);
+        final int requestId = data == null ? 0 : data.getIntExtra(Constants.REQUEST_ID, 0);
+
+        AuthorizationResult authorizationResult = null;
         try {
             if (requestCode != BROWSER_FLOW) {
                 throw new IllegalStateException("Unknown request code");
             }
 
-            // check it is the same request.
-            sAuthorizationResult = AuthorizationResult.create(resultCode, data);
+            authorizationResult = AuthorizationResult.create(resultCode, data);
         } finally {
-            sResultLock.countDown();
+            final InteractiveRequest pendingRequest = removePendingRequest(requestId, authorizationResult);
+            if (pendingRequest == null) {
+                Logger.warning(TAG, null, "No interactive request is waiting for the authorization result of "
+                        + "request: %d", requestId);
+            } else if (pendingRequest.mIsResumedFromRedirect) {
+                pendingRequest.mActivityResultTime = System.currentTimeMillis();
+                Logger.verbose(TAG, null, "Auth code of request: %d is already redeemed since the redirect.",
+                        pendingRequest.mRequestId);
+            } else {
+                pendingRequest.mAuthorizationResult = authorizationResult;
+                pendingRequest.resumeTokenRequest();
+            }
+        }
+    }
+
+    /**
+     * Start redeeming the auth code as soon as {@link AuthenticationActivity} receives the redirect, in parallel with
+     * the activity finishing and the result being delivered to the calling activity. The request stays registered
+     * until {@link #onActivityResult(int, int, Intent)} for it arrives.
+     *
+     * @param requestId The id of the request the redirect is for.
+     * @param finalUrl  The redirect url containing the authorization response.
+     * @return True if the redemption is started, false if there is no pending request with the given id.
+     */
+    static boolean onRedirectReceived(final int requestId, final String finalUrl) {
+        final InteractiveRequest pendingRequest;
+        synchronized (PENDING_REQUESTS) {
+            pendingRequest = PENDING_REQUESTS.get(requestId);
+            if (pendingRequest == null || pendingRequest.mIsResumedFromRedirect) {
+                return false;
+            }
+
+            pendingRequest.mIsResumedFromRedirect = true;
+        }
+
+        Logger.info(TAG, null, "Redirect is received, redeeming the auth code of request: %d", requestId);
+        pendingRequest.mRedirectReceivedTime = System.currentTimeMillis();
+        pendingRequest.mAuthorizationResult = AuthorizationResult.parseAuthorizationResponse(finalUrl);
+        pendingRequest.resumeTokenRequest();
+        return true;
+    }
+
+    private static void addPendingRequest(final InteractiveRequest request) {
+        synchronized (PENDING_REQUESTS) {
+            PENDING_REQUESTS.put(request.mRequestId, request);
         }
     }
 
+    /**
+     * Remove the pending request the result is for. If the result doesn't carry a request id (e.g. the
+     * {@link AuthenticationActivity} is closed before it could set the result), it's only handed to the pending request
+     * if there is exactly one, or to the one whose state nonce the returned state carries. Otherwise it can't be
+     * matched and the pending requests are left waiting for their own result.
+     *
+     * @param requestId           The request id carried by the result, 0 if there is none.
+     * @param authorizationResult The result, null if it couldn't be read.
+     * @return The removed request, null if no pending request is matched.
+     */
+    private static InteractiveRequest removePendingRequest(final int requestId,
+                                                           final AuthorizationResult authorizationResult) {
+        synchronized (PENDING_REQUESTS) {
+            if (requestId != 0) {
+                return PENDING_REQUESTS.remove(requestId);
+            }
+
+            if (PENDING_REQUESTS.size() == 1) {
+                final Iterator<InteractiveRequest> iterator = PENDING_REQUESTS.values().iterator();
+                final InteractiveRequest pendingRequest = iterator.next();
+                iterator.remove();
+                return pendingRequest;
+            }
+
+            final String stateNonce = authorizationResult == null ? null
+                    : decodeState(authorizationResult.getState()).get(STATE_NONCE);
+            if (stateNonce == null) {
+                return null;
+            }
+
+            final Iterator<InteractiveRequest> iterator = PENDING_REQUESTS.values().iterator();
+            while (iterator.hasNext()) {
+                final InteractiveRequest pendingRequest = iterator.next();
+                if (stateNonce.equals(pendingRequest.mStateNonce)) {
+                    iterator.remove();
+                    return pendingRequest;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * If the request is resumed from the redirect, record the time until the authorization result reached the calling
+     * activity. If it hasn't arrived yet, the whole redemption ran ahead of it and the time until now is recorded.
+     */
+    private void recordRedirectHeadStart() {
+        final ApiEvent.Builder apiEventBuilder = getApiEventBuilder();
+        if (!mIsResumedFromRedirect || apiEventBuilder == null) {
+            return;
+        }
+
+        final long activityResultTime = mActivityResultTime;
+        final long headStartEndTime = activityResultTime > 0 ? activityResultTime : System.currentTimeMillis();
+        apiEventBuilder.setRedirectHeadStartTime(headStartEndTime - mRedirectReceivedTime);
+    }
+
     String appendQueryStringToAuthorizeEndpoint() throws UnsupportedEncodingException, MsalClientException {
-        String authorizationUrl = MsalUtils.appendQueryParameterToUrl(
-                mAuthRequestParameters.getAuthority().getAuthorizeEndpoint(),
-                createAuthorizationRequestParameters());
+        final AuthorizeUrlTemplate authorizeUrlTemplate = AuthorizeUrlTemplate.getTemplate(
+                mAuthRequestParameters.getAuthority().getAuthorizeEndpoint(), mAuthRequestParameters.getClientId(),
+                mAuthRequestParameters.getRedirectUri());
+        final String authorizationUrl = MsalUtils.appendQueryParameterToUrl(authorizeUrlTemplate.getUrlPrefix(),
+                createAuthorizationRequestParameters(authorizeUrlTemplate));
 
-        Logger.infoPII(TAG, mAuthRequestParameters.getRequestContext(), "Request uri to authorize endpoint is: " + authorizationUrl);
+        Logger.infoPII(TAG, mAuthRequestParameters.getRequestContext(), "Request uri to authorize endpoint is: %s", authorizationUrl);
         return authorizationUrl;
     }
 
@@ -175,7 +323,12 @@ final class InteractiveRequest extends BaseRequest {
         return resolveInfo != null;
     }
 
-    private Map<String, String> createAuthorizationRequestParameters() throws UnsupportedEncodingException, MsalClientException {
+    /**
+     * Creates the per request query parameters, the ones shared by every request for the same authority, client id and
+     * redirect uri are already part of the {@link AuthorizeUrlTemplate}.
+     */
+    private Map<String, String> createAuthorizationRequestParameters(final AuthorizeUrlTemplate authorizeUrlTemplate)
+            throws UnsupportedEncodingException, MsalClientException {
         final Map<String, String> requestParameters = new HashMap<>();
 
         final Set<String> scopes = new HashSet<>(mAuthRequestParameters.getScope());
@@ -183,12 +336,8 @@ final class InteractiveRequest extends BaseRequest {
         final Set<String> requestedScopes = getDecoratedScope(scopes);
         requestParameters.put(OauthConstants.Oauth2Parameters.SCOPE,
                 MsalUtils.convertSetToString(requestedScopes, " "));
-        requestParameters.put(OauthConstants.Oauth2Parameters.CLIENT_ID, mAuthRequestParameters.getClientId());
-        requestParameters.put(OauthConstants.Oauth2Parameters.REDIRECT_URI, mAuthRequestParameters.getRedirectUri());
-        requestParameters.put(OauthConstants.Oauth2Parameters.RESPONSE_TYPE, OauthConstants.Oauth2ResponseType.CODE);
         requestParameters.put(OauthConstants.OauthHeader.CORRELATION_ID,
                 mAuthRequestParameters.getRequestContext().getCorrelationId().toString());
-        requestParameters.putAll(PlatformIdHelper.getPlatformIdParameters());
 
         addExtraQueryParameter(OauthConstants.Oauth2Parameters.LOGIN_HINT, mAuthRequestParameters.getLoginHint(), requestParameters);
         addUiBehaviorToRequestParameters(requestParameters);
@@ -204,21 +353,25 @@ final class InteractiveRequest extends BaseRequest {
 
         // adding extra qp
         if (!MsalUtils.isEmpty(mAuthRequestParameters.getExtraQueryParam())) {
-            appendExtraQueryParameters(mAuthRequestParameters.getExtraQueryParam(), requestParameters);
+            appendExtraQueryParameters(mAuthRequestParameters.getExtraQueryParam(), requestParameters,
+                    authorizeUrlTemplate);
         }
 
         if (!MsalUtils.isEmpty(mAuthRequestParameters.getSliceParameters())) {
-            appendExtraQueryParameters(mAuthRequestParameters.getSliceParameters(), requestParameters);
+            appendExtraQueryParameters(mAuthRequestParameters.getSliceParameters(), requestParameters,
+                    authorizeUrlTemplate);
         }
 
         return requestParameters;
     }
 
-    private void appendExtraQueryParameters(final String queryParams, final Map<String, String> requestParams) throws MsalClientException {
+    private void appendExtraQueryParameters(final String queryParams, final Map<String, String> requestParams,
+                                            final AuthorizeUrlTemplate authorizeUrlTemplate) throws MsalClientException {
         final Map<String, String> extraQps = MsalUtils.decodeUrlToMap(queryParams, "&");
         final Set<Map.Entry<String, String>> extraQpEntries = extraQps.entrySet();
         for (final Map.Entry<String, String> extraQpEntry : extraQpEntries) {
-            if (requestParams.containsKey(extraQpEntry.getKey())) {
+            if (requestParams.containsKey(extraQpEntry.getKey())
+                    || authorizeUrlTemplate.containsParameter(extraQpEntry.getKey())) {
                 throw new MsalClientException(MsalClientException.DUPLICATE_QUERY_PARAMETER, "Extra query parameter " + extraQpEntry.getKey() + " is already sent by "
                         + "the SDK. ");
             }
@@ -256,11 +409,16 @@ final class InteractiveRequest extends BaseRequest {
         }
     }
 
+    /**
+     * The state carries the authority, the scopes and a nonce unique to the request, so a returned auth code can be
+     * matched to the request whose PKCE challenge it was issued for.
+     */
     private String encodeProtocolState() throws UnsupportedEncodingException {
-        final String state = String.format("a=%s&r=%s", MsalUtils.urlFormEncode(
-                mAuthRequestParameters.getAuthority().getAuthority()),
-                MsalUtils.urlFormEncode(MsalUtils.convertSetToString(
-                        mAuthRequestParameters.getScope(), " ")));
+        mStateNonce = UUID.randomUUID().toString();
+        final String state = String.format("%s=%s&%s=%s&%s=%s", STATE_AUTHORITY, MsalUtils.urlFormEncode(
+                mAuthRequestParameters.getAuthority().getAuthority()), STATE_SCOPES,
+                MsalUtils.urlFormEncode(MsalUtils.convertSetToString(mAuthRequestParameters.getScope(), " ")),
+                STATE_NONCE, mStateNonce);
         return Base64.encodeToString(state.getBytes("UTF-8"), Base64.NO_PADDING | Base64.URL_SAFE);
     }
 
@@ -293,28 +451,35 @@ final class InteractiveRequest extends BaseRequest {
     }
 
     private void verifyStateInResponse(final String stateInResponse) throws MsalClientException {
-        final String decodeState = decodeState(stateInResponse);
-        final Map<String, String> stateMap = MsalUtils.decodeUrlToMap(decodeState, "&");
+        final Map<String, String> stateMap = decodeState(stateInResponse);
 
-        if (stateMap.size() != 2
-                || !mAuthRequestParameters.getAuthority().getAuthority().equals(stateMap.get("a"))) {
+        if (stateMap.size() != 3
+                || !mAuthRequestParameters.getAuthority().getAuthority().equals(stateMap.get(STATE_AUTHORITY))
+                || !mStateNonce.equals(stateMap.get(STATE_NONCE))) {
             throw new MsalClientException(MsalClientException.STATE_MISMATCH, Constants.MsalErrorMessage.STATE_NOT_THE_SAME);
         }
 
-        final Set<String> scopesInState = MsalUtils.getScopesAsSet(stateMap.get("r"));
+        final Set<String> scopesInState = MsalUtils.getScopesAsSet(stateMap.get(STATE_SCOPES));
         final Set<String> scopesInRequest = mAuthRequestParameters.getScope();
-        if (scopesInState.size() != scopesInRequest.size() && !scopesInState.containsAll(scopesInRequest)) {
+        if (scopesInState.size() != scopesInRequest.size() || !scopesInState.containsAll(scopesInRequest)) {
             throw new MsalClientException(MsalClientException.STATE_MISMATCH, Constants.MsalErrorMessage.STATE_NOT_THE_SAME);
         }
     }
 
-    private String decodeState(final String encodedState) {
+    private static Map<String, String> decodeState(final String encodedState) {
         if (MsalUtils.isEmpty(encodedState)) {
-            return null;
+            return Collections.emptyMap();
         }
 
-        final byte[] stateBytes = Base64.decode(encodedState, Base64.NO_PADDING | Base64.URL_SAFE);
-        return new String(stateBytes, Charset.defaultCharset());
+        final byte[] stateBytes;
+        try {
+            stateBytes = Base64.decode(encodedState, Base64.NO_PADDING | Base64.URL_SAFE);
+        } catch (final IllegalArgumentException e) {
+            Logger.warning(TAG, null, "Returned state is not base64 encoded.");
+            return Collections.emptyMap();
+        }
+
+        return MsalUtils.decodeUrlToMap(new String(stateBytes, Charset.defaultCharset()), "&");
     }
 
     private void addExtraQueryParameter(final String key, final String value, final Map<String, String> requestParams) {
@@ -323,15 +488,90 @@ final class InteractiveRequest extends BaseRequest {
         }
     }
 
+    /**
+     * Authorize endpoint with the query parameters that don't change between requests for the same authority, client
+     * id and redirect uri already appended and url encoded. Templates are built once and cached for the process.
+     */
+    static final class AuthorizeUrlTemplate {
+
+        private static final int MAX_CACHED_TEMPLATES = 16;
+        private static final Map<String, AuthorizeUrlTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+        private final String mUrlPrefix;
+        private final Set<String> mParameterNames;
+
+        private AuthorizeUrlTemplate(final String urlPrefix, final Set<String> parameterNames) {
+            mUrlPrefix = urlPrefix;
+            mParameterNames = parameterNames;
+        }
+
+        /**
+         * @return The cached {@link AuthorizeUrlTemplate} for the given authorize endpoint, client id and redirect uri,
+         * building it on first use.
+         */
+        static AuthorizeUrlTemplate getTemplate(final String authorizeEndpoint, final String clientId,
+                                                final String redirectUri) throws UnsupportedEncodingException {
+            final String templateKey = authorizeEndpoint + "$" + clientId + "$" + redirectUri;
+            AuthorizeUrlTemplate template = TEMPLATES.get(templateKey);
+            if (template == null) {
+                template = createTemplate(authorizeEndpoint, clientId, redirectUri);
+                if (TEMPLATES.size() >= MAX_CACHED_TEMPLATES) {
+                    // Apps normally talk to a handful of authorities, starting over is cheaper than tracking usage.
+                    TEMPLATES.clear();
+                }
+                TEMPLATES.put(templateKey, template);
+            }
+
+            return template;
+        }
+
+        private static AuthorizeUrlTemplate createTemplate(final String authorizeEndpoint, final String clientId,
+                                                           final String redirectUri) throws UnsupportedEncodingException {
+            final Map<String, String> staticParameters = new HashMap<>();
+            staticParameters.put(OauthConstants.Oauth2Parameters.CLIENT_ID, clientId);
+            staticParameters.put(OauthConstants.Oauth2Parameters.REDIRECT_URI, redirectUri);
+            staticParameters.put(OauthConstants.Oauth2Parameters.RESPONSE_TYPE, OauthConstants.Oauth2ResponseType.CODE);
+            staticParameters.putAll(PlatformIdHelper.getPlatformIdParameters());
+
+            return new AuthorizeUrlTemplate(MsalUtils.appendQueryParameterToUrl(authorizeEndpoint, staticParameters),
+                    Collections.unmodifiableSet(new HashSet<>(staticParameters.keySet())));
+        }
+
+        String getUrlPrefix() {
+            return mUrlPrefix;
+        }
+
+        /**
+         * @return True if the query parameter is already part of the url prefix.
+         */
+        boolean containsParameter(final String parameterName) {
+            return mParameterNames.contains(parameterName);
+        }
+    }
+
     /**
      * Factory class for PKCE Challenges.
      */
-    private static class PKCEChallengeFactory {
+    static class PKCEChallengeFactory {
 
         private static final int CODE_VERIFIER_BYTE_SIZE = 32;
         private static final int ENCODE_MASK = Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP;
         private static final String DIGEST_ALGORITHM = "SHA-256";
         private static final String ISO_8859_1 = "ISO_8859_1";
+        private static final int POOL_SIZE = 2;
+        private static final long CHALLENGE_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+        private static final Queue<PKCEChallenge> CHALLENGE_POOL = new ConcurrentLinkedQueue<>();
+        private static final long POOL_THREAD_KEEP_ALIVE_SECONDS = 30;
+        private static final ThreadPoolExecutor POOL_EXECUTOR = createPoolExecutor();
+        private static final AtomicBoolean IS_REFILL_SCHEDULED = new AtomicBoolean(false);
+
+        /**
+         * Holder of the shared {@link SecureRandom}, seeding it may block on entropy so it's created on first use which
+         * is normally the pool refill on the background thread.
+         */
+        private static final class SecureRandomHolder {
+            private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+        }
 
         static class PKCEChallenge {
 
@@ -373,10 +613,46 @@ final class InteractiveRequest extends BaseRequest {
              */
             private final String mCodeChallenge;
 
+            /**
+             * Time the challenge is created, pooled challenges are discarded once they're expired.
+             */
+            private final long mCreatedTimeMillis;
+
             PKCEChallenge(String codeVerifier, String codeChallenge) {
                 this.mCodeVerifier = codeVerifier;
                 this.mCodeChallenge = codeChallenge;
+                this.mCreatedTimeMillis = System.currentTimeMillis();
+            }
+
+            boolean isExpired() {
+                return System.currentTimeMillis() - mCreatedTimeMillis > CHALLENGE_EXPIRY_MILLIS;
+            }
+        }
+
+        /**
+         * Fill the pool of pre-generated challenges in the background.
+         */
+        static void prefill() {
+            scheduleRefill();
+        }
+
+        /**
+         * Takes a pre-generated {@link PKCEChallenge} from the pool, each of them is handed out only once. Falls back to
+         * creating one on the calling thread if the pool is empty.
+         *
+         * @return the Challenge
+         * @throws MsalException if the Challenge could not be created
+         */
+        static PKCEChallenge newPKCEChallenge() throws MsalClientException {
+            PKCEChallenge challenge;
+            while ((challenge = CHALLENGE_POOL.poll()) != null) {
+                if (!challenge.isExpired()) {
+                    break;
+                }
             }
+
+            scheduleRefill();
+            return challenge != null ? challenge : createPKCEChallenge();
         }
 
         /**
@@ -385,7 +661,7 @@ final class InteractiveRequest extends BaseRequest {
          * @return the newly created Challenge
          * @throws MsalException if the Challenge could not be created
          */
-        static PKCEChallenge newPKCEChallenge() throws MsalClientException {
+        static PKCEChallenge createPKCEChallenge() throws MsalClientException {
             // Generate the code_verifier as a high-entropy cryptographic random String
             final String codeVerifier = generateCodeVerifier();
 
@@ -395,9 +671,54 @@ final class InteractiveRequest extends BaseRequest {
             return new PKCEChallenge(codeVerifier, codeChallenge);
         }
 
+        /**
+         * @return The executor refilling the pool on a daemon thread, released once the pool is refilled and idle.
+         */
+        private static ThreadPoolExecutor createPoolExecutor() {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, POOL_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable runnable) {
+                            final Thread thread = new Thread(runnable, PKCEChallengeFactory.class.getSimpleName());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+
+        private static void scheduleRefill() {
+            if (!IS_REFILL_SCHEDULED.compareAndSet(false, true)) {
+                return;
+            }
+
+            POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final Iterator<PKCEChallenge> iterator = CHALLENGE_POOL.iterator();
+                        while (iterator.hasNext()) {
+                            if (iterator.next().isExpired()) {
+                                iterator.remove();
+                            }
+                        }
+
+                        while (CHALLENGE_POOL.size() < POOL_SIZE) {
+                            CHALLENGE_POOL.offer(createPKCEChallenge());
+                        }
+                    } catch (final MsalClientException e) {
+                        Logger.error(TAG, null, "Failed to pre-generate the PKCE challenge.", e);
+                    } finally {
+                        IS_REFILL_SCHEDULED.set(false);
+                    }
+                }
+            });
+        }
+
         private static String generateCodeVerifier() {
             final byte[] verifierBytes = new byte[CODE_VERIFIER_BYTE_SIZE];
-            new SecureRandom().nextBytes(verifierBytes);
+            SecureRandomHolder.SECURE_RANDOM.nextBytes(verifierBytes);
             return Base64.encodeToString(verifierBytes, ENCODE_MASK);
         }
 
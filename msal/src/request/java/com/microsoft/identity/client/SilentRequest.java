@@ -37,6 +37,7 @@ final class SilentRequest extends BaseRequest {
     private final User mUser;
     private AuthenticationResult mAuthResult;
     private boolean mIsAuthorityProvided = true;
+    private long mCacheGeneration;
 
     SilentRequest(final Context appContext, final AuthenticationRequestParameters authRequestParams,
                   final boolean forceRefresh, final User user) {
@@ -46,9 +47,37 @@ final class SilentRequest extends BaseRequest {
         mUser = user;
     }
 
+    /**
+     * Record the latency of the silent request, from the api call until the result is delivered.
+     */
+    @Override
+    void getToken(final AuthenticationCallback callback) {
+        final long startTime = System.currentTimeMillis();
+        super.getToken(new AuthenticationCallback() {
+            @Override
+            public void onSuccess(final AuthenticationResult authenticationResult) {
+                Metrics.getInstance().recordSilentRequestLatency(System.currentTimeMillis() - startTime);
+                callback.onSuccess(authenticationResult);
+            }
+
+            @Override
+            public void onError(final MsalException exception) {
+                Metrics.getInstance().recordSilentRequestLatency(System.currentTimeMillis() - startTime);
+                callback.onError(exception);
+            }
+
+            @Override
+            public void onCancel() {
+                Metrics.getInstance().recordSilentRequestLatency(System.currentTimeMillis() - startTime);
+                callback.onCancel();
+            }
+        });
+    }
+
     @Override
     void preTokenRequest() throws MsalClientException, MsalUiRequiredException, MsalServiceException, MsalUserCancelException {
         final TokenCache tokenCache = mAuthRequestParameters.getTokenCache();
+        mCacheGeneration = tokenCache.getCacheLock().getGeneration();
 
         final AccessTokenCacheItem tokenCacheItemAuthorityNotProvided = mIsAuthorityProvided ? null : tokenCache.findAccessTokenItemAuthorityNotProvided(
                 mAuthRequestParameters, mUser);
@@ -59,9 +88,12 @@ final class SilentRequest extends BaseRequest {
 
             if (accessTokenCacheItem != null) {
                 Logger.info(TAG, mAuthRequestParameters.getRequestContext(), "Access token is found, returning cached AT.");
+                Metrics.getInstance().increment(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT);
                 mAuthResult = new AuthenticationResult(accessTokenCacheItem);
                 return;
             }
+
+            Metrics.getInstance().increment(Metrics.Counter.ACCESS_TOKEN_CACHE_MISS);
         } else {
             Logger.info(TAG, mAuthRequestParameters.getRequestContext(), "ForceRefresh is set to true, skipping AT lookup.");
         }
@@ -85,8 +117,14 @@ final class SilentRequest extends BaseRequest {
     /**
      * For silent request, we check if there is an valid access token first. If there is an valid AT in the cache, no actual
      * perform token request. Otherwise, use the base performTokenRequest. Resiliency feather will be enabled here, if we
-     * get the SERVICE_NOT_AVAILABLE, check for the extended_expires_on and if the token is still valid with extended expires on,
-     * return the token.
+     * get the SERVICE_NOT_AVAILABLE or REQUEST_TIMEOUT, check for the extended_expires_on and if the token is still valid
+     * with extended expires on, return the token.
+     * <p>
+     * The {@link TokenCacheLock} is not held while the refresh token grant is sent, a slow token endpoint doesn't block
+     * the cache writes of the other requests and processes. Right before the grant, the cache is looked up again if
+     * another request or process of the app has written into it since {@link #preTokenRequest()}, so a token refreshed
+     * in the meantime is returned instead of sending a second grant. Grants sent at the same time both reach the token
+     * endpoint, the results are saved one after the other.
      *
      * @throws MsalServiceException
      * @throws MsalClientException
@@ -99,8 +137,90 @@ final class SilentRequest extends BaseRequest {
             return;
         }
 
-        // TODO: Support resilency. No need for #BUILD
-        super.performTokenRequest();
+        if (!isCacheUpdatedSinceLookup()) {
+            performRefreshTokenRequest();
+        }
+    }
+
+    /**
+     * Look up the cache again if it's been written since the lookup in {@link #preTokenRequest()}.
+     *
+     * @return True if a valid access token is now in the cache, false if the refresh token grant is still needed.
+     */
+    private boolean isCacheUpdatedSinceLookup() throws MsalClientException {
+        final TokenCache tokenCache = mAuthRequestParameters.getTokenCache();
+        if (tokenCache.getCacheLock().getGeneration() == mCacheGeneration) {
+            return false;
+        }
+
+        if (!mForceRefresh) {
+            final AccessTokenCacheItem accessTokenCacheItem = mIsAuthorityProvided
+                    ? tokenCache.findAccessToken(mAuthRequestParameters, mUser)
+                    : tokenCache.findAccessTokenItemAuthorityNotProvided(mAuthRequestParameters, mUser);
+            if (accessTokenCacheItem != null) {
+                Logger.info(TAG, mAuthRequestParameters.getRequestContext(), "Access token has been refreshed since the "
+                        + "cache lookup, returning cached AT.");
+                Metrics.getInstance().increment(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT);
+                mAuthResult = new AuthenticationResult(accessTokenCacheItem);
+                return true;
+            }
+        }
+
+        // the refresh token may have been rotated by the other refresh.
+        final RefreshTokenCacheItem refreshTokenCacheItem = tokenCache.findRefreshToken(mAuthRequestParameters, mUser);
+        if (refreshTokenCacheItem != null) {
+            mRefreshTokenCacheItem = refreshTokenCacheItem;
+        }
+
+        return false;
+    }
+
+    /**
+     * Send the refresh token grant with the given refresh token, without the cache lookup. Used by
+     * {@link BatchSilentRequest}, which looks up the cache for the whole batch. The result is read with
+     * {@link #postTokenRequest()}.
+     *
+     * @param refreshTokenCacheItem The {@link RefreshTokenCacheItem} to redeem.
+     */
+    void redeemRefreshToken(final RefreshTokenCacheItem refreshTokenCacheItem) throws MsalServiceException, MsalClientException {
+        mRefreshTokenCacheItem = refreshTokenCacheItem;
+        performRefreshTokenRequest();
+    }
+
+    private void performRefreshTokenRequest() throws MsalServiceException, MsalClientException {
+        try {
+            super.performTokenRequest();
+        } catch (final MsalServiceException e) {
+            if (!isServiceUnavailable(e)) {
+                throw e;
+            }
+
+            final AccessTokenCacheItem extendedLifetimeToken = findExtendedLifetimeAccessToken();
+            if (extendedLifetimeToken == null) {
+                throw e;
+            }
+
+            Logger.warning(TAG, mAuthRequestParameters.getRequestContext(), "Token endpoint is unavailable with error: "
+                    + e.getErrorCode() + ", returning the access token within its extended lifetime.");
+            Metrics.getInstance().increment(Metrics.Counter.EXTENDED_LIFETIME_TOKEN_RETURNED);
+            mAuthResult = new AuthenticationResult(extendedLifetimeToken, true);
+        }
+    }
+
+    private static boolean isServiceUnavailable(final MsalServiceException exception) {
+        return MsalServiceException.SERVICE_NOT_AVAILABLE.equals(exception.getErrorCode())
+                || MsalServiceException.REQUEST_TIMEOUT.equals(exception.getErrorCode());
+    }
+
+    /**
+     * Force refresh asks for a new token explicitly, the cached one is not returned in place of it.
+     */
+    private AccessTokenCacheItem findExtendedLifetimeAccessToken() {
+        if (mForceRefresh) {
+            return null;
+        }
+
+        return mAuthRequestParameters.getTokenCache().findExtendedLifetimeAccessToken(mAuthRequestParameters, mUser);
     }
 
     /**
@@ -120,6 +240,7 @@ final class SilentRequest extends BaseRequest {
             throwExceptionFromTokenResponse(mTokenResponse);
         }
 
+        Metrics.getInstance().increment(Metrics.Counter.REFRESH_TOKEN_GRANT);
         return super.postTokenRequest();
     }
 
@@ -53,6 +53,18 @@ final class ApiEvent extends Event {
         setLoginHint(builder.mLoginHint);
         setProperty(EventProperty.WAS_SUCCESSFUL, String.valueOf(builder.mWasApiCallSuccessful));
         setProperty(EventProperty.API_ERROR_CODE, builder.mApiErrorCode);
+        setPhaseTime(EventProperty.QUEUE_WAIT_TIME, builder.mQueueWaitTime);
+        setPhaseTime(EventProperty.PRE_TOKEN_REQUEST_TIME, builder.mPreTokenRequestTime);
+        setPhaseTime(EventProperty.TOKEN_REQUEST_TIME, builder.mTokenRequestTime);
+        setPhaseTime(EventProperty.POST_TOKEN_REQUEST_TIME, builder.mPostTokenRequestTime);
+        setPhaseTime(EventProperty.CALLBACK_DELIVERY_TIME, builder.mCallbackDeliveryTime);
+        setPhaseTime(EventProperty.REDIRECT_HEAD_START_TIME, builder.mRedirectHeadStartTime);
+    }
+
+    private void setPhaseTime(final String propertyName, final Long phaseTime) {
+        if (null != phaseTime) {
+            setProperty(propertyName, String.valueOf(phaseTime));
+        }
     }
 
     private void setAuthorityType(Authority.AuthorityType type) {
@@ -154,6 +166,30 @@ final class ApiEvent extends Event {
         return getProperty(EventProperty.API_ERROR_CODE);
     }
 
+    String getQueueWaitTime() {
+        return getProperty(EventProperty.QUEUE_WAIT_TIME);
+    }
+
+    String getPreTokenRequestTime() {
+        return getProperty(EventProperty.PRE_TOKEN_REQUEST_TIME);
+    }
+
+    String getTokenRequestTime() {
+        return getProperty(EventProperty.TOKEN_REQUEST_TIME);
+    }
+
+    String getPostTokenRequestTime() {
+        return getProperty(EventProperty.POST_TOKEN_REQUEST_TIME);
+    }
+
+    String getCallbackDeliveryTime() {
+        return getProperty(EventProperty.CALLBACK_DELIVERY_TIME);
+    }
+
+    String getRedirectHeadStartTime() {
+        return getProperty(EventProperty.REDIRECT_HEAD_START_TIME);
+    }
+
     /**
      * Builder object for ApiEvents.
      */
@@ -170,6 +206,12 @@ final class ApiEvent extends Event {
         private UUID mCorrelationId;
         private String mRequestId;
         private String mApiErrorCode;
+        private Long mQueueWaitTime;
+        private Long mPreTokenRequestTime;
+        private Long mTokenRequestTime;
+        private Long mPostTokenRequestTime;
+        private Long mCallbackDeliveryTime;
+        private Long mRedirectHeadStartTime;
 
         Builder(final String requestId) {
             super(EventConstants.EventName.API_EVENT);
@@ -280,6 +322,73 @@ final class ApiEvent extends Event {
             return this;
         }
 
+        /**
+         * Sets the time the request spent waiting on the request executor before it started running.
+         *
+         * @param queueWaitTime the queue wait time in milliseconds.
+         * @return the Builder instance.
+         */
+        Builder setQueueWaitTime(final long queueWaitTime) {
+            mQueueWaitTime = queueWaitTime;
+            return this;
+        }
+
+        /**
+         * Sets the time spent in the pre token request phase (authority resolution, cache lookup or web ui).
+         *
+         * @param preTokenRequestTime the pre token request time in milliseconds.
+         * @return the Builder instance.
+         */
+        Builder setPreTokenRequestTime(final long preTokenRequestTime) {
+            mPreTokenRequestTime = preTokenRequestTime;
+            return this;
+        }
+
+        /**
+         * Sets the time spent in the token request phase, including the network round trip to the token endpoint.
+         *
+         * @param tokenRequestTime the token request time in milliseconds.
+         * @return the Builder instance.
+         */
+        Builder setTokenRequestTime(final long tokenRequestTime) {
+            mTokenRequestTime = tokenRequestTime;
+            return this;
+        }
+
+        /**
+         * Sets the time spent in the post token request phase (response validation and cache write).
+         *
+         * @param postTokenRequestTime the post token request time in milliseconds.
+         * @return the Builder instance.
+         */
+        Builder setPostTokenRequestTime(final long postTokenRequestTime) {
+            mPostTokenRequestTime = postTokenRequestTime;
+            return this;
+        }
+
+        /**
+         * Sets the time between posting the result to the main thread and the callback being invoked.
+         *
+         * @param callbackDeliveryTime the callback delivery time in milliseconds.
+         * @return the Builder instance.
+         */
+        Builder setCallbackDeliveryTime(final long callbackDeliveryTime) {
+            mCallbackDeliveryTime = callbackDeliveryTime;
+            return this;
+        }
+
+        /**
+         * Sets how long the auth code redemption ran before the authorization result reached the calling activity,
+         * i.e. the time saved by starting it as soon as the redirect is received.
+         *
+         * @param redirectHeadStartTime the head start in milliseconds.
+         * @return the Builder instance.
+         */
+        Builder setRedirectHeadStartTime(final long redirectHeadStartTime) {
+            mRedirectHeadStartTime = redirectHeadStartTime;
+            return this;
+        }
+
         /**
          * Constructs a new ApiEvent.
          *
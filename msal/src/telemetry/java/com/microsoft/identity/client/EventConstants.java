@@ -54,6 +54,7 @@ final class EventConstants {
         static final String API_ID_ACQUIRE_WITH_USER_BEHAVIOR_PARAMETERS_AND_AUTHORITY = "184";
         static final String ACQUIRE_TOKEN_SILENT_ASYNC_WITH_USER = "80";
         static final String ACQUIRE_TOKEN_SILENT_ASYNC_WITH_USER_AUTHORITY_AND_FORCE_REFRESH = "81";
+        static final String ACQUIRE_TOKENS_SILENT_ASYNC_WITH_USER = "82";
     }
 
     static final class EventName {
@@ -109,6 +110,12 @@ final class EventConstants {
         static final String LOGIN_HINT = EVENT_PREFIX + "login_hint";
         static final String USER_ID = EVENT_PREFIX + "user_id";
         static final String API_ERROR_CODE = EVENT_PREFIX + "api_error_code";
+        static final String QUEUE_WAIT_TIME = EVENT_PREFIX + "queue_wait_time";
+        static final String PRE_TOKEN_REQUEST_TIME = EVENT_PREFIX + "pre_token_request_time";
+        static final String TOKEN_REQUEST_TIME = EVENT_PREFIX + "token_request_time";
+        static final String POST_TOKEN_REQUEST_TIME = EVENT_PREFIX + "post_token_request_time";
+        static final String CALLBACK_DELIVERY_TIME = EVENT_PREFIX + "callback_delivery_time";
+        static final String REDIRECT_HEAD_START_TIME = EVENT_PREFIX + "redirect_head_start_time";
 
         // CacheEvent
         static final String TOKEN_TYPE = EVENT_PREFIX + "token_type";
@@ -127,6 +134,7 @@ final class EventConstants {
 
         // UiEvent
         static final String USER_CANCEL = EVENT_PREFIX + "user_cancel";
+        static final String REDIRECT_FAST_PATH = EVENT_PREFIX + "redirect_fast_path";
 
         /**
          * Frequently occurring values of telemetry key/value pairs.
@@ -0,0 +1,116 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with fixed bucket boundaries. Recording is a single atomic increment, percentiles are
+ * approximated by the upper bound of the bucket they fall in.
+ */
+final class LatencyHistogram {
+    /**
+     * Inclusive upper bounds of the buckets in milliseconds. Values above the last bound go to an overflow bucket.
+     */
+    static final long[] BUCKET_UPPER_BOUNDS_MILLIS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private final AtomicLongArray mBucketCounts = new AtomicLongArray(BUCKET_UPPER_BOUNDS_MILLIS.length + 1);
+    private final AtomicLong mMaxValue = new AtomicLong();
+
+    void record(final long valueInMillis) {
+        final long value = Math.max(0, valueInMillis);
+        mBucketCounts.incrementAndGet(getBucketIndex(value));
+
+        long currentMax = mMaxValue.get();
+        while (value > currentMax && !mMaxValue.compareAndSet(currentMax, value)) {
+            currentMax = mMaxValue.get();
+        }
+    }
+
+    long[] getBucketCounts() {
+        final long[] bucketCounts = new long[mBucketCounts.length()];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = mBucketCounts.get(i);
+        }
+
+        return bucketCounts;
+    }
+
+    long getMaxValue() {
+        return mMaxValue.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < mBucketCounts.length(); i++) {
+            mBucketCounts.set(i, 0);
+        }
+        mMaxValue.set(0);
+    }
+
+    /**
+     * Approximate the given percentile from a copy of the bucket counts.
+     *
+     * @param bucketCounts The bucket counts, as returned by {@link #getBucketCounts()}.
+     * @param maxValue     The largest recorded value, reported for the overflow bucket.
+     * @param percentile   The percentile to compute, between 0 and 100.
+     * @return The upper bound of the bucket holding the percentile, 0 if nothing was recorded.
+     */
+    static long getPercentile(final long[] bucketCounts, final long maxValue, final double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+
+        long total = 0;
+        for (final long count : bucketCounts) {
+            total += count;
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MILLIS.length; i++) {
+            cumulative += bucketCounts[i];
+            if (cumulative >= rank) {
+                return Math.min(BUCKET_UPPER_BOUNDS_MILLIS[i], maxValue);
+            }
+        }
+
+        return maxValue;
+    }
+
+    private static int getBucketIndex(final long value) {
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MILLIS.length; i++) {
+            if (value <= BUCKET_UPPER_BOUNDS_MILLIS[i]) {
+                return i;
+            }
+        }
+
+        return BUCKET_UPPER_BOUNDS_MILLIS.length;
+    }
+}
@@ -0,0 +1,148 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Process wide counters and latency histograms for the token acquisition pipeline. Unlike the {@link Telemetry}
+ * events, which are dispatched per request, the metrics are aggregated and can be polled at any time:
+ * <pre>
+ * {@code
+ *     final MetricsSnapshot snapshot = Metrics.getInstance().getSnapshot();
+ *     final long hits = snapshot.getCount(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT);
+ *     final long p95 = snapshot.getSilentRequestLatencyPercentile(95);
+ * }
+ * </pre>
+ */
+public final class Metrics {
+    private static final Metrics INSTANCE = new Metrics();
+
+    private final Map<Counter, StripedCounter> mCounters = new EnumMap<>(Counter.class);
+    private final LatencyHistogram mSilentRequestLatency = new LatencyHistogram();
+
+    private Metrics() {
+        for (final Counter counter : Counter.values()) {
+            mCounters.put(counter, new StripedCounter());
+        }
+    }
+
+    /**
+     * Returns the Metrics singleton.
+     *
+     * @return the Metrics singleton.
+     */
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Take a point in time copy of all the counters and histograms.
+     *
+     * @return The {@link MetricsSnapshot}.
+     */
+    public MetricsSnapshot getSnapshot() {
+        final Map<Counter, Long> counts = new EnumMap<>(Counter.class);
+        for (final Map.Entry<Counter, StripedCounter> counter : mCounters.entrySet()) {
+            counts.put(counter.getKey(), counter.getValue().sum());
+        }
+
+        return new MetricsSnapshot(counts, mSilentRequestLatency.getBucketCounts(), mSilentRequestLatency.getMaxValue());
+    }
+
+    /**
+     * Reset all the counters and histograms to zero, for example after forwarding a snapshot.
+     */
+    public void reset() {
+        for (final StripedCounter counter : mCounters.values()) {
+            counter.reset();
+        }
+        mSilentRequestLatency.reset();
+    }
+
+    void increment(final Counter counter) {
+        mCounters.get(counter).increment();
+    }
+
+    void add(final Counter counter, final long delta) {
+        mCounters.get(counter).add(delta);
+    }
+
+    void recordSilentRequestLatency(final long latencyInMillis) {
+        mSilentRequestLatency.record(latencyInMillis);
+    }
+
+    /**
+     * Counters maintained by the sdk.
+     */
+    public enum Counter {
+        /**
+         * Silent request served from a valid access token in the cache.
+         */
+        ACCESS_TOKEN_CACHE_HIT,
+        /**
+         * Silent request that didn't find a valid access token in the cache (force refresh excluded).
+         */
+        ACCESS_TOKEN_CACHE_MISS,
+        /**
+         * Refresh token found in the cache for a silent request.
+         */
+        REFRESH_TOKEN_CACHE_HIT,
+        /**
+         * No refresh token found in the cache for a silent request.
+         */
+        REFRESH_TOKEN_CACHE_MISS,
+        /**
+         * Refresh token successfully redeemed for new tokens.
+         */
+        REFRESH_TOKEN_GRANT,
+        /**
+         * Authority endpoints served from the resolved authority cache.
+         */
+        AUTHORITY_CACHE_HIT,
+        /**
+         * Authority endpoints resolved with instance and tenant discovery.
+         */
+        AUTHORITY_CACHE_MISS,
+        /**
+         * Http request retried after a timeout or a 500/503/504 response.
+         */
+        HTTP_RETRY,
+        /**
+         * Silent request served from an expired access token still within its extended lifetime, because the token
+         * endpoint was unavailable.
+         */
+        EXTENDED_LIFETIME_TOKEN_RETURNED,
+        /**
+         * Access tokens removed by the cache maintenance, either past their extended lifetime or least recently used.
+         */
+        ACCESS_TOKEN_EVICTED,
+        /**
+         * Bytes of token cache storage reclaimed by the cache maintenance.
+         */
+        CACHE_BYTES_RECLAIMED
+    }
+}
@@ -0,0 +1,92 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+
+package com.microsoft.identity.client;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable copy of the {@link Metrics} taken with {@link Metrics#getSnapshot()}.
+ */
+public final class MetricsSnapshot {
+    private final Map<Metrics.Counter, Long> mCounts;
+    private final long[] mSilentRequestLatencyBuckets;
+    private final long mSilentRequestLatencyMax;
+
+    MetricsSnapshot(final Map<Metrics.Counter, Long> counts, final long[] silentRequestLatencyBuckets,
+                    final long silentRequestLatencyMax) {
+        mCounts = Collections.unmodifiableMap(counts);
+        mSilentRequestLatencyBuckets = silentRequestLatencyBuckets;
+        mSilentRequestLatencyMax = silentRequestLatencyMax;
+    }
+
+    /**
+     * @param counter The {@link Metrics.Counter} to read.
+     * @return The value of the counter when the snapshot was taken.
+     */
+    public long getCount(final Metrics.Counter counter) {
+        final Long count = mCounts.get(counter);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @return The access token cache hit rate between 0 and 1, or 0 if there was no lookup.
+     */
+    public double getAccessTokenCacheHitRate() {
+        final long hits = getCount(Metrics.Counter.ACCESS_TOKEN_CACHE_HIT);
+        final long total = hits + getCount(Metrics.Counter.ACCESS_TOKEN_CACHE_MISS);
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return The number of completed silent requests.
+     */
+    public long getSilentRequestCount() {
+        long count = 0;
+        for (final long bucketCount : mSilentRequestLatencyBuckets) {
+            count += bucketCount;
+        }
+
+        return count;
+    }
+
+    /**
+     * Approximate latency percentile of the completed silent requests, from the api call to the callback being invoked.
+     * The value is the upper bound of the histogram bucket the percentile falls in.
+     *
+     * @param percentile The percentile between 0 and 100, for example 50 or 95.
+     * @return The latency in milliseconds, 0 if no silent request completed.
+     */
+    public long getSilentRequestLatencyPercentile(final double percentile) {
+        return LatencyHistogram.getPercentile(mSilentRequestLatencyBuckets, mSilentRequestLatencyMax, percentile);
+    }
+
+    /**
+     * @return The largest silent request latency in milliseconds.
+     */
+    public long getSilentRequestLatencyMax() {
+        return mSilentRequestLatencyMax;
+    }
+}
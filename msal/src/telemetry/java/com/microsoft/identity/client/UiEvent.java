@@ -34,6 +34,7 @@ final class UiEvent extends Event {
         super(builder);
         setProperty(EventProperty.HTTP_USER_AGENT, builder.mUserAgent);
         setProperty(EventProperty.USER_CANCEL, builder.mUserDidCancel);
+        setProperty(EventProperty.REDIRECT_FAST_PATH, builder.mRedirectFastPath);
     }
 
     String getUserAgent() {
@@ -44,6 +45,10 @@ final class UiEvent extends Event {
         return Boolean.valueOf(getProperty(EventProperty.USER_CANCEL));
     }
 
+    Boolean redirectFastPath() {
+        return Boolean.valueOf(getProperty(EventProperty.REDIRECT_FAST_PATH));
+    }
+
     /**
      * Builder object for UiEvents.
      */
@@ -51,6 +56,7 @@ final class UiEvent extends Event {
 
         private String mUserAgent;
         private String mUserDidCancel = "false";
+        private String mRedirectFastPath = "false";
 
         Builder() {
             super(EventConstants.EventName.UI_EVENT);
@@ -77,6 +83,17 @@ final class UiEvent extends Event {
             return this;
         }
 
+        /**
+         * Sets redirectFastPath to 'true', the auth code redemption is started as soon as the redirect is received.
+         * The time saved is reported by the api event.
+         *
+         * @return the Builder instance.
+         */
+        Builder setRedirectFastPath() {
+            mRedirectFastPath = "true";
+            return this;
+        }
+
         /**
          * Constructs a new IUiEvent.
          *
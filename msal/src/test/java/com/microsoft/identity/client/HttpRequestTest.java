@@ -132,6 +132,7 @@ public final class HttpRequestTest {
         HttpUrlConnectionFactory.addMockedConnection(firstConnection);
         HttpUrlConnectionFactory.addMockedConnection(secondConnection);
 
+        final long retryCount = Metrics.getInstance().getSnapshot().getCount(Metrics.Counter.HTTP_RETRY);
         try {
             Assert.assertTrue(HttpUrlConnectionFactory.getMockedConnectionCountInQueue() == 2);
             final HttpResponse response = sendHttpPost();
@@ -140,6 +141,8 @@ public final class HttpRequestTest {
             Assert.fail();
         }
 
+        Assert.assertEquals(retryCount + 1, Metrics.getInstance().getSnapshot().getCount(Metrics.Counter.HTTP_RETRY));
+
         Assert.assertTrue(HttpUrlConnectionFactory.getMockedConnectionCountInQueue() == 0);
 
         final InOrder inOrder = Mockito.inOrder(firstConnection, secondConnection);